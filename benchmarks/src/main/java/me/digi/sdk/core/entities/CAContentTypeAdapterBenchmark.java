@@ -0,0 +1,72 @@
+/*
+ * Copyright © 2017 digi.me. All rights reserved.
+ */
+
+package me.digi.sdk.core.entities;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import me.digi.sdk.crypto.BenchmarkData;
+
+/**
+ * Compares the streaming entity type adapters with Gson's reflective adapters when parsing a decrypted
+ * consent-access file of {@code items} content items.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class CAContentTypeAdapterBenchmark {
+
+    @Param({"100", "10000"})
+    int items;
+
+    private Gson reflectiveGson;
+    private Gson adapterGson;
+    private byte[] jsonBytes;
+
+    @Setup
+    public void setUp() {
+        reflectiveGson = new Gson();
+        CAContentTypeAdapter contentAdapter = new CAContentTypeAdapter();
+        adapterGson = new GsonBuilder()
+                .registerTypeAdapter(CAContent.class, contentAdapter)
+                .registerTypeAdapter(CAFileResponse.class, new CAFileResponseTypeAdapter(contentAdapter))
+                .create();
+        jsonBytes = BenchmarkData.fileResponseJson(BenchmarkData.contentJsonWithItems(items)).getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public CAFileResponse reflective() {
+        return parse(reflectiveGson);
+    }
+
+    @Benchmark
+    public CAFileResponse typeAdapter() {
+        return parse(adapterGson);
+    }
+
+    private CAFileResponse parse(Gson gson) {
+        return gson.fromJson(new InputStreamReader(new ByteArrayInputStream(jsonBytes), StandardCharsets.UTF_8), CAFileResponse.class);
+    }
+}
@@ -0,0 +1,71 @@
+/*
+ * Copyright © 2017 digi.me. All rights reserved.
+ */
+
+package me.digi.sdk.core.entities;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import me.digi.sdk.core.session.CASession;
+import me.digi.sdk.core.session.CASessionDeserializer;
+import me.digi.sdk.crypto.BenchmarkData;
+
+/**
+ * Parses a decrypted consent-access file into {@link CAFileResponse} with the same Gson setup as {@code DigiMeAPIClient}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class CAFileResponseParseBenchmark {
+
+    @Param({"1024", "1048576", "10485760", "52428800"})
+    int size;
+
+    private Gson gson;
+    private String json;
+    private byte[] jsonBytes;
+
+    @Setup
+    public void setUp() {
+        CAContentTypeAdapter contentAdapter = new CAContentTypeAdapter();
+        gson = new GsonBuilder()
+                .registerTypeAdapter(CASession.class, new CASessionDeserializer())
+                .registerTypeAdapter(CAContent.class, contentAdapter)
+                .registerTypeAdapter(CAFileResponse.class, new CAFileResponseTypeAdapter(contentAdapter))
+                .registerTypeAdapter(CAFiles.class, new CAFilesTypeAdapter())
+                .create();
+        json = BenchmarkData.fileResponseJson(BenchmarkData.contentJson(size));
+        jsonBytes = json.getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public CAFileResponse parseString() {
+        return gson.fromJson(json, CAFileResponse.class);
+    }
+
+    @Benchmark
+    public CAFileResponse parseStream() {
+        return gson.fromJson(new InputStreamReader(new ByteArrayInputStream(jsonBytes), StandardCharsets.UTF_8), CAFileResponse.class);
+    }
+}
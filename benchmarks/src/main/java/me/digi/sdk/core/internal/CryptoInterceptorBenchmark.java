@@ -0,0 +1,102 @@
+/*
+ * Copyright © 2017 digi.me. All rights reserved.
+ */
+
+package me.digi.sdk.core.internal;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.security.KeyPair;
+import java.util.concurrent.TimeUnit;
+
+import me.digi.sdk.crypto.BenchmarkData;
+import me.digi.sdk.crypto.CAKeyStore;
+import okhttp3.HttpUrl;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import okio.Buffer;
+
+/**
+ * Fetches an encrypted consent-access file from a local {@link MockWebServer} through {@link CAContentCryptoInterceptor}.
+ * {@link #fetchEncrypted()} skips the interceptor, so the difference between the two is the cost of decryption.
+ * Payload size is the size of decrypted file content.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class CryptoInterceptorBenchmark {
+    private static final String FILE_PATH = "/v1/permission-access/query/session/18_1_1_1_1_D201701_1.json";
+
+    @Param({"1024", "1048576", "10485760", "52428800"})
+    int size;
+
+    private MockWebServer server;
+    private OkHttpClient decryptingClient;
+    private OkHttpClient plainClient;
+    private HttpUrl fileUrl;
+
+    @Setup
+    public void setUp() throws Exception {
+        KeyPair keyPair = BenchmarkData.generateKeyPair();
+        final Buffer body = new Buffer().write(BenchmarkData.encryptedFileResponse(BenchmarkData.contentJson(size), keyPair.getPublic()));
+
+        server = new MockWebServer();
+        server.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) {
+                return new MockResponse()
+                        .setHeader("Content-Type", "application/json")
+                        .setBody(body.clone());
+            }
+        });
+        server.start();
+        fileUrl = server.url(FILE_PATH);
+
+        plainClient = new OkHttpClient();
+        decryptingClient = plainClient.newBuilder()
+                .addInterceptor(new CAContentCryptoInterceptor(new CAKeyStore(keyPair.getPrivate())))
+                .build();
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        server.shutdown();
+    }
+
+    @Benchmark
+    public String fetchDecrypted() throws IOException {
+        return fetch(decryptingClient);
+    }
+
+    @Benchmark
+    public String fetchEncrypted() throws IOException {
+        return fetch(plainClient);
+    }
+
+    private String fetch(OkHttpClient client) throws IOException {
+        try (Response response = client.newCall(new Request.Builder().url(fileUrl).build()).execute()) {
+            //noinspection ConstantConditions
+            return response.body().string();
+        }
+    }
+}
@@ -0,0 +1,120 @@
+/*
+ * Copyright © 2017 digi.me. All rights reserved.
+ */
+
+package me.digi.sdk.core.internal;
+
+import com.google.gson.Gson;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.security.KeyPair;
+import java.util.concurrent.TimeUnit;
+
+import me.digi.sdk.core.entities.CAFileResponse;
+import me.digi.sdk.crypto.BenchmarkData;
+import me.digi.sdk.crypto.CAKeyStore;
+import okhttp3.OkHttpClient;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import okio.Buffer;
+import retrofit2.Call;
+import retrofit2.Retrofit;
+import retrofit2.converter.gson.GsonConverterFactory;
+import retrofit2.http.GET;
+
+/**
+ * Fetches and decodes an encrypted consent-access file into {@link CAFileResponse} through Retrofit.
+ * {@link #interceptorThenGson()} decrypts to JSON text in {@link CAContentCryptoInterceptor} and parses it with the Gson converter,
+ * {@link #decryptInConverter()} decodes decrypted bytes directly in {@link CAContentConverterFactory}.
+ * Payload size is the size of decrypted file content.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class FileContentDecodeBenchmark {
+    private static final String FILE_PATH = "/v1/permission-access/query/session/18_1_1_1_1_D201701_1.json";
+
+    interface FileService {
+        @GET(FILE_PATH)
+        Call<CAFileResponse> interceptorDecrypted();
+
+        @DecryptInConverter
+        @GET(FILE_PATH)
+        Call<CAFileResponse> converterDecrypted();
+    }
+
+    @Param({"1024", "1048576", "10485760", "52428800"})
+    int size;
+
+    private MockWebServer server;
+    private FileService interceptorService;
+    private FileService converterService;
+
+    @Setup
+    public void setUp() throws Exception {
+        KeyPair keyPair = BenchmarkData.generateKeyPair();
+        final Buffer body = new Buffer().write(BenchmarkData.encryptedFileResponse(BenchmarkData.contentJson(size), keyPair.getPublic()));
+
+        server = new MockWebServer();
+        server.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) {
+                return new MockResponse()
+                        .setHeader("Content-Type", "application/json")
+                        .setBody(body.clone());
+            }
+        });
+        server.start();
+
+        CAKeyStore keyStore = new CAKeyStore(keyPair.getPrivate());
+        Gson gson = new Gson();
+        interceptorService = new Retrofit.Builder()
+                .client(new OkHttpClient.Builder()
+                        .addInterceptor(new CAContentCryptoInterceptor(keyStore))
+                        .build())
+                .baseUrl(server.url("/"))
+                .addConverterFactory(GsonConverterFactory.create(gson))
+                .build()
+                .create(FileService.class);
+        converterService = new Retrofit.Builder()
+                .client(new OkHttpClient())
+                .baseUrl(server.url("/"))
+                .addConverterFactory(CAContentConverterFactory.create(keyStore, gson))
+                .addConverterFactory(GsonConverterFactory.create(gson))
+                .build()
+                .create(FileService.class);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        server.shutdown();
+    }
+
+    @Benchmark
+    public CAFileResponse interceptorThenGson() throws IOException {
+        return interceptorService.interceptorDecrypted().execute().body();
+    }
+
+    @Benchmark
+    public CAFileResponse decryptInConverter() throws IOException {
+        return converterService.converterDecrypted().execute().body();
+    }
+}
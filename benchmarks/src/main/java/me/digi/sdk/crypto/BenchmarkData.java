@@ -0,0 +1,150 @@
+/*
+ * Copyright © 2017 digi.me. All rights reserved.
+ */
+
+package me.digi.sdk.crypto;
+
+import org.spongycastle.crypto.engines.AESEngine;
+import org.spongycastle.crypto.modes.CBCBlockCipher;
+import org.spongycastle.crypto.paddings.PaddedBufferedBlockCipher;
+import org.spongycastle.crypto.params.KeyParameter;
+import org.spongycastle.crypto.params.ParametersWithIV;
+import org.spongycastle.jce.provider.BouncyCastleProvider;
+
+import java.nio.charset.StandardCharsets;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.PublicKey;
+import java.security.Security;
+import java.util.Random;
+
+import javax.crypto.Cipher;
+
+/**
+ * Deterministic CA files and consent-access payloads shared by the benchmarks.
+ * A CA file is laid out as {@code RSA(DSK) | DIV | AES(SHA512(data) | data)}.
+ */
+public final class BenchmarkData {
+    public static final String RSA_PADDING = "RSA/ECB/OAEPWithSHA1AndMGF1Padding";
+
+    private static final String ITEM_TEMPLATE = "{\"annotation\":\"\",\"baseid\":\"base_%d\",\"commentcount\":2,"
+            + "\"createddate\":%d,\"entityid\":\"entity_%d\",\"favouritecount\":0,\"iscommentable\":1,"
+            + "\"isfavourited\":0,\"islikeable\":1,\"islikes\":0,\"isshared\":0,\"istruncated\":0,"
+            + "\"latitude\":51.5074,\"likecount\":12,\"longitude\":-0.1278,\"personfullname\":\"Jane Doe\","
+            + "\"personusername\":\"jdoe\",\"postid\":\"post\",\"rawtext\":\"%s\",\"posturl\":\"https://example.com/%d\","
+            + "\"referenceentityid\":\"ref_%d\"}";
+    private static final String ALPHABET = "abcdefghijklmnopqrstuvwxyz ABCDEFGHIJKLMNOPQRSTUVWXYZ0123456789";
+
+    static {
+        Security.insertProviderAt(new BouncyCastleProvider(), 1);
+    }
+
+    private BenchmarkData() {}
+
+    public static KeyPair generateKeyPair() throws Exception {
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA", "SC");
+        generator.initialize(2048);
+        return generator.generateKeyPair();
+    }
+
+    public static byte[] randomBytes(int length, long seed) {
+        byte[] bytes = new byte[length];
+        new Random(seed).nextBytes(bytes);
+        return bytes;
+    }
+
+    public static byte[] encryptRSA(byte[] data, PublicKey publicKey) throws Exception {
+        Cipher rsa = Cipher.getInstance(RSA_PADDING, "SC");
+        rsa.init(Cipher.ENCRYPT_MODE, publicKey);
+        return rsa.doFinal(data);
+    }
+
+    public static byte[] encryptAES(byte[] data, byte[] key, byte[] iv) throws Exception {
+        PaddedBufferedBlockCipher aes = new PaddedBufferedBlockCipher(new CBCBlockCipher(new AESEngine()));
+        aes.init(true, new ParametersWithIV(new KeyParameter(key), iv));
+        byte[] encrypted = new byte[aes.getOutputSize(data.length)];
+        int length = aes.processBytes(data, 0, data.length, encrypted, 0);
+        length += aes.doFinal(encrypted, length);
+        if (length == encrypted.length) {
+            return encrypted;
+        }
+        byte[] result = new byte[length];
+        System.arraycopy(encrypted, 0, result, 0, length);
+        return result;
+    }
+
+    /**
+     * Builds a complete CA file for {@code data}, encrypted with a fresh DSK for {@code publicKey}.
+     */
+    public static byte[] encryptFile(byte[] data, PublicKey publicKey) throws Exception {
+        byte[] dsk = randomBytes(32, 1);
+        byte[] div = randomBytes(16, 2);
+        byte[] encryptedDSK = encryptRSA(dsk, publicKey);
+        byte[] encrypted = encryptAES(ByteUtils.getDataAndHashBytes(data), dsk, div);
+
+        byte[] file = new byte[encryptedDSK.length + div.length + encrypted.length];
+        System.arraycopy(encryptedDSK, 0, file, 0, encryptedDSK.length);
+        System.arraycopy(div, 0, file, encryptedDSK.length, div.length);
+        System.arraycopy(encrypted, 0, file, encryptedDSK.length + div.length, encrypted.length);
+        return file;
+    }
+
+    /**
+     * Builds a JSON array of roughly {@code size} bytes with social post shaped content items,
+     * as served inside {@code fileContent} of a consent-access file.
+     */
+    public static String contentJson(int size) {
+        Random random = new Random(size);
+        StringBuilder sb = new StringBuilder(size + 1024);
+        sb.append('[');
+        int index = 0;
+        while (sb.length() < size) {
+            if (index > 0) {
+                sb.append(',');
+            }
+            sb.append(String.format(ITEM_TEMPLATE, index, 1500000000000L + index, index, randomText(random, 120), index, index));
+            index++;
+        }
+        return sb.append(']').toString();
+    }
+
+    /**
+     * Builds a JSON array of {@code count} content items shaped like {@link #contentJson(int)}.
+     */
+    public static String contentJsonWithItems(int count) {
+        Random random = new Random(count);
+        StringBuilder sb = new StringBuilder(count * 512);
+        sb.append('[');
+        for (int index = 0; index < count; index++) {
+            if (index > 0) {
+                sb.append(',');
+            }
+            sb.append(String.format(ITEM_TEMPLATE, index, 1500000000000L + index, index, randomText(random, 120), index, index));
+        }
+        return sb.append(']').toString();
+    }
+
+    /**
+     * Wraps {@code content} JSON in a consent-access file response with the given file id.
+     */
+    public static String fileResponseJson(String content) {
+        return "{\"fileContent\":" + content + ",\"fileList\":[\"18_1_1_1_1_D201701_1.json\"]}";
+    }
+
+    /**
+     * Encrypted consent-access file response, with {@code fileContent} holding the Base64 encoded CA file.
+     */
+    public static byte[] encryptedFileResponse(String content, PublicKey publicKey) throws Exception {
+        byte[] file = encryptFile(content.getBytes(StandardCharsets.UTF_8), publicKey);
+        String json = "{\"fileContent\":\"" + java.util.Base64.getEncoder().encodeToString(file) + "\"}";
+        return json.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String randomText(Random random, int length) {
+        char[] chars = new char[length];
+        for (int i = 0; i < length; i++) {
+            chars[i] = ALPHABET.charAt(random.nextInt(ALPHABET.length()));
+        }
+        return new String(chars);
+    }
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright © 2017 digi.me. All rights reserved.
+ */
+
+package me.digi.sdk.crypto;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.spongycastle.crypto.BufferedBlockCipher;
+import org.spongycastle.crypto.engines.AESEngine;
+import org.spongycastle.crypto.modes.CBCBlockCipher;
+import org.spongycastle.crypto.paddings.PaddedBufferedBlockCipher;
+import org.spongycastle.crypto.params.KeyParameter;
+import org.spongycastle.crypto.params.ParametersWithIV;
+
+import java.security.KeyPair;
+import java.util.concurrent.TimeUnit;
+
+import javax.crypto.Cipher;
+
+/**
+ * Small file decryption with ciphers created per call (as before pooling) against the reused ciphers in {@link CryptoUtils}.
+ * Run with {@code -prof gc} to compare allocations per operation.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Thread)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CipherReuseBenchmark {
+
+    private KeyPair keyPair;
+    private byte[] encryptedDSK;
+
+    @State(Scope.Thread)
+    public static class Payload {
+        @Param({"1024", "16384"})
+        int size;
+
+        byte[] key;
+        byte[] iv;
+        byte[] encrypted;
+
+        @Setup
+        public void setUp() throws Exception {
+            key = BenchmarkData.randomBytes(32, 1);
+            iv = BenchmarkData.randomBytes(16, 2);
+            encrypted = BenchmarkData.encryptAES(BenchmarkData.randomBytes(size, size), key, iv);
+        }
+    }
+
+    @Setup
+    public void setUp() throws Exception {
+        keyPair = BenchmarkData.generateKeyPair();
+        encryptedDSK = BenchmarkData.encryptRSA(BenchmarkData.randomBytes(32, 1), keyPair.getPublic());
+    }
+
+    @Benchmark
+    public byte[] rsaNewCipher() throws Exception {
+        Cipher rsaCipher = Cipher.getInstance(BenchmarkData.RSA_PADDING, "SC");
+        rsaCipher.init(Cipher.DECRYPT_MODE, keyPair.getPrivate());
+        return rsaCipher.doFinal(encryptedDSK);
+    }
+
+    @Benchmark
+    public byte[] rsaReusedCipher() throws DGMCryptoFailureException {
+        return CryptoUtils.decryptRSA(encryptedDSK, keyPair.getPrivate());
+    }
+
+    @Benchmark
+    public byte[] aesNewCipher(Payload payload) throws Exception {
+        BufferedBlockCipher aes = new PaddedBufferedBlockCipher(new CBCBlockCipher(new AESEngine()));
+        aes.init(false, new ParametersWithIV(new KeyParameter(payload.key), payload.iv));
+        byte[] encrypted = payload.encrypted;
+        byte[] out = new byte[aes.getOutputSize(encrypted.length)];
+        int length = aes.processBytes(encrypted, 0, encrypted.length, out, 0);
+        length += aes.doFinal(out, length);
+        byte[] result = new byte[length];
+        System.arraycopy(out, 0, result, 0, length);
+        return result;
+    }
+
+    @Benchmark
+    public byte[] aesPooledCipher(Payload payload) throws DGMCryptoFailureException {
+        return CryptoUtils.decryptAES(payload.encrypted, payload.key, payload.iv);
+    }
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright © 2017 digi.me. All rights reserved.
+ */
+
+package me.digi.sdk.crypto;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.security.KeyPair;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Primitive operations behind CA file decryption: unwrapping the DSK with RSA and decrypting the payload with AES
+ * on each {@link AESBackend}.
+ * SHA-512 is covered by {@link Sha512Benchmark}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class CryptoBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class Keys {
+        KeyPair keyPair;
+        byte[] encryptedDSK;
+
+        @Setup
+        public void setUp() throws Exception {
+            keyPair = BenchmarkData.generateKeyPair();
+            encryptedDSK = BenchmarkData.encryptRSA(BenchmarkData.randomBytes(32, 1), keyPair.getPublic());
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class Payload {
+        @Param({"1024", "1048576", "10485760", "52428800"})
+        int size;
+
+        @Param({"SPONGY_CASTLE", "PLATFORM"})
+        AESBackend backend;
+
+        /**
+         * 0 decrypts serially, otherwise payloads from this size on are decrypted in parallel on {@link #executor}.
+         */
+        @Param({"0", "1048576"})
+        int parallelThreshold;
+
+        byte[] key;
+        byte[] iv;
+        byte[] encrypted;
+        ExecutorService executor;
+
+        @Setup
+        public void setUp() throws Exception {
+            executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+            CryptoUtils.setAESBackend(backend);
+            CryptoUtils.setParallelDecryptionThreshold(parallelThreshold);
+            key = BenchmarkData.randomBytes(32, 1);
+            iv = BenchmarkData.randomBytes(16, 2);
+            encrypted = BenchmarkData.encryptAES(BenchmarkData.randomBytes(size, size), key, iv);
+        }
+
+        @TearDown
+        public void tearDown() {
+            executor.shutdown();
+        }
+    }
+
+    @Benchmark
+    public byte[] decryptRSA(Keys keys) throws DGMCryptoFailureException {
+        return CryptoUtils.decryptRSA(keys.encryptedDSK, keys.keyPair.getPrivate());
+    }
+
+    @Benchmark
+    public byte[] decryptAES(Payload payload) throws DGMCryptoFailureException {
+        return CryptoUtils.decryptAES(payload.encrypted, payload.key, payload.iv, payload.executor);
+    }
+}
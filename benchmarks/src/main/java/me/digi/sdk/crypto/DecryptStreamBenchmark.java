@@ -0,0 +1,86 @@
+/*
+ * Copyright © 2017 digi.me. All rights reserved.
+ */
+
+package me.digi.sdk.crypto;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.KeyPair;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Full CA file decryption through {@link CACryptoProvider}, from raw and Base64 encoded input.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class DecryptStreamBenchmark {
+
+    @Param({"1024", "1048576", "10485760", "52428800"})
+    int size;
+
+    private CACryptoProvider provider;
+    private byte[] file;
+    private byte[] base64File;
+
+    @Setup
+    public void setUp() throws Exception {
+        KeyPair keyPair = BenchmarkData.generateKeyPair();
+        provider = new CACryptoProvider(keyPair.getPrivate());
+        file = BenchmarkData.encryptFile(BenchmarkData.randomBytes(size, size), keyPair.getPublic());
+        base64File = java.util.Base64.getEncoder().encodeToString(file).getBytes(StandardCharsets.US_ASCII);
+    }
+
+    @Benchmark
+    public String decryptStream() throws IOException, DGMCryptoFailureException {
+        return provider.decryptStream(new ByteArrayInputStream(file), false);
+    }
+
+    @Benchmark
+    public String decryptStreamBase64() throws IOException, DGMCryptoFailureException {
+        return provider.decryptStream(new ByteArrayInputStream(base64File), true);
+    }
+
+    /**
+     * Reads decrypted content without collecting it, which is the lower bound for any consumer of the stream.
+     */
+    @Benchmark
+    public long decryptingStreamDrain() throws IOException, DGMCryptoFailureException {
+        return drain(file, false);
+    }
+
+    @Benchmark
+    public long decryptingStreamDrainBase64() throws IOException, DGMCryptoFailureException {
+        return drain(base64File, true);
+    }
+
+    private long drain(byte[] content, boolean base64) throws IOException, DGMCryptoFailureException {
+        byte[] buffer = new byte[8192];
+        long total = 0;
+        try (InputStream in = provider.decryptingStream(new ByteArrayInputStream(content), base64)) {
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                total += read;
+            }
+        }
+        return total;
+    }
+}
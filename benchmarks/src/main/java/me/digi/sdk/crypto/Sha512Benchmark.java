@@ -0,0 +1,76 @@
+/*
+ * Copyright © 2017 digi.me. All rights reserved.
+ */
+
+package me.digi.sdk.crypto;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.spongycastle.crypto.Digest;
+import org.spongycastle.crypto.digests.SHA512Digest;
+import org.spongycastle.crypto.io.DigestInputStream;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares bulk SHA-512 hashing in {@link CryptoUtils} with the former per-byte {@link DigestInputStream} loop.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Thread)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class Sha512Benchmark {
+
+    @Param({"1024", "1048576", "10485760", "52428800"})
+    int size;
+
+    private byte[] data;
+    private ByteBuffer directData;
+
+    @Setup
+    public void setUp() {
+        data = new byte[size];
+        new Random(42).nextBytes(data);
+        directData = ByteBuffer.allocateDirect(size);
+        directData.put(data).flip();
+    }
+
+    @Benchmark
+    public byte[] perByteDigestStream() throws IOException {
+        final byte[] dataHashBytes = new byte[64];
+        try (DigestInputStream in = new DigestInputStream(new ByteArrayInputStream(data), new SHA512Digest())) {
+            //noinspection StatementWithEmptyBody
+            while (in.read() != -1) {}
+
+            final Digest md = in.getDigest();
+            md.doFinal(dataHashBytes, 0);
+        }
+        return dataHashBytes;
+    }
+
+    @Benchmark
+    public byte[] bulkArray() {
+        return CryptoUtils.hashSha512(data);
+    }
+
+    @Benchmark
+    public byte[] bulkDirectBuffer() {
+        directData.rewind();
+        return CryptoUtils.hashSha512(directData);
+    }
+}
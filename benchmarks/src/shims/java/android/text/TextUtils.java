@@ -0,0 +1,17 @@
+/*
+ * Copyright © 2017 digi.me. All rights reserved.
+ */
+
+package android.text;
+
+/**
+ * JVM replacement for the parts of {@code android.text.TextUtils} used by the SDK.
+ */
+public class TextUtils {
+
+    private TextUtils() {}
+
+    public static boolean isEmpty(CharSequence str) {
+        return str == null || str.length() == 0;
+    }
+}
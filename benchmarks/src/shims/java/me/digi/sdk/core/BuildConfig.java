@@ -0,0 +1,16 @@
+/*
+ * Copyright © 2017 digi.me. All rights reserved.
+ */
+
+package me.digi.sdk.core;
+
+/**
+ * Stand-in for the build config the Android plugin generates for digime-core release builds.
+ */
+public final class BuildConfig {
+    public static final boolean DEBUG = false;
+    public static final String BASE_HOST = "api.digi.me";
+    public static final boolean LOG_REQUESTS = false;
+
+    private BuildConfig() {}
+}
@@ -0,0 +1,109 @@
+/*
+ * Copyright © 2017 digi.me. All rights reserved.
+ */
+
+package me.digi.sdk.core;
+
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+import me.digi.sdk.core.session.CASession;
+
+/**
+ * API clients of {@link DigiMeClient}, one per session (generic only so it can be tested without real clients).
+ * Clients of expired sessions are dropped on access, and once there are more than {@link DigiMeClient#maxApiClients}
+ * the least recently used ones are dropped too. Pinned sessions (the default session) are never evicted.
+ */
+final class ApiClientCache<C> {
+
+    interface ClientFactory<C> {
+        C create(CASession session);
+    }
+
+    private final ClientFactory<C> factory;
+    private final LinkedHashMap<CASession, C> clients = new LinkedHashMap<>(8, 0.75f, true);
+    private final Set<CASession> pinned = new HashSet<>();
+    private final AtomicLong evictionCount = new AtomicLong();
+
+    ApiClientCache(ClientFactory<C> factory) {
+        this.factory = factory;
+    }
+
+    /**
+     * Returns the client of {@code session}, creating it if needed.
+     *
+     * @param pin Whether the client should never be evicted
+     */
+    synchronized C get(CASession session, boolean pin) {
+        if (pin) {
+            pinned.add(session);
+        }
+        evictExpired();
+        C client = clients.get(session);
+        if (client == null) {
+            client = factory.create(session);
+            clients.put(session, client);
+            evictLeastRecentlyUsed();
+        }
+        return client;
+    }
+
+    synchronized C put(CASession session, C client) {
+        C previous = clients.put(session, client);
+        evictLeastRecentlyUsed();
+        return previous;
+    }
+
+    synchronized C remove(CASession session) {
+        pinned.remove(session);
+        C removed = clients.remove(session);
+        if (removed != null) {
+            evictionCount.incrementAndGet();
+        }
+        return removed;
+    }
+
+    synchronized int size() {
+        return clients.size();
+    }
+
+    /**
+     * Number of clients dropped because their session ended, expired or was least recently used.
+     */
+    long getEvictionCount() {
+        return evictionCount.get();
+    }
+
+    private void evictExpired() {
+        Iterator<CASession> it = clients.keySet().iterator();
+        while (it.hasNext()) {
+            CASession session = it.next();
+            if (!pinned.contains(session) && !session.isValid()) {
+                it.remove();
+                evictionCount.incrementAndGet();
+            }
+        }
+    }
+
+    private void evictLeastRecentlyUsed() {
+        int unpinnedCount = clients.size();
+        for (CASession session : pinned) {
+            if (clients.containsKey(session)) {
+                unpinnedCount--;
+            }
+        }
+        int maxClients = Math.max(1, DigiMeClient.maxApiClients);
+        Iterator<Map.Entry<CASession, C>> it = clients.entrySet().iterator();
+        while (unpinnedCount > maxClients && it.hasNext()) {
+            if (!pinned.contains(it.next().getKey())) {
+                it.remove();
+                unpinnedCount--;
+                evictionCount.incrementAndGet();
+            }
+        }
+    }
+}
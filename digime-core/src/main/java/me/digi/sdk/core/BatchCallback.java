@@ -0,0 +1,23 @@
+/*
+ * Copyright © 2017 digi.me. All rights reserved.
+ */
+
+package me.digi.sdk.core;
+
+import me.digi.sdk.core.entities.CAFileResponse;
+
+/**
+ * Receives results of a {@link FileBatch} as individual files complete.
+ * Progress can be read from the batch passed to each method.
+ */
+public abstract class BatchCallback {
+
+    public abstract void fileRetrieved(FileBatch batch, String fileId, CAFileResponse content);
+
+    public abstract void fileFailed(FileBatch batch, String fileId, SDKException exception);
+
+    /**
+     * Called once, after the last file completed or after the batch was cancelled.
+     */
+    public void batchFinished(FileBatch batch) {}
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright © 2017 digi.me. All rights reserved.
+ */
+
+package me.digi.sdk.core;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lets concurrent requests for the same content share one call, so that a file is fetched and decrypted once
+ * no matter how many callers ask for it while it's in flight. Every caller's callback gets the shared result.
+ */
+final class CallCoalescer {
+    private final Map<ContentKey, Flight<?>> flights = new HashMap<>();
+    private final AtomicLong coalescedCount = new AtomicLong();
+
+    /**
+     * Registers {@code callback} for the content of {@code key}.
+     *
+     * @return Callback to make the call with, or {@code null} if a call for the content is already in flight
+     * and {@code callback} will be completed by it
+     */
+    <T> SDKCallback<T> join(ContentKey key, SDKCallback<T> callback) {
+        synchronized (flights) {
+            // Flights are keyed by content type, and callbacks joining one are for that type
+            @SuppressWarnings("unchecked")
+            Flight<T> flight = (Flight<T>) flights.get(key);
+            if (flight != null) {
+                flight.callbacks.add(callback);
+                coalescedCount.incrementAndGet();
+                return null;
+            }
+            flight = new Flight<>(key);
+            flight.callbacks.add(callback);
+            flights.put(key, flight);
+            return flight;
+        }
+    }
+
+    int getInFlightCount() {
+        synchronized (flights) {
+            return flights.size();
+        }
+    }
+
+    /**
+     * Number of callers that were served by a call already in flight.
+     */
+    long getCoalescedCount() {
+        return coalescedCount.get();
+    }
+
+    private final class Flight<T> extends SDKCallback<T> {
+        private final ContentKey key;
+        private final List<SDKCallback<T>> callbacks = new ArrayList<>(1);
+
+        Flight(ContentKey key) {
+            this.key = key;
+        }
+
+        @Override
+        public void succeeded(SDKResponse<T> result) {
+            for (SDKCallback<T> callback : land()) {
+                if (callback != null) {
+                    callback.succeeded(result);
+                }
+            }
+        }
+
+        @Override
+        public void failed(SDKException exception) {
+            for (SDKCallback<T> callback : land()) {
+                if (callback != null) {
+                    callback.failed(exception);
+                }
+            }
+        }
+
+        /**
+         * Ends the flight; callers joining from now on start a new one.
+         */
+        private List<SDKCallback<T>> land() {
+            synchronized (flights) {
+                flights.remove(key);
+                return new ArrayList<>(callbacks);
+            }
+        }
+    }
+}
@@ -0,0 +1,178 @@
+/*
+ * Copyright © 2017 digi.me. All rights reserved.
+ */
+
+package me.digi.sdk.core;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParseException;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import me.digi.sdk.core.entities.CAFileResponse;
+import retrofit2.Response;
+
+/**
+ * Decoded file content ({@link CAFileResponse} and {@link JsonElement}) of {@link DigiMeClient}, per session and file.
+ *
+ * Content is kept serialized as JSON, and every hit is parsed into new objects, so callers can't change what
+ * later callers get. Entries are weighed by their serialized size in bytes and the least recently used ones are dropped
+ * once the total goes over {@link DigiMeClient#contentCacheSize}.
+ * Serializing and parsing walk the whole content, so {@link #put} and {@link #get} should not be called on the main thread.
+ */
+final class ContentCache {
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private final Gson gson;
+    private final LinkedHashMap<ContentKey, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long weight;
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+    private final AtomicLong evictionCount = new AtomicLong();
+
+    /**
+     * @param gson Gson able to write and read back the cached types
+     */
+    ContentCache(Gson gson) {
+        this.gson = gson;
+    }
+
+    /**
+     * Checks for content without parsing it or counting a hit or miss.
+     */
+    synchronized boolean contains(String sessionKey, String fileId, Class<?> type) {
+        return entries.containsKey(new ContentKey(sessionKey, fileId, type));
+    }
+
+    /**
+     * @return Copy of the cached response, or {@code null} if the file is not cached for the session
+     */
+    <T> SDKResponse<T> get(String sessionKey, String fileId, Class<T> type) {
+        ContentKey key = new ContentKey(sessionKey, fileId, type);
+        Entry entry;
+        synchronized (this) {
+            entry = entries.get(key);
+        }
+        if (entry == null) {
+            missCount.incrementAndGet();
+            return null;
+        }
+        T body;
+        try {
+            body = gson.fromJson(new InputStreamReader(new ByteArrayInputStream(entry.content), UTF8), type);
+        } catch (JsonParseException e) {
+            remove(key);
+            missCount.incrementAndGet();
+            return null;
+        }
+        hitCount.incrementAndGet();
+        return new SDKResponse<>(body, entry.response);
+    }
+
+    /**
+     * Serializes and caches a response, does nothing if the cache is disabled.
+     */
+    <T> void put(String sessionKey, String fileId, Class<T> type, SDKResponse<T> response) {
+        long maxWeight = DigiMeClient.contentCacheSize;
+        if (maxWeight <= 0) {
+            return;
+        }
+        ContentKey key = new ContentKey(sessionKey, fileId, type);
+        byte[] content = response.body == null ? null : serialize(response.body, type);
+        synchronized (this) {
+            remove(key);
+            if (content == null || content.length > maxWeight) {
+                return;
+            }
+            entries.put(key, new Entry(content, response.response));
+            weight += content.length;
+            Iterator<Map.Entry<ContentKey, Entry>> it = entries.entrySet().iterator();
+            while (weight > maxWeight && it.hasNext()) {
+                weight -= it.next().getValue().content.length;
+                it.remove();
+                evictionCount.incrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * Drops all content of a session.
+     */
+    synchronized void invalidate(String sessionKey) {
+        Iterator<Map.Entry<ContentKey, Entry>> it = entries.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<ContentKey, Entry> entry = it.next();
+            if (entry.getKey().sessionKey.equals(sessionKey)) {
+                weight -= entry.getValue().content.length;
+                it.remove();
+            }
+        }
+    }
+
+    synchronized void clear() {
+        entries.clear();
+        weight = 0;
+    }
+
+    synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * Size of cached content in bytes.
+     */
+    synchronized long getWeight() {
+        return weight;
+    }
+
+    long getHitCount() {
+        return hitCount.get();
+    }
+
+    long getMissCount() {
+        return missCount.get();
+    }
+
+    long getEvictionCount() {
+        return evictionCount.get();
+    }
+
+    private synchronized void remove(ContentKey key) {
+        Entry previous = entries.remove(key);
+        if (previous != null) {
+            weight -= previous.content.length;
+        }
+    }
+
+    private byte[] serialize(Object body, Class<?> type) {
+        ByteArrayOutputStream content = new ByteArrayOutputStream();
+        try (Writer writer = new OutputStreamWriter(content, UTF8)) {
+            gson.toJson(body, type, writer);
+        } catch (IOException e) {
+            // Writing to memory doesn't fail
+            throw new IllegalStateException(e);
+        }
+        return content.toByteArray();
+    }
+
+    private static final class Entry {
+        final byte[] content;
+        final Response<?> response;
+
+        Entry(byte[] content, Response<?> response) {
+            this.content = content;
+            this.response = response;
+        }
+    }
+}
@@ -0,0 +1,33 @@
+/*
+ * Copyright © 2017 digi.me. All rights reserved.
+ */
+
+package me.digi.sdk.core;
+
+/**
+ * Identifies a file's content within a session, in one representation (for example {@code CAFileResponse} or raw JSON).
+ */
+final class ContentKey {
+    final String sessionKey;
+    final String fileId;
+    final Class<?> type;
+
+    ContentKey(String sessionKey, String fileId, Class<?> type) {
+        this.sessionKey = sessionKey;
+        this.fileId = fileId;
+        this.type = type;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof ContentKey)) return false;
+        ContentKey key = (ContentKey) o;
+        return sessionKey.equals(key.sessionKey) && fileId.equals(key.fileId) && type.equals(key.type);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * (31 * sessionKey.hashCode() + fileId.hashCode()) + type.hashCode();
+    }
+}
@@ -4,9 +4,19 @@
 
 package me.digi.sdk.core;
 
+import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 
 import me.digi.sdk.core.config.ApiConfig;
+import me.digi.sdk.core.entities.CAContent;
+import me.digi.sdk.core.entities.CAContentTypeAdapter;
+import me.digi.sdk.core.entities.CAFileResponse;
+import me.digi.sdk.core.entities.CAFileResponseTypeAdapter;
+import me.digi.sdk.core.entities.CAFiles;
+import me.digi.sdk.core.entities.CAFilesTypeAdapter;
+import me.digi.sdk.core.internal.CAContentConverterFactory;
+import me.digi.sdk.core.internal.CAFileDecoder;
+import me.digi.sdk.core.internal.concurrent.SDKExecutors;
 import me.digi.sdk.core.internal.network.CallConfigAdapterFactory;
 import me.digi.sdk.core.service.ConsentAccessSessionService;
 import me.digi.sdk.core.service.ConsentAccessService;
@@ -19,31 +29,34 @@ import retrofit2.Retrofit;
 import retrofit2.converter.gson.GsonConverterFactory;
 
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
 
 @SuppressWarnings("unchecked")
 public class DigiMeAPIClient {
     private final Retrofit clientRetrofit;
     private final ConcurrentHashMap<Class, Object> registeredServices;
+    private final CAFileDecoder fileDecoder;
+    private final ConsentAccessService fileService;
 
 
     public DigiMeAPIClient() {
         this(OkHttpProvider.client(
                 DigiMeClient.getInstance().getCertificatePinner()),
-                new ApiConfig());
+                new ApiConfig(), null);
     }
 
     public DigiMeAPIClient(OkHttpClient client) {
         this(OkHttpProvider.client(
                 client,
                 DigiMeClient.getInstance().getCertificatePinner()),
-                new ApiConfig());
+                new ApiConfig(), null);
     }
 
     public DigiMeAPIClient(CASession session) {
         this(OkHttpProvider.client(
                 session,
                 DigiMeClient.getInstance().getCertificatePinner()),
-                new ApiConfig());
+                new ApiConfig(), session.sessionKey);
     }
 
     public DigiMeAPIClient(OkHttpClient client, CASession session) {
@@ -51,20 +64,42 @@ public class DigiMeAPIClient {
                 client,
                 session,
                 DigiMeClient.getInstance().getCertificatePinner()),
-                new ApiConfig());
+                new ApiConfig(), session.sessionKey);
     }
 
-    private DigiMeAPIClient(OkHttpClient client, ApiConfig apiConfig) {
+    /**
+     * @param keyHint Key of the session this client fetches files for, so the key that last decrypted its files is tried first
+     */
+    private DigiMeAPIClient(OkHttpClient client, ApiConfig apiConfig, String keyHint) {
         this.registeredServices = new ConcurrentHashMap<>();
 
-        GsonBuilder gson = new GsonBuilder();
-        gson.registerTypeAdapter(CASession.class, new CASessionDeserializer());
-        this.clientRetrofit = new Retrofit.Builder()
+        Gson converterGson = createGson();
+        this.fileDecoder = new CAFileDecoder(DigiMeClient.getDefaultKeyLoader().getStore(), converterGson, SDKExecutors.cpu(), keyHint);
+        Retrofit.Builder builder = new Retrofit.Builder()
                 .addCallAdapterFactory(CallConfigAdapterFactory.create())
                 .client(client)
                 .baseUrl(apiConfig.getUrl())
-                .addConverterFactory(GsonConverterFactory.create(gson.create()))
-                .build();
+                .addConverterFactory(CAContentConverterFactory.create(DigiMeClient.getDefaultKeyLoader().getStore(), converterGson, keyHint))
+                .addConverterFactory(GsonConverterFactory.create(converterGson));
+        if (DigiMeClient.callbackExecutor != null) {
+            builder.callbackExecutor(DigiMeClient.callbackExecutor);
+        }
+        this.clientRetrofit = builder.build();
+        // Files of a batch are handed over to the decoding pipeline as soon as they arrive, away from the callback thread
+        this.fileService = builder.callbackExecutor(SDKExecutors.io()).build().create(ConsentAccessService.class);
+    }
+
+    /**
+     * Gson with the SDK's entity adapters, used to parse (and write) API responses.
+     */
+    static Gson createGson() {
+        GsonBuilder gson = new GsonBuilder();
+        gson.registerTypeAdapter(CASession.class, new CASessionDeserializer());
+        CAContentTypeAdapter contentAdapter = new CAContentTypeAdapter();
+        gson.registerTypeAdapter(CAContent.class, contentAdapter);
+        gson.registerTypeAdapter(CAFileResponse.class, new CAFileResponseTypeAdapter(contentAdapter));
+        gson.registerTypeAdapter(CAFiles.class, new CAFilesTypeAdapter());
+        return gson.create();
     }
 
     private <T> T registerClass(Class<T> klas) {
@@ -86,6 +121,28 @@ public class DigiMeAPIClient {
         return registerClass(ConsentAccessService.class);
     }
 
+    /**
+     * Executor that service call callbacks are run on, {@code null} if they run on the network thread.
+     */
+    Executor callbackExecutor() {
+        return clientRetrofit.callbackExecutor();
+    }
+
+    /**
+     * Service for files fetched by the {@link FilePipeline}, which calls back on the I/O executor
+     * instead of the {@linkplain #callbackExecutor() callback executor}.
+     */
+    ConsentAccessService fileService() {
+        return fileService;
+    }
+
+    /**
+     * Decoder for responses of {@link ConsentAccessService#dataEncrypted}.
+     */
+    CAFileDecoder fileDecoder() {
+        return fileDecoder;
+    }
+
 
 
 }
\ No newline at end of file
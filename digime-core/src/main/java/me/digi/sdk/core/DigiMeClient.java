@@ -9,14 +9,16 @@ import android.app.Activity;
 import android.content.Context;
 import android.content.pm.ApplicationInfo;
 import android.content.pm.PackageManager;
-import android.os.AsyncTask;
+import android.support.annotation.NonNull;
 
 import com.google.gson.JsonElement;
 
+import java.io.IOException;
 import java.io.InputStream;
 import java.lang.ref.WeakReference;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.List;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentHashMap;
@@ -25,16 +27,27 @@ import java.util.concurrent.Executor;
 import java.util.concurrent.FutureTask;
 
 import me.digi.sdk.core.config.ApiConfig;
+import me.digi.sdk.core.config.BatchOptions;
+import me.digi.sdk.core.config.StreamOptions;
+import me.digi.sdk.core.entities.CAContent;
 import me.digi.sdk.core.entities.CAFileResponse;
 import me.digi.sdk.core.entities.CAFiles;
 import me.digi.sdk.core.internal.AuthorizationException;
+import me.digi.sdk.core.internal.CAContentStream;
 import me.digi.sdk.core.internal.Util;
+import me.digi.sdk.core.internal.concurrent.SDKExecutors;
+import me.digi.sdk.core.internal.network.FileCache;
 import me.digi.sdk.core.provider.KeyLoaderProvider;
+import me.digi.sdk.core.provider.OkHttpProvider;
 import me.digi.sdk.core.session.CASession;
 import me.digi.sdk.core.session.CASessionManager;
+import me.digi.sdk.core.session.Session;
+import me.digi.sdk.core.session.SessionListener;
 import me.digi.sdk.core.session.SessionManager;
 import okhttp3.CertificatePinner;
 import okhttp3.OkHttpClient;
+import okhttp3.ResponseBody;
+import retrofit2.Call;
 
 
 @SuppressWarnings({"BooleanMethodIsAlwaysInverted", "SameParameterValue", "UnusedReturnValue", "StaticFieldLeak"})
@@ -43,7 +56,6 @@ public final class DigiMeClient {
 
     private static volatile DigiMeClient singleton;
 
-    private static volatile Executor coreExecutor;
     private static volatile String applicationId;
     private static volatile String applicationName;
     private static volatile String[] contractIds;
@@ -80,8 +92,63 @@ public final class DigiMeClient {
      */
     public static int maxRetryCount = 0;
 
+    /**
+     *   Maximum number of idle connections kept in the connection pool shared by all sessions
+     */
+    public static int maxIdleConnections = 5;
+
+    /**
+     *   Time in seconds an idle pooled connection is kept alive
+     */
+    public static long connectionKeepAlive = 300;
+
+    /**
+     *   Maximum number of concurrent requests per host, shared by all sessions. Also caps batch download concurrency.
+     */
+    public static int maxRequestsPerHost = 5;
+
+    /**
+     *   Maximum number of session API clients kept, besides the default one. Least recently used clients are released first.
+     */
+    public static int maxApiClients = 8;
+
+    /**
+     *   Opt-in TLS 1.3 where the platform supports it, and HTTP/2 even if the supplied http client restricts protocols,
+     *   so that concurrent file requests share one connection. When not set, the client's protocols are left unchanged.
+     *   Applies to API clients created afterwards.
+     */
+    public static boolean enableHttp2 = false;
+
+    /**
+     *   Maximum size in bytes of the disk cache of (still encrypted) file responses. 0 disables the cache.
+     *   Read when the first API client is created.
+     */
+    public static long fileCacheSize = 0;
+
+    /**
+     *   Maximum size in bytes of decoded file content kept in memory (serialized as JSON) for repeated
+     *   getFileContent and getFileJSON calls within a session. 0 disables the cache.
+     */
+    public static long contentCacheSize = 4 * 1024 * 1024;
+
+    /**
+     *   Executor that SDKCallback, SDKListener and ItemCallback methods are called on. By default (null) they are called
+     *   on the main thread; {@link #DECODING_THREAD} calls them on the background thread that decrypted and parsed the
+     *   response. Decryption and parsing never run on this executor. Applies to API clients created afterwards.
+     */
+    public static Executor callbackExecutor = null;
+
+    /**
+     *   Callback executor that runs callbacks right away, on the thread that decrypted and parsed the response.
+     */
+    public static final Executor DECODING_THREAD = new Executor() {
+        @Override
+        public void execute(@NonNull Runnable command) {
+            command.run();
+        }
+    };
+
     private static Context appContext;
-    private static final Object SYNC = new Object();
     private static KeyLoaderProvider loaderProvider;
 
     //Predefined <meta-data> paths where the sdk looks for necessary items
@@ -92,7 +159,15 @@ public final class DigiMeClient {
     private static CASession defaultSession;
     private final List<SDKListener> listeners = new CopyOnWriteArrayList<>();
 
-    private final ConcurrentHashMap<CASession, DigiMeAPIClient> networkClients;
+    private final ApiClientCache<DigiMeAPIClient> networkClients;
+    private final ContentCache contentCache = new ContentCache(DigiMeAPIClient.createGson());
+    private final CallCoalescer inFlightContent = new CallCoalescer();
+    private final FilePipeline filePipeline = new FilePipeline(new Executor() {
+        @Override
+        public void execute(@NonNull Runnable command) {
+            getCpuExecutor().execute(command);
+        }
+    }, Runtime.getRuntime().availableProcessors());
     private volatile CertificatePinner certificatePinner;
     private volatile DigiMeAuthorizationManager authManager;
 
@@ -101,7 +176,12 @@ public final class DigiMeClient {
     public final Flow<CAContract> flow;
 
     private DigiMeClient() {
-        this.networkClients = new ConcurrentHashMap<>();
+        this.networkClients = new ApiClientCache<>(new ApiClientCache.ClientFactory<DigiMeAPIClient>() {
+            @Override
+            public DigiMeAPIClient create(CASession session) {
+                return new DigiMeAPIClient(session);
+            }
+        });
 
         this.flow = new Flow<>(new FlowLookupInitializer<CAContract>() {
             @Override
@@ -146,13 +226,18 @@ public final class DigiMeClient {
         getCoreExecutor().execute(backgroundStartup);
     }
 
+    /**
+     * SDK pool for work that blocks on disk or network. See {@link SDKExecutors} for metrics and replacing it.
+     */
     public static Executor getCoreExecutor() {
-        synchronized (SYNC) {
-            if (DigiMeClient.coreExecutor == null) {
-                DigiMeClient.coreExecutor = AsyncTask.THREAD_POOL_EXECUTOR;
-            }
-        }
-        return DigiMeClient.coreExecutor;
+        return SDKExecutors.io();
+    }
+
+    /**
+     * SDK pool for CPU bound work such as decrypting and parsing, with a thread per core.
+     */
+    public static Executor getCpuExecutor() {
+        return SDKExecutors.cpu();
     }
     
 
@@ -197,6 +282,7 @@ public final class DigiMeClient {
 
     private void onStart(){
         consentAccessSessionManager = new CASessionManager();
+        consentAccessSessionManager.addListener(new ClientEvictionListener());
     }
 
     private synchronized void createCertificatePinner() {
@@ -349,7 +435,7 @@ public final class DigiMeClient {
         getFileContentWithSession(fileId, getSessionManager().getCurrentSession(), callback);
     }
 
-    public void getFileContentWithSession(String fileId, CASession session, SDKCallback<CAFileResponse> callback) {
+    public void getFileContentWithSession(final String fileId, final CASession session, final SDKCallback<CAFileResponse> callback) {
         checkClientInitialized();
         ContentForwardCallback<CAFileResponse> proxy = new ContentForwardCallback<>(callback, fileId, CAFileResponse.class);
         if (!validateSession(session, proxy)) return;
@@ -357,15 +443,148 @@ public final class DigiMeClient {
             throw new IllegalArgumentException("File ID can not be null.");
         }
         //noinspection ConstantConditions
-        getApi().consentAccessService().data(session.sessionKey, fileId)
-                .enqueue(proxy);
+        loadContent(session, fileId, CAFileResponse.class, proxy, new Runnable() {
+            @Override
+            public void run() {
+                fetchFileContent(session, fileId, callback);
+            }
+        });
+    }
+
+    private void fetchFileContent(CASession session, String fileId, SDKCallback<CAFileResponse> callback) {
+        SDKCallback<CAFileResponse> flight = inFlightContent.join(new ContentKey(session.sessionKey, fileId, CAFileResponse.class), callback);
+        if (flight == null) {
+            return;
+        }
+        getApi(session).consentAccessService().data(session.sessionKey, fileId)
+                .enqueue(new ContentCacheCallback<>(new ContentForwardCallback<>(flight, fileId, CAFileResponse.class),
+                        session, fileId, CAFileResponse.class));
+    }
+
+    public FileBatch getFiles(Collection<String> fileIds, BatchCallback callback) {
+        return getFiles(fileIds, new BatchOptions(), callback);
+    }
+
+    public FileBatch getFiles(Collection<String> fileIds, BatchOptions options, BatchCallback callback) {
+        return getFilesWithSession(fileIds, getSessionManager().getCurrentSession(), options, callback);
+    }
+
+    /**
+     * Downloads content of several files with a limited number of requests in flight.
+     * Downloaded files are decrypted and parsed on the CPU executor while further files are fetched,
+     * see {@link #getPipelineStages()}.
+     * Each file is also reported to registered {@link SDKListener}s, same as with {@link #getFileContentWithSession}.
+     *
+     * @return Handle to follow progress of the batch or cancel it
+     */
+    public FileBatch getFilesWithSession(Collection<String> fileIds, CASession session, BatchOptions options, BatchCallback callback) {
+        checkClientInitialized();
+        if (fileIds == null) {
+            throw new IllegalArgumentException("File IDs can not be null.");
+        }
+        for (String fileId : fileIds) {
+            if (fileId == null) {
+                throw new IllegalArgumentException("File ID can not be null.");
+            }
+        }
+        if (callback == null) {
+            throw new IllegalArgumentException("Batch callback can not be null.");
+        }
+        if (options == null) {
+            options = new BatchOptions();
+        }
+        if (session == null || !session.isValid()) {
+            FileBatch batch = new FileBatch(fileIds, options, callback, null);
+            batch.fail(new SDKValidationException(session == null ? "Current session is null" : "Current session is invalid",
+                    SDKValidationException.SESSION_VALIDATION_ERROR));
+            return batch;
+        }
+        final DigiMeAPIClient client = getApi(session);
+        final String sessionKey = session.sessionKey;
+        FileBatch batch = new FileBatch(fileIds, options, callback, new FileBatch.FileFetcher() {
+            @Override
+            public Call<?> fetch(String fileId, final FileBatch.FileCallback fileCallback) {
+                Call<ResponseBody> call = client.fileService().dataEncrypted(sessionKey, fileId);
+                filePipeline.fetch(call, client.fileDecoder(), new Runnable() {
+                    @Override
+                    public void run() {
+                        fileCallback.downloaded();
+                    }
+                }, new ContentForwardCallback<>(fileCallback, fileId, CAFileResponse.class), client.callbackExecutor());
+                return call;
+            }
+        }, options.getMaxConcurrentRequests() + filePipeline.getBufferSize());
+        batch.start();
+        return batch;
+    }
+
+    public FileContentStream getFileContentStreaming(String fileId, ItemCallback<CAContent> callback) {
+        return getFileContentStreaming(fileId, new StreamOptions(), callback);
+    }
+
+    public FileContentStream getFileContentStreaming(String fileId, StreamOptions options, ItemCallback<CAContent> callback) {
+        return getFileContentStreamingWithSession(fileId, getSessionManager().getCurrentSession(), options, callback);
+    }
+
+    /**
+     * Streams content of a file, passing items to {@code callback} in small batches while the file is still being
+     * decrypted and parsed, instead of once the whole {@link CAFileResponse} has been built.
+     * Streamed content is not reported to {@link SDKListener}s.
+     *
+     * @return Handle to follow progress of the stream or cancel it
+     */
+    public FileContentStream getFileContentStreamingWithSession(String fileId, CASession session, StreamOptions options, ItemCallback<CAContent> callback) {
+        checkClientInitialized();
+        if (fileId == null) {
+            throw new IllegalArgumentException("File ID can not be null.");
+        }
+        if (callback == null) {
+            throw new IllegalArgumentException("Item callback can not be null.");
+        }
+        if (options == null) {
+            options = new StreamOptions();
+        }
+        if (session == null || !session.isValid()) {
+            FileContentStream stream = new FileContentStream(fileId, options, callback, getCoreExecutor(), null);
+            stream.fail(new SDKValidationException(session == null ? "Current session is null" : "Current session is invalid",
+                    SDKValidationException.SESSION_VALIDATION_ERROR));
+            return stream;
+        }
+        DigiMeAPIClient client = getApi(session);
+        // Decoding reads the streamed response and waits for the consumer, so it would hold up a CPU pool thread
+        final FileContentStream stream = new FileContentStream(fileId, options, callback, getCoreExecutor(), client.callbackExecutor());
+        Call<CAContentStream> call = client.consentAccessService().dataStream(session.sessionKey, fileId);
+        stream.setCall(call);
+        call.enqueue(new SDKCallback<CAContentStream>() {
+            @Override
+            public void succeeded(SDKResponse<CAContentStream> result) {
+                final CAContentStream content = result.body;
+                stream.read(new FileContentStream.ItemReader() {
+                    @Override
+                    public List<CAContent> read(int maxCount) throws IOException {
+                        return content.read(maxCount);
+                    }
+
+                    @Override
+                    public void close() throws IOException {
+                        content.close();
+                    }
+                });
+            }
+
+            @Override
+            public void failed(SDKException exception) {
+                stream.fail(exception);
+            }
+        });
+        return stream;
     }
 
     public void getFileJSON(String fileId, SDKCallback<JsonElement> callback) {
         getFileJSONWithSession(fileId, getSessionManager().getCurrentSession(), callback);
     }
 
-    public void getFileJSONWithSession(String fileId, CASession session, SDKCallback<JsonElement> callback) {
+    public void getFileJSONWithSession(final String fileId, final CASession session, final SDKCallback<JsonElement> callback) {
         checkClientInitialized();
         ContentForwardCallback<JsonElement> proxy = new ContentForwardCallback<>(callback, fileId, JsonElement.class);
         if (!validateSession(session, proxy)) return;
@@ -373,8 +592,22 @@ public final class DigiMeClient {
             throw new IllegalArgumentException("File ID can not be null.");
         }
         //noinspection ConstantConditions
-        getApi().consentAccessService().dataRaw(session.sessionKey, fileId)
-                .enqueue(proxy);
+        loadContent(session, fileId, JsonElement.class, proxy, new Runnable() {
+            @Override
+            public void run() {
+                fetchFileJSON(session, fileId, callback);
+            }
+        });
+    }
+
+    private void fetchFileJSON(CASession session, String fileId, SDKCallback<JsonElement> callback) {
+        SDKCallback<JsonElement> flight = inFlightContent.join(new ContentKey(session.sessionKey, fileId, JsonElement.class), callback);
+        if (flight == null) {
+            return;
+        }
+        getApi(session).consentAccessService().dataRaw(session.sessionKey, fileId)
+                .enqueue(new ContentCacheCallback<>(new ContentForwardCallback<>(flight, fileId, JsonElement.class),
+                        session, fileId, JsonElement.class));
     }
 
     public DigiMeAPIClient getDefaultApi() {
@@ -392,10 +625,35 @@ public final class DigiMeClient {
 
     public DigiMeAPIClient getApi(CASession session) {
         checkClientInitialized();
-        if (!networkClients.containsKey(session)) {
-            networkClients.putIfAbsent(session, new DigiMeAPIClient(session));
-        }
-        return networkClients.get(session);
+        return networkClients.get(session, session == defaultSession);
+    }
+
+    /**
+     * Disk cache of file responses with its hit and saved byte counts, or {@code null} if {@link #fileCacheSize} is not set.
+     */
+    public FileCache getFileCache() {
+        return OkHttpProvider.fileCache();
+    }
+
+    /**
+     * Metrics of the stages batch downloads go through: fetch, decrypt, parse and deliver.
+     */
+    public List<PipelineStage> getPipelineStages() {
+        return filePipeline.getStages();
+    }
+
+    /**
+     * Drops all file content kept in memory for repeated {@link #getFileContent} and {@link #getFileJSON} calls.
+     */
+    public void clearContentCache() {
+        contentCache.clear();
+    }
+
+    /**
+     * Number of API clients currently kept for sessions, including the default one.
+     */
+    public int getClientCount() {
+        return networkClients.size();
     }
 
     public DigiMeAPIClient addCustomClient(OkHttpClient client) {
@@ -422,6 +680,45 @@ public final class DigiMeClient {
      *  Private helpers
      */
 
+    /**
+     * Answers from the content cache if the file is cached for the session, otherwise runs {@code fetch}.
+     * Cached content is parsed on the CPU executor.
+     */
+    private <T> void loadContent(final CASession session, final String fileId, final Class<T> type,
+                                 final SDKCallback<T> callback, final Runnable fetch) {
+        if (!contentCache.contains(session.sessionKey, fileId, type)) {
+            fetch.run();
+            return;
+        }
+        getCpuExecutor().execute(new Runnable() {
+            @Override
+            public void run() {
+                SDKResponse<T> cached = contentCache.get(session.sessionKey, fileId, type);
+                if (cached == null) {
+                    // Evicted since it was looked up
+                    fetch.run();
+                } else {
+                    deliverCached(session, callback, cached);
+                }
+            }
+        });
+    }
+
+    private <T> void deliverCached(CASession session, final SDKCallback<T> callback, final SDKResponse<T> cached) {
+        Executor executor = getApi(session).callbackExecutor();
+        Runnable delivery = new Runnable() {
+            @Override
+            public void run() {
+                callback.succeeded(cached);
+            }
+        };
+        if (executor == null) {
+            delivery.run();
+        } else {
+            executor.execute(delivery);
+        }
+    }
+
     private static void updatePropertiesFromMetadata(Context context) {
         if (context == null) {
             return;
@@ -598,6 +895,29 @@ public final class DigiMeClient {
         }
     }
 
+    /**
+     *  Releases API clients and cached content of sessions that have been destroyed
+     */
+
+    private class ClientEvictionListener implements SessionListener {
+
+        @Override
+        public void sessionCreated(Session session) {}
+
+        @Override
+        public void sessionDestroyed(Session session, DestroyedReason reason) {
+            // Session which only changed its ID is destroyed under the old ID, but still registered under the new one
+            if (session instanceof CASession && consentAccessSessionManager.getSession(session.getId()) == null) {
+                networkClients.remove((CASession) session);
+                contentCache.invalidate(((CASession) session).sessionKey);
+                getDefaultKeyLoader().getStore().clearKeyHint(((CASession) session).sessionKey);
+            }
+        }
+
+        @Override
+        public void currentSessionChanged(Session oldSession, Session newSession) {}
+    }
+
     /**
      *  Callback wrappers
      */
@@ -705,6 +1025,53 @@ public final class DigiMeClient {
         }
     }
 
+    /**
+     *  Caches fetched content on the CPU executor, as serializing it walks the whole content.
+     *  Content of a session destroyed while it was fetched or weighed is not kept.
+     */
+    private class ContentCacheCallback<T> extends SDKCallback<T> {
+        private final SDKCallback<T> callback;
+        private final CASession session;
+        private final String fileId;
+        private final Class<T> type;
+
+        ContentCacheCallback(SDKCallback<T> callback, CASession session, String fileId, Class<T> type) {
+            this.callback = callback;
+            this.session = session;
+            this.fileId = fileId;
+            this.type = type;
+        }
+
+        @Override
+        public void succeeded(final SDKResponse<T> result) {
+            if (contentCacheSize > 0 && result.body != null && isSessionLive()) {
+                getCpuExecutor().execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (!isSessionLive()) {
+                            return;
+                        }
+                        contentCache.put(session.sessionKey, fileId, type, result);
+                        // Session destroyed after the check above has had its content invalidated already
+                        if (!isSessionLive()) {
+                            contentCache.invalidate(session.sessionKey);
+                        }
+                    }
+                });
+            }
+            callback.succeeded(result);
+        }
+
+        @Override
+        public void failed(SDKException exception) {
+            callback.failed(exception);
+        }
+
+        private boolean isSessionLive() {
+            return consentAccessSessionManager.getSession(session.getId()) != null;
+        }
+    }
+
     private class ContentForwardCallback<T> extends SDKCallback<T> {
         final SDKCallback<T> callback;
         final String reserved;
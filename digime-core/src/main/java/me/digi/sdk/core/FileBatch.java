@@ -0,0 +1,255 @@
+/*
+ * Copyright © 2017 digi.me. All rights reserved.
+ */
+
+package me.digi.sdk.core;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+
+import me.digi.sdk.core.config.BatchOptions;
+import me.digi.sdk.core.entities.CAFileResponse;
+import retrofit2.Call;
+
+/**
+ * Handle of a batch file download started with {@link DigiMeClient#getFiles}.
+ * Files are requested in the given order with at most {@link BatchOptions#getMaxConcurrentRequests()} requests in flight,
+ * and each result is passed to the {@link BatchCallback} as soon as it arrives. Duplicate file IDs are requested once.
+ *
+ * When files are decoded in a {@link FilePipeline}, a request slot is freed as soon as the download completes,
+ * so the next file is fetched while earlier ones are still being decrypted and parsed.
+ */
+public final class FileBatch {
+
+    interface FileFetcher {
+        /**
+         * Starts an asynchronous request for {@code fileId}.
+         *
+         * @return Started call, or {@code null} if the request failed before it was sent
+         */
+        Call<?> fetch(String fileId, FileCallback callback);
+    }
+
+    private final Queue<String> pending;
+    private final Map<String, Call<?>> inFlight = new HashMap<>();
+    private final Set<String> downloading = new HashSet<>();
+    private final int totalCount;
+    private final int maxInFlight;
+    private final BatchOptions options;
+    private final BatchCallback callback;
+    private final FileFetcher fetcher;
+
+    private int succeededCount;
+    private int failedCount;
+    private boolean cancelled;
+    private boolean finished;
+
+    FileBatch(Collection<String> fileIds, BatchOptions options, BatchCallback callback, FileFetcher fetcher) {
+        this(fileIds, options, callback, fetcher, options.getMaxConcurrentRequests());
+    }
+
+    /**
+     * @param maxInFlight Maximum number of files started but not completed yet, including downloaded files
+     *                    still being decoded. Requests in flight stay limited by {@code options}.
+     */
+    FileBatch(Collection<String> fileIds, BatchOptions options, BatchCallback callback, FileFetcher fetcher, int maxInFlight) {
+        this.pending = new ArrayDeque<>(new LinkedHashSet<>(fileIds));
+        this.totalCount = pending.size();
+        this.maxInFlight = Math.max(maxInFlight, options.getMaxConcurrentRequests());
+        this.options = options;
+        this.callback = callback;
+        this.fetcher = fetcher;
+    }
+
+    void start() {
+        dispatch();
+        finishIfDone();
+    }
+
+    /**
+     * Fails all files without requesting them, used when the batch can't be started.
+     */
+    void fail(SDKException exception) {
+        List<String> failed;
+        synchronized (this) {
+            failed = new ArrayList<>(pending);
+            pending.clear();
+            failedCount += failed.size();
+        }
+        for (String fileId : failed) {
+            callback.fileFailed(this, fileId, exception);
+        }
+        finishIfDone();
+    }
+
+    /**
+     * Cancels requests in flight and drops the files that haven't been requested yet.
+     * Results that arrive after cancellation are not delivered.
+     */
+    public void cancel() {
+        List<Call<?>> calls;
+        synchronized (this) {
+            if (cancelled || finished) {
+                return;
+            }
+            cancelled = true;
+            pending.clear();
+            calls = new ArrayList<>(inFlight.values());
+            inFlight.clear();
+            downloading.clear();
+        }
+        for (Call<?> call : calls) {
+            if (call != null) {
+                call.cancel();
+            }
+        }
+        finishIfDone();
+    }
+
+    public int getTotalCount() {
+        return totalCount;
+    }
+
+    public synchronized int getSucceededCount() {
+        return succeededCount;
+    }
+
+    public synchronized int getFailedCount() {
+        return failedCount;
+    }
+
+    /**
+     * Number of files that have either been retrieved or failed.
+     */
+    public synchronized int getCompletedCount() {
+        return succeededCount + failedCount;
+    }
+
+    public synchronized boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * Whether all files have completed or the batch was cancelled.
+     */
+    public synchronized boolean isFinished() {
+        return finished;
+    }
+
+    private void dispatch() {
+        List<String> started = new ArrayList<>();
+        synchronized (this) {
+            while (!cancelled && downloading.size() < options.getMaxConcurrentRequests() && inFlight.size() < maxInFlight
+                    && !pending.isEmpty()) {
+                String fileId = pending.poll();
+                inFlight.put(fileId, null);
+                downloading.add(fileId);
+                started.add(fileId);
+            }
+        }
+        List<String> notStarted = new ArrayList<>();
+        List<RuntimeException> startFailures = new ArrayList<>();
+        for (String fileId : started) {
+            Call<?> call;
+            try {
+                call = fetcher.fetch(fileId, new FileCallback(fileId));
+            } catch (RuntimeException e) {
+                // Request couldn't even be created (e.g. bad arguments), the file is reported as failed
+                notStarted.add(fileId);
+                startFailures.add(e);
+                continue;
+            }
+            boolean cancelCall = false;
+            synchronized (this) {
+                if (inFlight.containsKey(fileId)) {
+                    inFlight.put(fileId, call);
+                } else {
+                    cancelCall = cancelled;
+                }
+            }
+            if (cancelCall && call != null) {
+                call.cancel();
+            }
+        }
+        for (int i = 0; i < notStarted.size(); i++) {
+            complete(notStarted.get(i), null, SDKCallback.failureOf(startFailures.get(i)));
+        }
+    }
+
+    private void downloaded(String fileId) {
+        synchronized (this) {
+            if (!downloading.remove(fileId)) {
+                return;
+            }
+        }
+        dispatch();
+    }
+
+    private void complete(String fileId, CAFileResponse content, SDKException exception) {
+        synchronized (this) {
+            if (cancelled || !inFlight.containsKey(fileId)) {
+                return;
+            }
+            inFlight.remove(fileId);
+            downloading.remove(fileId);
+            if (exception == null) {
+                succeededCount++;
+            } else {
+                failedCount++;
+            }
+        }
+        if (exception == null) {
+            callback.fileRetrieved(this, fileId, content);
+        } else {
+            callback.fileFailed(this, fileId, exception);
+            if (options.shouldCancelOnFailure()) {
+                cancel();
+            }
+        }
+        dispatch();
+        finishIfDone();
+    }
+
+    private void finishIfDone() {
+        synchronized (this) {
+            if (finished || !(cancelled || (pending.isEmpty() && inFlight.isEmpty()))) {
+                return;
+            }
+            finished = true;
+        }
+        callback.batchFinished(this);
+    }
+
+    final class FileCallback extends SDKCallback<CAFileResponse> {
+        private final String fileId;
+
+        FileCallback(String fileId) {
+            this.fileId = fileId;
+        }
+
+        /**
+         * Reports that the file was downloaded and is being decoded, freeing its request slot.
+         */
+        void downloaded() {
+            FileBatch.this.downloaded(fileId);
+        }
+
+        @Override
+        public void succeeded(SDKResponse<CAFileResponse> result) {
+            complete(fileId, result.body, null);
+        }
+
+        @Override
+        public void failed(SDKException exception) {
+            complete(fileId, null, exception);
+        }
+    }
+}
@@ -0,0 +1,206 @@
+/*
+ * Copyright © 2017 digi.me. All rights reserved.
+ */
+
+package me.digi.sdk.core;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import me.digi.sdk.core.config.StreamOptions;
+import me.digi.sdk.core.entities.CAContent;
+import retrofit2.Call;
+
+/**
+ * Handle of file content streamed with {@link DigiMeClient#getFileContentStreaming}.
+ *
+ * Items are decrypted and parsed on a background thread and passed to the {@link ItemCallback} in batches of up to
+ * {@link StreamOptions#getItemsPerBatch()} as soon as they are decoded. Decoding pauses while
+ * {@link StreamOptions#getMaxPendingBatches()} batches are waiting to be delivered, so a slow consumer
+ * doesn't make the whole file pile up in memory.
+ */
+public final class FileContentStream {
+
+    interface ItemReader extends Closeable {
+        /**
+         * @return Up to {@code maxCount} items, or an empty list once all items have been read
+         */
+        List<CAContent> read(int maxCount) throws IOException;
+    }
+
+    private static final Executor DIRECT_EXECUTOR = new Executor() {
+        @Override
+        public void execute(Runnable command) {
+            command.run();
+        }
+    };
+
+    private final String fileId;
+    private final StreamOptions options;
+    private final ItemCallback<CAContent> callback;
+    private final Executor decodeExecutor;
+    private final Executor deliveryExecutor;
+    private final Semaphore pendingBatches;
+    private final AtomicInteger deliveredCount = new AtomicInteger();
+
+    private Call<?> call;
+    private boolean cancelled;
+    private boolean finished;
+
+    /**
+     * @param decodeExecutor   Executor to read, decrypt and parse items on. Reading blocks on the network, as the response
+     *                         is streamed, and while {@link StreamOptions#getMaxPendingBatches()} batches wait to be
+     *                         delivered, so this should be an I/O executor rather than the CPU one sized to the cores
+     * @param deliveryExecutor Executor to call {@code callback} on, or {@code null} to call it on the decoding thread
+     */
+    FileContentStream(String fileId, StreamOptions options, ItemCallback<CAContent> callback,
+                      Executor decodeExecutor, Executor deliveryExecutor) {
+        this.fileId = fileId;
+        this.options = options;
+        this.callback = callback;
+        this.decodeExecutor = decodeExecutor;
+        this.deliveryExecutor = deliveryExecutor == null ? DIRECT_EXECUTOR : deliveryExecutor;
+        this.pendingBatches = new Semaphore(options.getMaxPendingBatches());
+    }
+
+    public String getFileId() {
+        return fileId;
+    }
+
+    /**
+     * Number of items passed to the callback so far.
+     */
+    public int getDeliveredCount() {
+        return deliveredCount.get();
+    }
+
+    /**
+     * Cancels the request or stops decoding. Items decoded after cancellation are not delivered.
+     */
+    public void cancel() {
+        Call<?> inFlight;
+        synchronized (this) {
+            if (cancelled || finished) {
+                return;
+            }
+            cancelled = true;
+            inFlight = call;
+        }
+        if (inFlight != null) {
+            inFlight.cancel();
+        }
+        // Wakes up decoding waiting for deliveries
+        pendingBatches.release();
+        deliver(new Runnable() {
+            @Override
+            public void run() {
+                finish();
+            }
+        });
+    }
+
+    public synchronized boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * Whether all items were delivered, the stream failed or it was cancelled.
+     */
+    public synchronized boolean isFinished() {
+        return finished;
+    }
+
+    synchronized void setCall(Call<?> call) {
+        this.call = call;
+    }
+
+    /**
+     * Starts decoding items from {@code reader}, which is closed once the stream ends.
+     */
+    void read(final ItemReader reader) {
+        decodeExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    decode(reader);
+                } finally {
+                    try {
+                        reader.close();
+                    } catch (IOException ignored) {}
+                }
+            }
+        });
+    }
+
+    void fail(final SDKException exception) {
+        deliver(new Runnable() {
+            @Override
+            public void run() {
+                if (!isCancelled()) {
+                    callback.failed(FileContentStream.this, exception);
+                }
+                finish();
+            }
+        });
+    }
+
+    private void decode(ItemReader reader) {
+        try {
+            while (true) {
+                pendingBatches.acquire();
+                if (isCancelled()) {
+                    return;
+                }
+                final List<CAContent> items = reader.read(options.getItemsPerBatch());
+                if (items.isEmpty()) {
+                    deliver(new Runnable() {
+                        @Override
+                        public void run() {
+                            finish();
+                        }
+                    });
+                    return;
+                }
+                deliver(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            if (!isCancelled()) {
+                                deliveredCount.addAndGet(items.size());
+                                callback.itemsRetrieved(FileContentStream.this, items);
+                            }
+                        } finally {
+                            pendingBatches.release();
+                        }
+                    }
+                });
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            fail(new SDKException("Request Failure", e));
+        } catch (IOException e) {
+            fail(SDKCallback.failureOf(e));
+        } catch (RuntimeException e) {
+            // Malformed content surfaces as unchecked Gson exceptions
+            fail(new SDKException("Request Failure", e));
+        }
+    }
+
+    private void deliver(Runnable runnable) {
+        deliveryExecutor.execute(runnable);
+    }
+
+    private void finish() {
+        synchronized (this) {
+            if (finished) {
+                return;
+            }
+            finished = true;
+        }
+        callback.finished(this);
+    }
+}
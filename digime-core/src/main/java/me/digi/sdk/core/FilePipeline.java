@@ -0,0 +1,335 @@
+/*
+ * Copyright © 2017 digi.me. All rights reserved.
+ */
+
+package me.digi.sdk.core;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.Executor;
+
+import me.digi.sdk.core.entities.CAFileResponse;
+import me.digi.sdk.core.internal.CAFileDecoder;
+import okhttp3.ResponseBody;
+import retrofit2.Call;
+import retrofit2.Response;
+
+/**
+ * Retrieves files in four stages, so that a batch keeps the network and all cores busy at the same time:
+ * responses are fetched by the HTTP client, decrypted and parsed by workers on the CPU executor and then
+ * delivered on the callback executor of the request.
+ *
+ * Every stage after fetch has a bounded queue, and a worker only takes a file if there's room for its result
+ * in the queue of the next stage, so a slow stage holds back the ones before it instead of piling up decoded files.
+ * Response bodies are streamed and only read by the decrypt stage, so the queues bound the bytes held in memory
+ * as well as the number of files. Fetched files that don't fit in the decrypt queue wait in the fetch stage, where
+ * they keep their {@link FileBatch} slot until they are delivered. A failed file skips the remaining work and is delivered as a failure;
+ * files of cancelled calls are dropped, and their bodies closed, at the next stage.
+ */
+final class FilePipeline {
+    private static final Executor DIRECT_EXECUTOR = new Executor() {
+        @Override
+        public void execute(Runnable command) {
+            command.run();
+        }
+    };
+
+    private final Object lock = new Object();
+    private final PipelineStage fetchStage;
+    private final Step decrypt;
+    private final Step parse;
+    private final Step deliver;
+    private final Queue<Job> downloaded = new ArrayDeque<>();
+    private int fetching;
+
+    /**
+     * @param cpuExecutor Executor to decrypt and parse on
+     * @param cpuWorkers  Maximum number of files decrypted, and parsed, at the same time
+     */
+    FilePipeline(Executor cpuExecutor, int cpuWorkers) {
+        int capacity = 2 * cpuWorkers;
+        fetchStage = new PipelineStage("fetch", 0, 0);
+        deliver = new Step(new PipelineStage("deliver", 1, capacity), null, null) {
+            @Override
+            void process(Job job) {
+                if (job.failure != null) {
+                    job.callback.failed(job.failure);
+                } else {
+                    job.callback.succeeded(new SDKResponse<>(job.result, job.response));
+                }
+            }
+        };
+        parse = new Step(new PipelineStage("parse", cpuWorkers, capacity), cpuExecutor, deliver) {
+            @Override
+            void process(Job job) throws IOException {
+                job.result = job.decoder.parse(job.decrypted);
+                job.decrypted = null;
+            }
+        };
+        decrypt = new Step(new PipelineStage("decrypt", cpuWorkers, capacity), cpuExecutor, parse) {
+            @Override
+            void process(Job job) throws IOException {
+                ResponseBody body = job.body;
+                job.body = null;
+                try {
+                    job.decrypted = job.decoder.decrypt(body.source());
+                } finally {
+                    body.close();
+                }
+            }
+        };
+    }
+
+    /**
+     * Number of downloaded files a batch may keep waiting for decryption, on top of its requests in flight.
+     */
+    int getBufferSize() {
+        return decrypt.stage.getCapacity();
+    }
+
+    List<PipelineStage> getStages() {
+        return Collections.unmodifiableList(Arrays.asList(fetchStage, decrypt.stage, parse.stage, deliver.stage));
+    }
+
+    /**
+     * Starts fetching a file and passes it through the pipeline.
+     *
+     * @param call             Request for the encrypted file. The file is handed over to the decrypt stage on the thread
+     *                         the call calls back on, so that should not be the UI thread
+     * @param downloaded       Run once the response has been received, before it is decoded
+     * @param deliveryExecutor Executor to call {@code callback} on, or {@code null} to call it on a pipeline thread
+     */
+    void fetch(Call<ResponseBody> call, CAFileDecoder decoder, final Runnable downloaded,
+               SDKCallback<CAFileResponse> callback, Executor deliveryExecutor) {
+        final Job job = new Job(call, decoder, callback, deliveryExecutor == null ? DIRECT_EXECUTOR : deliveryExecutor);
+        synchronized (lock) {
+            fetching++;
+            updateFetchStage();
+        }
+        final long started = System.nanoTime();
+        call.enqueue(new SDKCallback<ResponseBody>() {
+            @Override
+            public void succeeded(SDKResponse<ResponseBody> result) {
+                job.body = result.body;
+                job.response = result.response;
+                fetched(job, started, downloaded);
+            }
+
+            @Override
+            public void failed(SDKException exception) {
+                job.failure = exception;
+                fetched(job, started, downloaded);
+            }
+        });
+    }
+
+    private void fetched(Job job, long started, Runnable downloaded) {
+        fetchStage.record(started, System.nanoTime(), job.failure != null);
+        if (downloaded != null) {
+            downloaded.run();
+        }
+        synchronized (lock) {
+            fetching--;
+            if (!job.isCancelled()) {
+                this.downloaded.add(job);
+            } else if (job.body != null) {
+                job.body.close();
+            }
+            admitDownloaded();
+            updateFetchStage();
+        }
+        pump();
+    }
+
+    /**
+     * Drops downloaded files of cancelled calls, then moves the others into the decrypt queue while it has room.
+     * Called with the lock held.
+     */
+    private void admitDownloaded() {
+        for (Iterator<Job> it = downloaded.iterator(); it.hasNext(); ) {
+            Job job = it.next();
+            if (job.isCancelled()) {
+                job.release();
+                it.remove();
+            }
+        }
+        while (!downloaded.isEmpty() && decrypt.hasRoom()) {
+            decrypt.queue.add(downloaded.poll());
+            decrypt.updateStage();
+        }
+    }
+
+    private void updateFetchStage() {
+        fetchStage.update(downloaded.size(), fetching);
+    }
+
+    /**
+     * Starts workers for every stage that has files queued and room for their results, last stage first
+     * so that files already decoded get out of the way.
+     */
+    private void pump() {
+        List<Task> tasks = new ArrayList<>();
+        synchronized (lock) {
+            deliver.takeAll(tasks);
+            parse.takeAll(tasks);
+            admitDownloaded();
+            decrypt.takeAll(tasks);
+            admitDownloaded();
+            updateFetchStage();
+        }
+        for (Task task : tasks) {
+            task.start();
+        }
+    }
+
+    private final class Task implements Runnable {
+        private final Step step;
+        private final Job job;
+
+        Task(Step step, Job job) {
+            this.step = step;
+            this.job = job;
+        }
+
+        void start() {
+            (step.executor != null ? step.executor : job.deliveryExecutor).execute(this);
+        }
+
+        @Override
+        public void run() {
+            long started = System.nanoTime();
+            boolean failed = false;
+            try {
+                if (!job.isCancelled() && (job.failure == null || step.next == null)) {
+                    step.process(job);
+                }
+            } catch (IOException e) {
+                job.failure = SDKCallback.failureOf(e);
+                failed = true;
+            } catch (RuntimeException e) {
+                failed = true;
+                if (step.next == null) {
+                    // Thrown by the callback, left to the delivery thread
+                    throw e;
+                }
+                // Malformed content surfaces as unchecked Gson exceptions
+                job.failure = new SDKException("Request Failure", e);
+            } finally {
+                step.stage.record(started, System.nanoTime(), failed);
+                synchronized (lock) {
+                    step.finish(job);
+                }
+                pump();
+            }
+        }
+    }
+
+    private abstract class Step {
+        final PipelineStage stage;
+        final Executor executor;
+        final Step next;
+        final Queue<Job> queue = new ArrayDeque<>();
+        int active;
+        /**
+         * Files being processed by the previous stage, which have a place held in this stage's queue.
+         */
+        int reserved;
+
+        /**
+         * @param executor Executor to process files on, {@code null} to use the delivery executor of each file
+         */
+        Step(PipelineStage stage, Executor executor, Step next) {
+            this.stage = stage;
+            this.executor = executor;
+            this.next = next;
+        }
+
+        abstract void process(Job job) throws IOException;
+
+        boolean hasRoom() {
+            return queue.size() + reserved < stage.getCapacity();
+        }
+
+        /**
+         * Takes files to process while workers are free and the next stage has room. Called with the lock held.
+         */
+        void takeAll(List<Task> tasks) {
+            while (!queue.isEmpty() && active < stage.getWorkerCount() && (next == null || next.hasRoom())) {
+                Job job = queue.poll();
+                if (job.isCancelled()) {
+                    job.release();
+                    continue;
+                }
+                active++;
+                if (next != null) {
+                    next.reserved++;
+                }
+                tasks.add(new Task(this, job));
+            }
+            updateStage();
+        }
+
+        /**
+         * Hands a processed file over to the next stage. Called with the lock held.
+         */
+        void finish(Job job) {
+            active--;
+            if (next != null) {
+                next.reserved--;
+                if (job.isCancelled()) {
+                    job.release();
+                } else {
+                    next.queue.add(job);
+                }
+                next.updateStage();
+            }
+            updateStage();
+        }
+
+        void updateStage() {
+            stage.update(queue.size(), active);
+        }
+    }
+
+    private static final class Job {
+        final Call<ResponseBody> call;
+        final CAFileDecoder decoder;
+        final SDKCallback<CAFileResponse> callback;
+        final Executor deliveryExecutor;
+
+        ResponseBody body;
+        Response<?> response;
+        CAFileDecoder.DecryptedFile decrypted;
+        CAFileResponse result;
+        SDKException failure;
+
+        Job(Call<ResponseBody> call, CAFileDecoder decoder, SDKCallback<CAFileResponse> callback, Executor deliveryExecutor) {
+            this.call = call;
+            this.decoder = decoder;
+            this.callback = callback;
+            this.deliveryExecutor = deliveryExecutor;
+        }
+
+        boolean isCancelled() {
+            return call.isCanceled();
+        }
+
+        /**
+         * Drops whatever the file holds once it's been cancelled.
+         */
+        void release() {
+            if (body != null) {
+                body.close();
+                body = null;
+            }
+            decrypted = null;
+            result = null;
+        }
+    }
+}
@@ -0,0 +1,22 @@
+/*
+ * Copyright © 2017 digi.me. All rights reserved.
+ */
+
+package me.digi.sdk.core;
+
+import java.util.List;
+
+/**
+ * Receives items of a {@link FileContentStream} in batches, as they are decoded.
+ */
+public abstract class ItemCallback<T> {
+
+    public abstract void itemsRetrieved(FileContentStream stream, List<T> items);
+
+    public abstract void failed(FileContentStream stream, SDKException exception);
+
+    /**
+     * Called once, after the last items were delivered, after a failure or after the stream was cancelled.
+     */
+    public void finished(FileContentStream stream) {}
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright © 2017 digi.me. All rights reserved.
+ */
+
+package me.digi.sdk.core;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import me.digi.sdk.core.internal.concurrent.LatencyHistogram;
+
+/**
+ * Metrics of one stage of the batch download pipeline (fetch, decrypt, parse, deliver),
+ * see {@link DigiMeClient#getPipelineStages()}.
+ */
+public final class PipelineStage {
+    private final String name;
+    private final int workerCount;
+    private final int capacity;
+    private final AtomicLong processedCount = new AtomicLong();
+    private final AtomicLong failedCount = new AtomicLong();
+    private final LatencyHistogram processTimes = new LatencyHistogram();
+
+    private volatile int queueDepth;
+    private volatile int activeCount;
+    private long firstStarted;
+    private long lastFinished;
+
+    PipelineStage(String name, int workerCount, int capacity) {
+        this.name = name;
+        this.workerCount = workerCount;
+        this.capacity = capacity;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Maximum number of files processed at the same time, 0 for the fetch stage
+     * which is limited by {@link me.digi.sdk.core.config.BatchOptions} and the HTTP client instead.
+     */
+    public int getWorkerCount() {
+        return workerCount;
+    }
+
+    /**
+     * Maximum number of files waiting in the queue of this stage, 0 for the fetch stage.
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Number of files waiting to be processed. For the fetch stage, number of downloaded files
+     * waiting for room in the decrypt queue.
+     */
+    public int getQueueDepth() {
+        return queueDepth;
+    }
+
+    /**
+     * Number of files being processed right now.
+     */
+    public int getActiveCount() {
+        return activeCount;
+    }
+
+    public long getProcessedCount() {
+        return processedCount.get();
+    }
+
+    public long getFailedCount() {
+        return failedCount.get();
+    }
+
+    /**
+     * Files processed per second, from the first file started to the last file finished in this stage.
+     */
+    public synchronized double getThroughput() {
+        long elapsed = lastFinished - firstStarted;
+        return elapsed <= 0 ? 0 : processedCount.get() * 1e9 / elapsed;
+    }
+
+    /**
+     * Time spent processing each file.
+     */
+    public LatencyHistogram getProcessTimes() {
+        return processTimes;
+    }
+
+    void update(int queueDepth, int activeCount) {
+        this.queueDepth = queueDepth;
+        this.activeCount = activeCount;
+    }
+
+    void record(long startedNanos, long finishedNanos, boolean failed) {
+        processTimes.record(finishedNanos - startedNanos);
+        if (failed) {
+            failedCount.incrementAndGet();
+        }
+        synchronized (this) {
+            if (processedCount.getAndIncrement() == 0) {
+                firstStarted = startedNanos;
+            }
+            lastFinished = Math.max(lastFinished, finishedNanos);
+        }
+    }
+}
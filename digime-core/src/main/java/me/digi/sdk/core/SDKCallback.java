@@ -8,11 +8,13 @@ import android.support.annotation.NonNull;
 
 import java.net.SocketTimeoutException;
 
+import me.digi.sdk.crypto.DGMCryptoStreamException;
 import retrofit2.Call;
 import retrofit2.Response;
 
 public abstract class SDKCallback<T> implements retrofit2.Callback<T> {
     public static final int TIMEOUT_ERROR = 507;
+    public static final int DECRYPTION_ERROR = 411;
 
     @Override
     public final void onResponse(@NonNull Call<T> call, @NonNull Response<T> response){
@@ -25,7 +27,14 @@ public abstract class SDKCallback<T> implements retrofit2.Callback<T> {
 
     @Override
     public final void onFailure(@NonNull Call<T> call, @NonNull Throwable t) {
-        failed((t instanceof SocketTimeoutException) ? new SDKException("Connection timeout", t, TIMEOUT_ERROR) :  new SDKException("Request Failure", t));
+        failed(failureOf(t));
+    }
+
+    static SDKException failureOf(Throwable t) {
+        if (t instanceof DGMCryptoStreamException) {
+            return new SDKException("Failed to decrypt content", t, DECRYPTION_ERROR);
+        }
+        return (t instanceof SocketTimeoutException) ? new SDKException("Connection timeout", t, TIMEOUT_ERROR) :  new SDKException("Request Failure", t);
     }
 
     public abstract void succeeded(SDKResponse<T> result);
@@ -0,0 +1,39 @@
+/*
+ * Copyright © 2017 digi.me. All rights reserved.
+ */
+
+package me.digi.sdk.core.config;
+
+/**
+ * Options for batch file downloads started with {@code DigiMeClient.getFiles}.
+ */
+public class BatchOptions {
+    public static final int DEFAULT_MAX_CONCURRENT_REQUESTS = 4;
+
+    private final int maxConcurrentRequests;
+    private final boolean cancelOnFailure;
+
+    public BatchOptions() {
+        this(DEFAULT_MAX_CONCURRENT_REQUESTS, false);
+    }
+
+    /**
+     * @param maxConcurrentRequests Maximum number of file requests in flight at the same time
+     * @param cancelOnFailure       Whether the rest of the batch is cancelled once a file fails
+     */
+    public BatchOptions(int maxConcurrentRequests, boolean cancelOnFailure) {
+        if (maxConcurrentRequests < 1) {
+            throw new IllegalArgumentException("At least one concurrent request is required.");
+        }
+        this.maxConcurrentRequests = maxConcurrentRequests;
+        this.cancelOnFailure = cancelOnFailure;
+    }
+
+    public int getMaxConcurrentRequests() {
+        return maxConcurrentRequests;
+    }
+
+    public boolean shouldCancelOnFailure() {
+        return cancelOnFailure;
+    }
+}
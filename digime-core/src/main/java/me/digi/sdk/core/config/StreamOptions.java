@@ -0,0 +1,43 @@
+/*
+ * Copyright © 2017 digi.me. All rights reserved.
+ */
+
+package me.digi.sdk.core.config;
+
+/**
+ * Options for streamed file content started with {@code DigiMeClient.getFileContentStreaming}.
+ */
+public class StreamOptions {
+    public static final int DEFAULT_ITEMS_PER_BATCH = 50;
+    public static final int DEFAULT_MAX_PENDING_BATCHES = 2;
+
+    private final int itemsPerBatch;
+    private final int maxPendingBatches;
+
+    public StreamOptions() {
+        this(DEFAULT_ITEMS_PER_BATCH, DEFAULT_MAX_PENDING_BATCHES);
+    }
+
+    /**
+     * @param itemsPerBatch     Maximum number of items delivered in one callback
+     * @param maxPendingBatches Maximum number of decoded batches waiting to be delivered before decoding pauses
+     */
+    public StreamOptions(int itemsPerBatch, int maxPendingBatches) {
+        if (itemsPerBatch < 1) {
+            throw new IllegalArgumentException("At least one item per batch is required.");
+        }
+        if (maxPendingBatches < 1) {
+            throw new IllegalArgumentException("At least one pending batch is required.");
+        }
+        this.itemsPerBatch = itemsPerBatch;
+        this.maxPendingBatches = maxPendingBatches;
+    }
+
+    public int getItemsPerBatch() {
+        return itemsPerBatch;
+    }
+
+    public int getMaxPendingBatches() {
+        return maxPendingBatches;
+    }
+}
@@ -0,0 +1,199 @@
+/*
+ * Copyright © 2017 digi.me. All rights reserved.
+ */
+
+package me.digi.sdk.core.entities;
+
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+
+/**
+ * Streaming adapter for {@link CAContent}, so content items are bound without Gson's reflective field lookup.
+ * Field names have to be kept in sync with {@link CAContent}'s {@code SerializedName} annotations.
+ */
+public class CAContentTypeAdapter extends TypeAdapter<CAContent> {
+
+    @Override
+    public CAContent read(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        CAContent content = new CAContent();
+        in.beginObject();
+        while (in.hasNext()) {
+            switch (in.nextName()) {
+                case "annotation":
+                    content.annotation = EntityJson.readString(in);
+                    break;
+                case "baseid":
+                    content.baseId = EntityJson.readString(in);
+                    break;
+                case "commentcount":
+                    content.commentCount = EntityJson.readInt(in, content.commentCount);
+                    break;
+                case "createddate":
+                    content.createdDate = EntityJson.readLong(in, content.createdDate);
+                    break;
+                case "entityid":
+                    content.entityId = EntityJson.readString(in);
+                    break;
+                case "favouritecount":
+                    content.favouriteCount = EntityJson.readInt(in, content.favouriteCount);
+                    break;
+                case "iscommentable":
+                    content.isCommentable = EntityJson.readInt(in, content.isCommentable);
+                    break;
+                case "isfavourited":
+                    content.isFavourited = EntityJson.readInt(in, content.isFavourited);
+                    break;
+                case "islikeable":
+                    content.isLikeable = EntityJson.readInt(in, content.isLikeable);
+                    break;
+                case "islikes":
+                    content.isLikes = EntityJson.readInt(in, content.isLikes);
+                    break;
+                case "isshared":
+                    content.isShared = EntityJson.readInt(in, content.isShared);
+                    break;
+                case "istruncated":
+                    content.isTruncated = EntityJson.readInt(in, content.isTruncated);
+                    break;
+                case "latitude":
+                    content.latitude = EntityJson.readFloat(in, content.latitude);
+                    break;
+                case "likecount":
+                    content.likeCount = EntityJson.readInt(in, content.likeCount);
+                    break;
+                case "longitude":
+                    content.longitude = EntityJson.readFloat(in, content.longitude);
+                    break;
+                case "originalcrosspostid":
+                    content.originalCrossPostId = EntityJson.readString(in);
+                    break;
+                case "originalpostid":
+                    content.originalPostId = EntityJson.readString(in);
+                    break;
+                case "originalposturl":
+                    content.originalPostUrl = EntityJson.readString(in);
+                    break;
+                case "personentityid":
+                    content.personEntityId = EntityJson.readString(in);
+                    break;
+                case "personfilerelativepath":
+                    content.personFileRelativePath = EntityJson.readString(in);
+                    break;
+                case "personfileurl":
+                    content.personFileUrl = EntityJson.readString(in);
+                    break;
+                case "personfullname":
+                    content.personFullname = EntityJson.readString(in);
+                    break;
+                case "personusername":
+                    content.personUsename = EntityJson.readString(in);
+                    break;
+                case "postentityid":
+                    content.posEntityId = EntityJson.readString(in);
+                    break;
+                case "postid":
+                    content.postId = EntityJson.readString(in);
+                    break;
+                case "postreplycount":
+                    content.postReplyCount = EntityJson.readString(in);
+                    break;
+                case "posturl":
+                    content.postUrl = EntityJson.readString(in);
+                    break;
+                case "rawtext":
+                    content.rawText = EntityJson.readString(in);
+                    break;
+                case "referenceentityid":
+                    content.referenceEntityId = EntityJson.readString(in);
+                    break;
+                case "referenceentitytype":
+                    content.referenceEntityType = EntityJson.readInt(in, content.referenceEntityType);
+                    break;
+                case "sharecount":
+                    content.shareCount = EntityJson.readInt(in, content.shareCount);
+                    break;
+                case "socialnetworkuserentityid":
+                    content.socialNetworkUserEntityId = EntityJson.readString(in);
+                    break;
+                case "source":
+                    content.source = EntityJson.readString(in);
+                    break;
+                case "text":
+                    content.text = EntityJson.readString(in);
+                    break;
+                case "title":
+                    content.title = EntityJson.readString(in);
+                    break;
+                case "type":
+                    content.type = EntityJson.readInt(in, content.type);
+                    break;
+                case "updateddate":
+                    content.updatedDate = EntityJson.readLong(in, content.updatedDate);
+                    break;
+                case "visibility":
+                    content.visibility = EntityJson.readString(in);
+                    break;
+                default:
+                    in.skipValue();
+            }
+        }
+        in.endObject();
+        return content;
+    }
+
+    @Override
+    public void write(JsonWriter out, CAContent value) throws IOException {
+        if (value == null) {
+            out.nullValue();
+            return;
+        }
+        out.beginObject();
+        EntityJson.writeString(out, "annotation", value.annotation);
+        EntityJson.writeString(out, "baseid", value.baseId);
+        out.name("commentcount").value(value.commentCount);
+        out.name("createddate").value(value.createdDate);
+        EntityJson.writeString(out, "entityid", value.entityId);
+        out.name("favouritecount").value(value.favouriteCount);
+        out.name("iscommentable").value(value.isCommentable);
+        out.name("isfavourited").value(value.isFavourited);
+        out.name("islikeable").value(value.isLikeable);
+        out.name("islikes").value(value.isLikes);
+        out.name("isshared").value(value.isShared);
+        out.name("istruncated").value(value.isTruncated);
+        out.name("latitude").value(Float.valueOf(value.latitude));
+        out.name("likecount").value(value.likeCount);
+        out.name("longitude").value(Float.valueOf(value.longitude));
+        EntityJson.writeString(out, "originalcrosspostid", value.originalCrossPostId);
+        EntityJson.writeString(out, "originalpostid", value.originalPostId);
+        EntityJson.writeString(out, "originalposturl", value.originalPostUrl);
+        EntityJson.writeString(out, "personentityid", value.personEntityId);
+        EntityJson.writeString(out, "personfilerelativepath", value.personFileRelativePath);
+        EntityJson.writeString(out, "personfileurl", value.personFileUrl);
+        EntityJson.writeString(out, "personfullname", value.personFullname);
+        EntityJson.writeString(out, "personusername", value.personUsename);
+        EntityJson.writeString(out, "postentityid", value.posEntityId);
+        EntityJson.writeString(out, "postid", value.postId);
+        EntityJson.writeString(out, "postreplycount", value.postReplyCount);
+        EntityJson.writeString(out, "posturl", value.postUrl);
+        EntityJson.writeString(out, "rawtext", value.rawText);
+        EntityJson.writeString(out, "referenceentityid", value.referenceEntityId);
+        out.name("referenceentitytype").value(value.referenceEntityType);
+        out.name("sharecount").value(value.shareCount);
+        EntityJson.writeString(out, "socialnetworkuserentityid", value.socialNetworkUserEntityId);
+        EntityJson.writeString(out, "source", value.source);
+        EntityJson.writeString(out, "text", value.text);
+        EntityJson.writeString(out, "title", value.title);
+        out.name("type").value(value.type);
+        out.name("updateddate").value(value.updatedDate);
+        EntityJson.writeString(out, "visibility", value.visibility);
+        out.endObject();
+    }
+}
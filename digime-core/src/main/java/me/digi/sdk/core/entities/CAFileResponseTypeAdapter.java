@@ -0,0 +1,85 @@
+/*
+ * Copyright © 2017 digi.me. All rights reserved.
+ */
+
+package me.digi.sdk.core.entities;
+
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Streaming adapter for {@link CAFileResponse}, reading content items with {@link CAContentTypeAdapter}.
+ */
+public class CAFileResponseTypeAdapter extends TypeAdapter<CAFileResponse> {
+    private final TypeAdapter<CAContent> contentAdapter;
+
+    public CAFileResponseTypeAdapter() {
+        this(new CAContentTypeAdapter());
+    }
+
+    public CAFileResponseTypeAdapter(TypeAdapter<CAContent> contentAdapter) {
+        this.contentAdapter = contentAdapter;
+    }
+
+    @Override
+    public CAFileResponse read(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        CAFileResponse response = new CAFileResponse();
+        in.beginObject();
+        while (in.hasNext()) {
+            switch (in.nextName()) {
+                case "fileContent":
+                    response.fileContent = readContent(in);
+                    break;
+                case "fileList":
+                    response.fileIds = EntityJson.readStringList(in);
+                    break;
+                default:
+                    in.skipValue();
+            }
+        }
+        in.endObject();
+        return response;
+    }
+
+    @Override
+    public void write(JsonWriter out, CAFileResponse value) throws IOException {
+        if (value == null) {
+            out.nullValue();
+            return;
+        }
+        out.beginObject();
+        if (value.fileContent != null) {
+            out.name("fileContent").beginArray();
+            for (CAContent content : value.fileContent) {
+                contentAdapter.write(out, content);
+            }
+            out.endArray();
+        }
+        EntityJson.writeStringList(out, "fileList", value.fileIds);
+        out.endObject();
+    }
+
+    private List<CAContent> readContent(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        List<CAContent> content = new ArrayList<>();
+        in.beginArray();
+        while (in.hasNext()) {
+            content.add(contentAdapter.read(in));
+        }
+        in.endArray();
+        return content;
+    }
+}
@@ -0,0 +1,48 @@
+/*
+ * Copyright © 2017 digi.me. All rights reserved.
+ */
+
+package me.digi.sdk.core.entities;
+
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+
+/**
+ * Streaming adapter for {@link CAFiles}.
+ */
+public class CAFilesTypeAdapter extends TypeAdapter<CAFiles> {
+
+    @Override
+    public CAFiles read(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        CAFiles files = new CAFiles();
+        in.beginObject();
+        while (in.hasNext()) {
+            if ("fileList".equals(in.nextName())) {
+                files.fileIds = EntityJson.readStringList(in);
+            } else {
+                in.skipValue();
+            }
+        }
+        in.endObject();
+        return files;
+    }
+
+    @Override
+    public void write(JsonWriter out, CAFiles value) throws IOException {
+        if (value == null) {
+            out.nullValue();
+            return;
+        }
+        out.beginObject();
+        EntityJson.writeStringList(out, "fileList", value.fileIds);
+        out.endObject();
+    }
+}
@@ -0,0 +1,157 @@
+/*
+ * Copyright © 2017 digi.me. All rights reserved.
+ */
+
+package me.digi.sdk.core.internal;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonNull;
+import com.google.gson.TypeAdapter;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Type;
+import java.util.List;
+
+import me.digi.sdk.core.entities.CAContent;
+import me.digi.sdk.core.entities.CAFileResponse;
+import me.digi.sdk.crypto.CAKeyStore;
+import me.digi.sdk.crypto.DGMCryptoStreamException;
+import okhttp3.ResponseBody;
+import okio.Buffer;
+import retrofit2.Converter;
+import retrofit2.Retrofit;
+
+/**
+ * Decodes encrypted consent-access file responses into {@link CAFileResponse} in a single pass.
+ * Decrypted file content is parsed straight into {@link CAContent} objects as it streams out of the cipher,
+ * instead of being written back into the response as JSON text by {@link CAContentCryptoInterceptor}
+ * and parsed again by the Gson converter.
+ *
+ * Applies to service methods annotated with {@link DecryptInConverter}, which must not go through
+ * {@link CAContentCryptoInterceptor}. Methods returning {@link CAContentStream} get the still open response,
+ * to be decrypted and parsed as it is read; methods returning {@link JsonElement} get the whole response,
+ * with file content decrypted in place. Methods returning {@code ResponseBody} are left to Retrofit and get
+ * the encrypted response, to be decoded with {@link CAFileDecoder}.
+ * Has to be added before the Gson converter factory.
+ * Decryption failures are reported as {@link DGMCryptoStreamException}, also when tampered content fails to parse.
+ */
+public class CAContentConverterFactory extends Converter.Factory {
+    private final CAFileCodec codec;
+    private final TypeAdapter<JsonElement> jsonAdapter;
+
+    private CAContentConverterFactory(CAKeyStore providerKeys, Gson gson, String keyHint) {
+        this.codec = new CAFileCodec(providerKeys, gson, keyHint);
+        this.jsonAdapter = gson.getAdapter(JsonElement.class);
+    }
+
+    public static CAContentConverterFactory create(CAKeyStore providerKeys, Gson gson) {
+        return create(providerKeys, gson, null);
+    }
+
+    /**
+     * @param keyHint Session key of the client the factory is added to, so the key that last decrypted its files is tried first
+     */
+    public static CAContentConverterFactory create(CAKeyStore providerKeys, Gson gson, String keyHint) {
+        if (providerKeys == null || gson == null) {
+            throw new IllegalArgumentException("Key store and Gson instance are required.");
+        }
+        return new CAContentConverterFactory(providerKeys, gson, keyHint);
+    }
+
+    @Override
+    public Converter<ResponseBody, ?> responseBodyConverter(Type type, Annotation[] annotations, Retrofit retrofit) {
+        if (!decryptsInConverter(annotations)) {
+            return null;
+        }
+        if (type == CAContentStream.class) {
+            return new Converter<ResponseBody, CAContentStream>() {
+                @Override
+                public CAContentStream convert(ResponseBody value) {
+                    return new CAContentStream(value, codec);
+                }
+            };
+        }
+        if (type == CAFileResponse.class) {
+            return new Converter<ResponseBody, CAFileResponse>() {
+                @Override
+                public CAFileResponse convert(ResponseBody value) throws IOException {
+                    try {
+                        return decode(value);
+                    } finally {
+                        value.close();
+                    }
+                }
+            };
+        }
+        if (type == JsonElement.class) {
+            return new Converter<ResponseBody, JsonElement>() {
+                @Override
+                public JsonElement convert(ResponseBody value) throws IOException {
+                    try {
+                        return decodeJson(value);
+                    } finally {
+                        value.close();
+                    }
+                }
+            };
+        }
+        return null;
+    }
+
+    private static boolean decryptsInConverter(Annotation[] annotations) {
+        for (Annotation annotation : annotations) {
+            if (annotation instanceof DecryptInConverter) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Decodes file content from the encrypted string and everything else from the rest of the envelope.
+     * Content that is not an encrypted string (or is missing) is left to the envelope parser.
+     */
+    private CAFileResponse decode(ResponseBody body) throws IOException {
+        Buffer envelope = new Buffer();
+        JsonFieldSplicer splicer = codec.splicer(body.source(), envelope);
+        boolean encrypted = splicer.copyToField();
+        List<CAContent> content = encrypted ? decryptContent(splicer, envelope, codec.contentAdapter()) : null;
+        CAFileResponse response = codec.parseEnvelope(envelope);
+        if (response != null && encrypted) {
+            response.fileContent = content;
+        }
+        return response;
+    }
+
+    /**
+     * Same as {@link #decode(ResponseBody)}, into a JSON tree.
+     */
+    private JsonElement decodeJson(ResponseBody body) throws IOException {
+        Buffer envelope = new Buffer();
+        JsonFieldSplicer splicer = codec.splicer(body.source(), envelope);
+        boolean encrypted = splicer.copyToField();
+        JsonElement content = encrypted ? decryptContent(splicer, envelope, jsonAdapter) : null;
+        JsonElement response = jsonAdapter.read(codec.reader(envelope.inputStream()));
+        if (response != null && response.isJsonObject() && encrypted) {
+            response.getAsJsonObject().add(CAFileCodec.CONTENT_KEY, content == null ? JsonNull.INSTANCE : content);
+        }
+        return response;
+    }
+
+    /**
+     * Decrypts and parses the content the splicer is positioned at, then copies the rest of the response
+     * into the envelope with {@code null} in place of the content.
+     */
+    private <T> T decryptContent(JsonFieldSplicer splicer, Buffer envelope, TypeAdapter<T> adapter) throws IOException {
+        T content;
+        try (InputStream fieldValue = splicer.fieldValueStream()) {
+            content = codec.parseContent(codec.decryptingStream(fieldValue), adapter);
+        }
+        envelope.writeUtf8("null");
+        splicer.copyRemaining();
+        return content;
+    }
+}
@@ -8,33 +8,39 @@ import android.support.annotation.NonNull;
 import android.text.TextUtils;
 
 import com.google.gson.Gson;
-import com.google.gson.JsonElement;
-import com.google.gson.internal.LinkedTreeMap;
 import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
 
-import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.nio.charset.Charset;
 
 import me.digi.sdk.core.config.ApiConfig;
 import me.digi.sdk.core.entities.HTTPError;
 import me.digi.sdk.crypto.CACryptoProvider;
 import me.digi.sdk.crypto.CAKeyStore;
 import me.digi.sdk.crypto.DGMCryptoFailureException;
-import me.digi.sdk.crypto.FailureCause;
 import okhttp3.HttpUrl;
 import okhttp3.Interceptor;
 import okhttp3.MediaType;
+import okhttp3.Request;
 import okhttp3.Response;
 import okhttp3.ResponseBody;
+import okio.Buffer;
 
+/**
+ * Decrypts the file content of consent-access file responses in place, so any JSON converter can parse them.
+ * For OkHttp clients that don't decode files with {@link CAContentConverterFactory}; clients of the SDK decrypt
+ * in the converter and don't add this interceptor.
+ */
 public class CAContentCryptoInterceptor implements Interceptor {
     private final Gson gson = new Gson();
     private CACryptoProvider cryptoProvider;
     private boolean cryptoInitialized;
 
     private static final String CONTENT_KEY = "fileContent";
+    private static final Charset UTF8 = Charset.forName("UTF-8");
 
     public CAContentCryptoInterceptor(CAKeyStore providerKeys) {
         cryptoInitialized = !providerKeys.isEmpty();
@@ -43,36 +49,76 @@ public class CAContentCryptoInterceptor implements Interceptor {
 
     @Override
     public Response intercept(Chain chain) throws IOException {
-        Response response = chain.proceed(chain.request());
+        Request request = chain.request();
+        Response response = chain.proceed(request);
 
-        if (response.isSuccessful() && EncryptedPaths.shouldDecrypt(chain.request().url())) {
+        if (response.isSuccessful() && EncryptedPaths.shouldDecrypt(request.url())) {
             if (response.body() == null || !cryptoInitialized) {
                 return response;
             }
-            //noinspection ConstantConditions
-            LinkedTreeMap<String, Object> parsedMap = extractFileContent(response.peekBody(response.body().contentLength()).byteStream());
-            if (!isEncryptedField(parsedMap)) {
-                return response;
-            }
-            String newBody = null;
-            try {
-                newBody = extractEncryptedString(parsedMap);
-            } catch (DGMCryptoFailureException dge) {
-                return mapError("Decryption failure", "Failed to decrypt content", 411, response);
-            }
-            if (newBody == null) return response;
-
             String wantedContentType = response.header("Content-Type");
             if (TextUtils.isEmpty(wantedContentType)) {
                 wantedContentType = "application/json";
             }
-            return response.newBuilder()
-                    .body(ResponseBody.create(MediaType.parse(wantedContentType), newBody))
-                    .build();
+            //noinspection ConstantConditions
+            try (ResponseBody body = response.body()) {
+                Buffer newBody = new Buffer();
+                JsonFieldSplicer splicer = new JsonFieldSplicer(body.source(), newBody, CONTENT_KEY);
+                if (splicer.copyToField()) {
+                    boolean decrypted;
+                    try {
+                        decrypted = decryptField(splicer, newBody, EncryptedPaths.sessionKey(request.url()));
+                    } catch (IOException | DGMCryptoFailureException ex) {
+                        if (ex instanceof IOException && splicer.sourceFailed()) {
+                            throw (IOException) ex;
+                        }
+                        decrypted = false;
+                    }
+                    if (!decrypted) {
+                        return mapError("Decryption failure", "Failed to decrypt content", 411, response);
+                    }
+                    splicer.copyRemaining();
+                }
+                return response.newBuilder()
+                        .body(ResponseBody.create(MediaType.parse(wantedContentType), newBody.size(), newBody))
+                        .build();
+            }
         }
         return response;
     }
 
+    /**
+     * Streams encrypted field content through decryption, writing decrypted JSON in place of the encrypted string.
+     * Empty content is written as {@code null} to keep the document valid.
+     *
+     * @return {@code false} if decrypted content is not a single JSON value, in which case nothing is written
+     */
+    private boolean decryptField(JsonFieldSplicer splicer, Buffer newBody, String keyHint) throws IOException, DGMCryptoFailureException {
+        Buffer content = new Buffer();
+        try (InputStream fieldValue = splicer.fieldValueStream()) {
+            cryptoProvider.decryptStream(fieldValue, content.outputStream(), true, keyHint);
+        }
+        if (content.size() == 0) {
+            newBody.writeUtf8("null");
+            return true;
+        }
+        // Clone shares segments with the content, so checking it doesn't copy the plaintext
+        if (!isJsonValue(content.clone())) {
+            return false;
+        }
+        newBody.writeAll(content);
+        return true;
+    }
+
+    private boolean isJsonValue(Buffer content) {
+        try (JsonReader reader = new JsonReader(new InputStreamReader(content.inputStream(), UTF8))) {
+            reader.skipValue();
+            return reader.peek() == JsonToken.END_DOCUMENT;
+        } catch (IOException | IllegalStateException e) {
+            return false;
+        }
+    }
+
     /**
      *  Returns a custom error response so it can be correctly mapped and de-serialized to an exception in the client
      *  Primarily used to communicate decryption failure (since original response would throw a different exception)
@@ -88,44 +134,18 @@ public class CAContentCryptoInterceptor implements Interceptor {
                 .build();
     }
 
-    private LinkedTreeMap<String, Object> extractFileContent(InputStream in) {
-        return gson.fromJson(new JsonReader(new InputStreamReader(in)), Object.class);
-    }
-
-    private boolean isEncryptedField(LinkedTreeMap treeMap) {
-        return treeMap.get(CONTENT_KEY) != null && (treeMap.get(CONTENT_KEY) instanceof String);
-    }
-
-    private String extractEncryptedString(LinkedTreeMap<String, Object> parsedMap) throws DGMCryptoFailureException {
-        String decrypted;
-        try {
-            //We can assume the check has already passed at the call site
-            String fileContent = (String) parsedMap.get(CONTENT_KEY);
-            decrypted = cryptoProvider.decryptStream(new ByteArrayInputStream(fileContent.getBytes("UTF-8")));
-        } catch (IOException | DGMCryptoFailureException | NullPointerException ex) {
-            decrypted = null;
-            throw new DGMCryptoFailureException(FailureCause.RSA_DECRYPTION_FAILURE);
-        }
-        if (TextUtils.isEmpty(decrypted)) {
-            return null;
-        }
-
-        String returnJson;
-        try {
-            parsedMap.put("fileContent", gson.fromJson(decrypted, JsonElement.class));
-            returnJson = gson.toJson(parsedMap);
-        } catch (Exception ex) {
-            return null;
-        }
-
-        return returnJson;
-    }
-
-
     private static class EncryptedPaths {
         private static final String[] whitelist = {"/v1/permission-access/query/_any_/_any_"};
         private static final ApiConfig thisApi = new ApiConfig();
         private static final String ANY_MATCHER = "_any_";
+        private static final int SESSION_KEY_SEGMENT = 3;
+
+        /**
+         * Session key of a whitelisted request, used as a hint for picking the decryption key.
+         */
+        static String sessionKey(HttpUrl url) {
+            return url.pathSegments().size() > SESSION_KEY_SEGMENT ? url.pathSegments().get(SESSION_KEY_SEGMENT) : null;
+        }
 
         static boolean shouldDecrypt(HttpUrl url) {
             boolean match = false;
@@ -0,0 +1,134 @@
+/*
+ * Copyright © 2017 digi.me. All rights reserved.
+ */
+
+package me.digi.sdk.core.internal;
+
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PushbackInputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import me.digi.sdk.core.entities.CAContent;
+import me.digi.sdk.core.entities.CAFileResponse;
+import me.digi.sdk.crypto.DGMCryptoStreamException;
+import okhttp3.ResponseBody;
+import okio.Buffer;
+
+/**
+ * Content items of an encrypted consent-access file, decrypted and parsed as they are read from the response.
+ * Created by {@link CAContentConverterFactory} for service methods returning this type; the response stays open
+ * until the last item has been read or the stream is closed. Not thread safe.
+ *
+ * The content hash is verified once the last item has been read, so a file that fails verification
+ * may already have delivered items before {@link DGMCryptoStreamException} is thrown.
+ * Tampered content that fails to parse is reported the same way.
+ */
+public class CAContentStream implements Closeable {
+    private final ResponseBody body;
+    private final CAFileCodec codec;
+    private final TypeAdapter<CAContent> itemAdapter;
+
+    private boolean opened;
+    private boolean finished;
+    private InputStream decrypted;
+    private JsonReader reader;
+    private List<CAContent> unencryptedItems;
+
+    CAContentStream(ResponseBody body, CAFileCodec codec) {
+        this.body = body;
+        this.codec = codec;
+        this.itemAdapter = codec.gson().getAdapter(CAContent.class);
+    }
+
+    /**
+     * Reads the next items.
+     *
+     * @param maxCount Maximum number of items to read
+     * @return Up to {@code maxCount} items, or an empty list once all items have been read
+     */
+    public List<CAContent> read(int maxCount) throws IOException {
+        if (!opened) {
+            opened = true;
+            open();
+        }
+        if (unencryptedItems != null) {
+            List<CAContent> next = new ArrayList<>(unencryptedItems.subList(0, Math.min(maxCount, unencryptedItems.size())));
+            unencryptedItems.subList(0, next.size()).clear();
+            return next;
+        }
+        if (finished) {
+            return Collections.emptyList();
+        }
+        List<CAContent> items = new ArrayList<>(maxCount);
+        try {
+            while (items.size() < maxCount && reader.hasNext()) {
+                items.add(itemAdapter.read(reader));
+            }
+        } catch (IOException | RuntimeException e) {
+            CAFileCodec.verifyRemaining(decrypted);
+            throw e;
+        }
+        if (!reader.hasNext()) {
+            finish();
+        }
+        return items;
+    }
+
+    @Override
+    public void close() throws IOException {
+        finished = true;
+        body.close();
+    }
+
+    private void open() throws IOException {
+        Buffer envelope = new Buffer();
+        JsonFieldSplicer splicer = codec.splicer(body.source(), envelope);
+        if (!splicer.copyToField()) {
+            // Content is not an encrypted string, so the whole file is already in the envelope
+            CAFileResponse response = codec.parseEnvelope(envelope);
+            unencryptedItems = response == null || response.fileContent == null
+                    ? new ArrayList<CAContent>()
+                    : new ArrayList<>(response.fileContent);
+            close();
+            return;
+        }
+        decrypted = codec.decryptingStream(splicer.fieldValueStream());
+        PushbackInputStream in = new PushbackInputStream(decrypted);
+        int first = in.read();
+        if (first == -1) {
+            close();
+            return;
+        }
+        in.unread(first);
+        decrypted = in;
+        reader = codec.reader(in);
+        try {
+            if (reader.peek() == JsonToken.NULL) {
+                reader.nextNull();
+                finish();
+                return;
+            }
+            reader.beginArray();
+        } catch (IOException | RuntimeException e) {
+            CAFileCodec.verifyRemaining(decrypted);
+            throw e;
+        }
+    }
+
+    private void finish() throws IOException {
+        if (reader.peek() == JsonToken.END_ARRAY) {
+            reader.endArray();
+        }
+        // Content hash is only verified once the whole plaintext has been read
+        CAFileCodec.verifyRemaining(decrypted);
+        close();
+    }
+}
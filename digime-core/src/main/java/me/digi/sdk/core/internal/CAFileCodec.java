@@ -0,0 +1,145 @@
+/*
+ * Copyright © 2017 digi.me. All rights reserved.
+ */
+
+package me.digi.sdk.core.internal;
+
+import com.google.gson.Gson;
+import com.google.gson.TypeAdapter;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.PushbackInputStream;
+import java.nio.charset.Charset;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import me.digi.sdk.core.entities.CAContent;
+import me.digi.sdk.core.entities.CAFileResponse;
+import me.digi.sdk.crypto.CACryptoProvider;
+import me.digi.sdk.crypto.CAKeyStore;
+import me.digi.sdk.crypto.DGMCryptoFailureException;
+import me.digi.sdk.crypto.DGMCryptoStreamException;
+import okio.Buffer;
+import okio.BufferedSource;
+
+/**
+ * Pieces shared by the decoders of encrypted consent-access file responses ({@link CAContentConverterFactory},
+ * {@link CAContentStream} and {@link CAFileDecoder}): splitting the encrypted content out of the envelope,
+ * decrypting it and parsing both parts.
+ * Decryption failures are reported as {@link DGMCryptoStreamException}.
+ */
+final class CAFileCodec {
+    static final String CONTENT_KEY = "fileContent";
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private final CACryptoProvider cryptoProvider;
+    private final String keyHint;
+    private final Gson gson;
+    private final TypeAdapter<CAFileResponse> envelopeAdapter;
+    private final TypeAdapter<List<CAContent>> contentAdapter;
+
+    CAFileCodec(CAKeyStore providerKeys, Gson gson) {
+        this(providerKeys, gson, null);
+    }
+
+    /**
+     * @param keyHint Session key the decoded files belong to, so the key that last decrypted its files is tried first,
+     *                see {@link CAKeyStore#iterator(String)}
+     */
+    CAFileCodec(CAKeyStore providerKeys, Gson gson, String keyHint) {
+        if (providerKeys == null || gson == null) {
+            throw new IllegalArgumentException("Key store and Gson instance are required.");
+        }
+        this.cryptoProvider = new CACryptoProvider(providerKeys);
+        this.keyHint = keyHint;
+        this.gson = gson;
+        this.envelopeAdapter = gson.getAdapter(CAFileResponse.class);
+        this.contentAdapter = gson.getAdapter(new TypeToken<List<CAContent>>(){});
+    }
+
+    Gson gson() {
+        return gson;
+    }
+
+    TypeAdapter<List<CAContent>> contentAdapter() {
+        return contentAdapter;
+    }
+
+    /**
+     * Returns a splicer copying the response into {@code envelope}, up to the encrypted content.
+     */
+    JsonFieldSplicer splicer(BufferedSource response, Buffer envelope) {
+        return new JsonFieldSplicer(response, envelope, CONTENT_KEY);
+    }
+
+    /**
+     * Returns a stream decrypting the encrypted content read from {@code fieldValue}.
+     */
+    InputStream decryptingStream(InputStream fieldValue) throws IOException {
+        try {
+            return cryptoProvider.decryptingStream(fieldValue, true, keyHint);
+        } catch (DGMCryptoFailureException e) {
+            throw new DGMCryptoStreamException(e);
+        }
+    }
+
+    /**
+     * Decrypts the encrypted content read from {@code fieldValue} into {@code plaintext}, see
+     * {@link CACryptoProvider#decryptStream(InputStream, OutputStream, boolean, String, Executor)}.
+     */
+    void decrypt(InputStream fieldValue, OutputStream plaintext, Executor executor) throws IOException {
+        try {
+            cryptoProvider.decryptStream(fieldValue, plaintext, true, keyHint, executor);
+        } catch (DGMCryptoFailureException e) {
+            throw new DGMCryptoStreamException(e);
+        }
+    }
+
+    CAFileResponse parseEnvelope(Buffer envelope) throws IOException {
+        return envelopeAdapter.read(reader(envelope.inputStream()));
+    }
+
+    /**
+     * Parses decrypted content as it's read from {@code decrypted}, then reads the rest of it so the content hash is verified.
+     *
+     * @return Parsed content, or {@code null} if there is none
+     */
+    <T> T parseContent(InputStream decrypted, TypeAdapter<T> adapter) throws IOException {
+        try (PushbackInputStream in = new PushbackInputStream(decrypted)) {
+            int first = in.read();
+            if (first == -1) {
+                return null;
+            }
+            in.unread(first);
+            T content;
+            try {
+                content = adapter.read(reader(in));
+            } catch (IOException | RuntimeException e) {
+                verifyRemaining(in);
+                throw e;
+            }
+            verifyRemaining(in);
+            return content;
+        }
+    }
+
+    JsonReader reader(InputStream in) {
+        return gson.newJsonReader(new InputStreamReader(in, UTF8));
+    }
+
+    /**
+     * Reads what's left of decrypted content, which fails with {@link DGMCryptoStreamException} if the content hash doesn't match.
+     * Called when parsing fails too: tampered content usually breaks the JSON before the hash is checked at its end,
+     * and should be reported as a decryption failure rather than as malformed content.
+     */
+    static void verifyRemaining(InputStream decrypted) throws IOException {
+        byte[] remaining = new byte[1024];
+        //noinspection StatementWithEmptyBody
+        while (decrypted.read(remaining) != -1) {}
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright © 2017 digi.me. All rights reserved.
+ */
+
+package me.digi.sdk.core.internal;
+
+import com.google.gson.Gson;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.Executor;
+
+import me.digi.sdk.core.entities.CAFileResponse;
+import me.digi.sdk.crypto.CAKeyStore;
+import me.digi.sdk.crypto.DGMCryptoStreamException;
+import okio.Buffer;
+import okio.BufferedSource;
+
+/**
+ * Decodes encrypted consent-access file responses in two separate steps, so they can run on different threads:
+ * {@link #decrypt(BufferedSource)} turns the response into plaintext file content and the rest of the envelope,
+ * {@link #parse(DecryptedFile)} builds the {@link CAFileResponse}.
+ *
+ * Unlike {@link CAContentConverterFactory}, which parses content as it's decrypted, the plaintext is buffered in between.
+ * Given an executor, large content is read whole and decrypted in parallel on it, see
+ * {@link me.digi.sdk.crypto.CryptoUtils#setParallelDecryptionThreshold(int)}.
+ */
+public class CAFileDecoder {
+    private final CAFileCodec codec;
+    private final Executor executor;
+
+    public CAFileDecoder(CAKeyStore providerKeys, Gson gson) {
+        this(providerKeys, gson, null, null);
+    }
+
+    /**
+     * @param executor Executor helping to decrypt large content, {@code null} to decrypt it as it's read on the calling thread
+     * @param keyHint  Session key the decoded files belong to, so the key that last decrypted its files is tried first
+     */
+    public CAFileDecoder(CAKeyStore providerKeys, Gson gson, Executor executor, String keyHint) {
+        this.codec = new CAFileCodec(providerKeys, gson, keyHint);
+        this.executor = executor;
+    }
+
+    /**
+     * Decrypts file content of a response, verifying its hash.
+     * Decryption failures are reported as {@link DGMCryptoStreamException}.
+     */
+    public DecryptedFile decrypt(BufferedSource response) throws IOException {
+        Buffer envelope = new Buffer();
+        JsonFieldSplicer splicer = codec.splicer(response, envelope);
+        if (!splicer.copyToField()) {
+            return new DecryptedFile(envelope, null);
+        }
+        Buffer plaintext = new Buffer();
+        if (executor != null) {
+            try (InputStream fieldValue = splicer.fieldValueStream()) {
+                codec.decrypt(fieldValue, plaintext.outputStream(), executor);
+            }
+        } else {
+            try (InputStream fieldValue = splicer.fieldValueStream();
+                 InputStream decrypted = codec.decryptingStream(fieldValue)) {
+                plaintext.readFrom(decrypted);
+            }
+        }
+        envelope.writeUtf8("null");
+        splicer.copyRemaining();
+        return new DecryptedFile(envelope, plaintext);
+    }
+
+    public CAFileResponse parse(DecryptedFile file) throws IOException {
+        CAFileResponse response = codec.parseEnvelope(file.envelope);
+        if (response != null && file.content != null) {
+            response.fileContent = codec.parseContent(file.content.inputStream(), codec.contentAdapter());
+        }
+        return response;
+    }
+
+    /**
+     * Decrypted file, ready to be parsed.
+     */
+    public static final class DecryptedFile {
+        final Buffer envelope;
+        final Buffer content;
+
+        DecryptedFile(Buffer envelope, Buffer content) {
+            this.envelope = envelope;
+            this.content = content;
+        }
+
+        /**
+         * Size of decrypted file content in bytes.
+         */
+        public long getContentSize() {
+            return content == null ? 0 : content.size();
+        }
+    }
+}
@@ -0,0 +1,22 @@
+/*
+ * Copyright © 2017 digi.me. All rights reserved.
+ */
+
+package me.digi.sdk.core.internal;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.Retention;
+import java.lang.annotation.Target;
+
+import static java.lang.annotation.ElementType.METHOD;
+import static java.lang.annotation.RetentionPolicy.RUNTIME;
+
+/**
+ * Marks service methods whose encrypted file responses are decrypted by {@link CAContentConverterFactory} while parsing,
+ * see there for the supported return types.
+ */
+@Documented
+@Target(METHOD)
+@Retention(RUNTIME)
+public @interface DecryptInConverter {
+}
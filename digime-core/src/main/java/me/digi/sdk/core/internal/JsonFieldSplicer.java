@@ -0,0 +1,324 @@
+/*
+ * Copyright © 2017 digi.me. All rights reserved.
+ */
+
+package me.digi.sdk.core.internal;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+
+import okio.Buffer;
+import okio.BufferedSource;
+import okio.ByteString;
+
+/**
+ * Copies a JSON object from a source into a buffer while replacing the string value of one top level field.
+ *
+ * Scanning is structural only (strings, nesting and literals are recognised, but not validated) and works on the
+ * bytes already buffered by the source, so the body is never materialised as a string or a tree. Bytes other than
+ * the replaced value are moved to the output unchanged.
+ *
+ * Typical use: {@link #copyToField()}, then read the value from {@link #fieldValueStream()} and write its replacement
+ * to the output, then {@link #copyRemaining()}.
+ */
+final class JsonFieldSplicer {
+    private static final ByteString STRING_DELIMITERS = ByteString.encodeUtf8("\"\\");
+    private static final ByteString NESTED_DELIMITERS = ByteString.encodeUtf8("\"{}[]");
+    private static final ByteString LITERAL_DELIMITERS = ByteString.encodeUtf8(",}] \t\r\n");
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private final BufferedSource source;
+    private final Buffer buffer;
+    private final Buffer out;
+    private final ByteString fieldKey;
+    private boolean sourceFailed;
+
+    JsonFieldSplicer(BufferedSource source, Buffer out, String fieldName) {
+        this.source = source;
+        this.buffer = source.buffer();
+        this.out = out;
+        this.fieldKey = ByteString.encodeUtf8('"' + fieldName + '"');
+    }
+
+    /**
+     * Copies the object up to the string value of the field.
+     * Opening quote of the value is consumed but not copied.
+     *
+     * @return {@code true} if the source is positioned at the string value,
+     * {@code false} if there is no such field (or it is not a string) and the whole source has been copied
+     */
+    boolean copyToField() throws IOException {
+        if (!copyWhitespace() || buffer.getByte(0) != '{') {
+            copyRemaining();
+            return false;
+        }
+        copy(1);
+        while (copyWhitespace()) {
+            byte b = buffer.getByte(0);
+            if (b == ',') {
+                copy(1);
+                continue;
+            }
+            if (b != '"') {
+                break;
+            }
+            long keyOffset = out.size();
+            copyString();
+            boolean matches = out.rangeEquals(keyOffset, fieldKey);
+            if (!copyWhitespace() || buffer.getByte(0) != ':') {
+                break;
+            }
+            copy(1);
+            if (!copyWhitespace()) {
+                break;
+            }
+            if (matches && buffer.getByte(0) == '"') {
+                buffer.skip(1);
+                return true;
+            }
+            copyValue();
+        }
+        copyRemaining();
+        return false;
+    }
+
+    /**
+     * Returns the unescaped content of the string value the source is positioned at.
+     * Stream ends at the closing quote, which is consumed. Closing the stream skips what's left of the value.
+     * Content is returned as UTF-8, {@code \\u} escapes included.
+     */
+    InputStream fieldValueStream() {
+        return new StringValueStream();
+    }
+
+    /**
+     * Moves everything left in the source to the output.
+     */
+    void copyRemaining() throws IOException {
+        try {
+            out.writeAll(source);
+        } catch (IOException e) {
+            sourceFailed = true;
+            throw e;
+        }
+    }
+
+    /**
+     * Whether reading from the underlying source failed, as opposed to the content being malformed.
+     */
+    boolean sourceFailed() {
+        return sourceFailed;
+    }
+
+    private boolean request(long byteCount) throws IOException {
+        try {
+            return source.request(byteCount);
+        } catch (IOException e) {
+            sourceFailed = true;
+            throw e;
+        }
+    }
+
+    private void require(long byteCount) throws IOException {
+        if (!request(byteCount)) {
+            throw new EOFException("Unexpected end of JSON");
+        }
+    }
+
+    private void copy(long byteCount) {
+        out.write(buffer, byteCount);
+    }
+
+    /**
+     * Copies whitespace to the output.
+     *
+     * @return {@code false} if the end of source was reached
+     */
+    private boolean copyWhitespace() throws IOException {
+        while (request(1)) {
+            byte b = buffer.getByte(0);
+            if (b != ' ' && b != '\t' && b != '\r' && b != '\n') {
+                return true;
+            }
+            copy(1);
+        }
+        return false;
+    }
+
+    private void copyValue() throws IOException {
+        byte b = buffer.getByte(0);
+        if (b == '"') {
+            copyString();
+        } else if (b == '{' || b == '[') {
+            copyNested();
+        } else {
+            copyUntil(LITERAL_DELIMITERS);
+        }
+    }
+
+    private void copyString() throws IOException {
+        copy(1);
+        while (true) {
+            long index = copyUntil(STRING_DELIMITERS);
+            if (index == -1) {
+                throw new EOFException("Unterminated JSON string");
+            }
+            if (buffer.getByte(0) == '"') {
+                copy(1);
+                return;
+            }
+            require(2);
+            copy(2);
+        }
+    }
+
+    private void copyNested() throws IOException {
+        int depth = 0;
+        do {
+            if (copyUntil(NESTED_DELIMITERS) == -1) {
+                throw new EOFException("Unterminated JSON value");
+            }
+            byte b = buffer.getByte(0);
+            if (b == '"') {
+                copyString();
+                continue;
+            }
+            depth += (b == '{' || b == '[') ? 1 : -1;
+            copy(1);
+        } while (depth > 0);
+    }
+
+    /**
+     * Copies bytes up to (not including) the first of {@code delimiters}.
+     *
+     * @return {@code -1} if the end of source was reached first
+     */
+    private long copyUntil(ByteString delimiters) throws IOException {
+        while (request(1)) {
+            long index = buffer.indexOfElement(delimiters);
+            if (index != -1) {
+                copy(index);
+                return index;
+            }
+            copy(buffer.size());
+        }
+        return -1;
+    }
+
+    private final class StringValueStream extends InputStream {
+        private boolean ended;
+        // Leading bytes of the buffer already known to be free of delimiters, so small reads don't rescan the buffer
+        private long plainCount;
+        // UTF-8 bytes of the last escape not returned yet
+        private byte[] escape;
+        private int escapePos;
+
+        @Override
+        public int read() throws IOException {
+            byte[] single = new byte[1];
+            return read(single, 0, 1) == -1 ? -1 : single[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int count = 0;
+            while (count < len && !ended) {
+                if (escape != null && escapePos < escape.length) {
+                    b[off + count++] = escape[escapePos++];
+                    continue;
+                }
+                if (count > 0 && buffer.size() == 0) {
+                    break;
+                }
+                require(1);
+                if (plainCount == 0) {
+                    long index = buffer.indexOfElement(STRING_DELIMITERS);
+                    if (index == 0) {
+                        if (buffer.getByte(0) == '"') {
+                            buffer.skip(1);
+                            ended = true;
+                        } else {
+                            escape = readEscape();
+                            escapePos = 0;
+                        }
+                        continue;
+                    }
+                    plainCount = index == -1 ? buffer.size() : index;
+                }
+                int read = buffer.read(b, off + count, (int) Math.min(len - count, plainCount));
+                plainCount -= read;
+                count += read;
+            }
+            return count == 0 && ended ? -1 : count;
+        }
+
+        @Override
+        public void close() throws IOException {
+            byte[] skipped = new byte[1024];
+            //noinspection StatementWithEmptyBody
+            while (read(skipped, 0, skipped.length) != -1) {}
+        }
+
+        private byte[] readEscape() throws IOException {
+            require(2);
+            byte escaped = buffer.getByte(1);
+            char c;
+            switch (escaped) {
+                case '"':
+                case '\\':
+                case '/':
+                    c = (char) escaped;
+                    break;
+                case 'b':
+                    c = '\b';
+                    break;
+                case 'f':
+                    c = '\f';
+                    break;
+                case 'n':
+                    c = '\n';
+                    break;
+                case 'r':
+                    c = '\r';
+                    break;
+                case 't':
+                    c = '\t';
+                    break;
+                case 'u':
+                    require(6);
+                    c = unicodeEscape(2);
+                    if (Character.isHighSurrogate(c) && request(12) && buffer.getByte(6) == '\\' && buffer.getByte(7) == 'u') {
+                        char low = unicodeEscape(8);
+                        if (Character.isLowSurrogate(low)) {
+                            buffer.skip(12);
+                            return new String(new char[]{c, low}).getBytes(UTF8);
+                        }
+                    }
+                    buffer.skip(6);
+                    // Unpaired surrogates are encoded as '?', same as String.getBytes does
+                    return String.valueOf(c).getBytes(UTF8);
+                default:
+                    throw new IOException("Invalid escape in JSON string");
+            }
+            buffer.skip(2);
+            return new byte[]{(byte) c};
+        }
+
+        /**
+         * Parses the four hex digits at {@code offset} of the buffer.
+         */
+        private char unicodeEscape(long offset) throws IOException {
+            int c = 0;
+            for (long i = offset; i < offset + 4; i++) {
+                int digit = Character.digit(buffer.getByte(i), 16);
+                if (digit == -1) {
+                    throw new IOException("Invalid escape in JSON string");
+                }
+                c = c << 4 | digit;
+            }
+            return (char) c;
+        }
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright © 2017 digi.me. All rights reserved.
+ */
+
+package me.digi.sdk.core.internal.concurrent;
+
+import android.support.annotation.NonNull;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Executor that runs tasks on another executor and measures them: tasks waiting to start (queue depth),
+ * tasks running, and histograms of time spent waiting and running.
+ */
+public class MeteredExecutor implements Executor {
+    private final Executor delegate;
+    private final AtomicInteger queuedCount = new AtomicInteger();
+    private final AtomicInteger activeCount = new AtomicInteger();
+    private final AtomicLong completedCount = new AtomicLong();
+    private final AtomicLong failedCount = new AtomicLong();
+    private final LatencyHistogram waitTimes = new LatencyHistogram();
+    private final LatencyHistogram runTimes = new LatencyHistogram();
+
+    public MeteredExecutor(Executor delegate) {
+        if (delegate == null) {
+            throw new IllegalArgumentException("Executor can not be null.");
+        }
+        this.delegate = delegate;
+    }
+
+    @Override
+    public void execute(@NonNull final Runnable command) {
+        final long submitted = System.nanoTime();
+        queuedCount.incrementAndGet();
+        try {
+            delegate.execute(new Runnable() {
+                @Override
+                public void run() {
+                    long started = System.nanoTime();
+                    queuedCount.decrementAndGet();
+                    activeCount.incrementAndGet();
+                    waitTimes.record(started - submitted);
+                    try {
+                        command.run();
+                        completedCount.incrementAndGet();
+                    } catch (RuntimeException | Error e) {
+                        failedCount.incrementAndGet();
+                        throw e;
+                    } finally {
+                        activeCount.decrementAndGet();
+                        runTimes.record(System.nanoTime() - started);
+                    }
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            queuedCount.decrementAndGet();
+            throw e;
+        }
+    }
+
+    /**
+     * Number of tasks submitted but not started yet.
+     */
+    public int getQueuedCount() {
+        return queuedCount.get();
+    }
+
+    /**
+     * Number of tasks running right now.
+     */
+    public int getActiveCount() {
+        return activeCount.get();
+    }
+
+    public long getCompletedCount() {
+        return completedCount.get();
+    }
+
+    /**
+     * Number of tasks that threw.
+     */
+    public long getFailedCount() {
+        return failedCount.get();
+    }
+
+    /**
+     * Time between submitting tasks and starting them.
+     */
+    public LatencyHistogram getWaitTimes() {
+        return waitTimes;
+    }
+
+    /**
+     * Time tasks took to run.
+     */
+    public LatencyHistogram getRunTimes() {
+        return runTimes;
+    }
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright © 2017 digi.me. All rights reserved.
+ */
+
+package me.digi.sdk.core.internal.concurrent;
+
+import android.support.annotation.NonNull;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Thread pools owned by the SDK, so its work doesn't queue behind other libraries sharing
+ * {@code AsyncTask.THREAD_POOL_EXECUTOR}.
+ *
+ * The {@linkplain #cpu() CPU pool} has a thread per core and is meant for decrypting and parsing,
+ * the {@linkplain #io() I/O pool} is for work that blocks on disk or network. Threads are started on demand and
+ * stop again after being idle. Either pool can be replaced with {@link #setCpu(Executor)} and {@link #setIo(Executor)};
+ * replacements are measured the same way.
+ */
+public final class SDKExecutors {
+    static final int IO_THREADS = 4;
+    private static final long KEEP_ALIVE_SECONDS = 30;
+    private static final Object SYNC = new Object();
+
+    private static volatile MeteredExecutor cpu;
+    private static volatile MeteredExecutor io;
+
+    private SDKExecutors() {}
+
+    public static MeteredExecutor cpu() {
+        MeteredExecutor executor = cpu;
+        if (executor == null) {
+            synchronized (SYNC) {
+                executor = cpu;
+                if (executor == null) {
+                    executor = new MeteredExecutor(newPool("digime-cpu", Runtime.getRuntime().availableProcessors()));
+                    cpu = executor;
+                }
+            }
+        }
+        return executor;
+    }
+
+    public static MeteredExecutor io() {
+        MeteredExecutor executor = io;
+        if (executor == null) {
+            synchronized (SYNC) {
+                executor = io;
+                if (executor == null) {
+                    executor = new MeteredExecutor(newPool("digime-io", IO_THREADS));
+                    io = executor;
+                }
+            }
+        }
+        return executor;
+    }
+
+    /**
+     * Replaces the CPU pool. Work already submitted keeps running on the previous one.
+     *
+     * @param executor Executor to use, or {@code null} to go back to the default pool
+     */
+    public static void setCpu(Executor executor) {
+        synchronized (SYNC) {
+            cpu = executor == null ? null : new MeteredExecutor(executor);
+        }
+    }
+
+    /**
+     * Replaces the I/O pool. Work already submitted keeps running on the previous one.
+     *
+     * @param executor Executor to use, or {@code null} to go back to the default pool
+     */
+    public static void setIo(Executor executor) {
+        synchronized (SYNC) {
+            io = executor == null ? null : new MeteredExecutor(executor);
+        }
+    }
+
+    private static ThreadPoolExecutor newPool(final String name, int threads) {
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+            private final AtomicInteger count = new AtomicInteger();
+
+            @Override
+            public Thread newThread(@NonNull Runnable runnable) {
+                Thread thread = new Thread(runnable, name + "-" + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        pool.allowCoreThreadTimeOut(true);
+        return pool;
+    }
+}
@@ -7,8 +7,6 @@ package me.digi.sdk.core.internal.network;
 import java.io.IOException;
 import java.lang.annotation.Annotation;
 import java.lang.reflect.Type;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
 
 import me.digi.sdk.core.DigiMeClient;
 import me.digi.sdk.core.config.NetworkConfig;
@@ -26,14 +24,21 @@ import retrofit2.Retrofit;
  * instance and configured with {@link CallConfig} annotation.
  */
 public class CallConfigAdapterFactory extends CallAdapter.Factory {
-    private final ScheduledExecutorService callbackExecutor;
+    private final RetryScheduler retryScheduler;
 
-    private CallConfigAdapterFactory() {
-        callbackExecutor = Executors.newScheduledThreadPool(1);
+    private CallConfigAdapterFactory(RetryScheduler scheduler) {
+        retryScheduler = scheduler;
     }
 
     public static CallConfigAdapterFactory create() {
-        return new CallConfigAdapterFactory();
+        return new CallConfigAdapterFactory(RetryScheduler.shared());
+    }
+
+    public static CallConfigAdapterFactory create(RetryScheduler scheduler) {
+        if (scheduler == null) {
+            throw new IllegalArgumentException("Retry scheduler can not be null.");
+        }
+        return new CallConfigAdapterFactory(scheduler);
     }
 
     @Override
@@ -75,22 +80,25 @@ public class CallConfigAdapterFactory extends CallAdapter.Factory {
             public Call<Object> adapt(Call<Object> call) {
                 // Currently we return a ConfigurableCall only if a call should be retried, otherwise adapt the original
                 //noinspection unchecked
-                return (Call<Object>) delegate.adapt(shouldRetryCall ? new ConfigurableCall<>(call, callbackExecutor, callConfigWrapper) : call);
+                return (Call<Object>) delegate.adapt(shouldRetryCall ? new ConfigurableCall<>(call, retryScheduler, callConfigWrapper) : call);
             }
         };
     }
 
     /**
-     * ConfigurableCall proxies the original Call and passes the configuration down the line to the callbacks
+     * ConfigurableCall proxies the original Call and passes the configuration down the line to the callbacks.
+     * Cancelling it cancels whichever attempt is in flight, and stops any retry that is still scheduled.
      */
     private static final class ConfigurableCall<T> implements Call<T> {
         private final Call<T> proxiedCall;
-        private final ScheduledExecutorService callbackExecutor;
+        private final RetryState<T> retryState;
+        private final RetryScheduler retryScheduler;
         private final NetworkConfig networkConfig;
 
-        ConfigurableCall(Call<T> delegate, ScheduledExecutorService executor, NetworkConfig config) {
+        ConfigurableCall(Call<T> delegate, RetryScheduler scheduler, NetworkConfig config) {
             proxiedCall = delegate;
-            callbackExecutor = executor;
+            retryState = new RetryState<>(delegate);
+            retryScheduler = scheduler;
             networkConfig = config;
         }
 
@@ -106,17 +114,17 @@ public class CallConfigAdapterFactory extends CallAdapter.Factory {
          */
         @Override
         public void enqueue(Callback<T> callback) {
-            proxiedCall.enqueue(new ProxiedCallback<>(proxiedCall, callback, callbackExecutor, networkConfig));
+            proxiedCall.enqueue(new ProxiedCallback<>(proxiedCall, retryState, callback, retryScheduler, networkConfig));
         }
 
         @Override
         public void cancel() {
-            proxiedCall.cancel();
+            retryState.cancel();
         }
 
         @SuppressWarnings("CloneDoesntCallSuperClone")
         @Override public Call<T> clone() {
-            return new ConfigurableCall<>(proxiedCall.clone(), callbackExecutor, networkConfig);
+            return new ConfigurableCall<>(proxiedCall.clone(), retryScheduler, networkConfig);
         }
 
         @Override public boolean isExecuted() {
@@ -124,7 +132,7 @@ public class CallConfigAdapterFactory extends CallAdapter.Factory {
         }
 
         @Override public boolean isCanceled() {
-            return proxiedCall.isCanceled();
+            return retryState.isCanceled();
         }
 
         @Override public Request request() {
@@ -0,0 +1,133 @@
+/*
+ * Copyright © 2017 digi.me. All rights reserved.
+ */
+
+package me.digi.sdk.core.internal.network;
+
+import android.support.annotation.NonNull;
+
+import java.io.IOException;
+
+import okhttp3.Interceptor;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import okio.Buffer;
+import okio.ForwardingSource;
+import okio.GzipSource;
+import okio.Okio;
+import okio.Source;
+
+/**
+ * Asks for gzip compressed responses and decompresses them as they are read, so the encrypted (Base64) file content
+ * travels compressed but is never buffered in compressed or decompressed form.
+ *
+ * Has to be added as a network interceptor. Decoded responses have no {@code Content-Encoding} and
+ * {@code Content-Length} headers, so interceptors further up (like {@code CAContentCryptoInterceptor}) and
+ * OkHttp's own transparent gzip see a plain body. Responses in any other encoding are passed on untouched.
+ * Received and decoded body sizes are recorded in {@link TransferMetrics}.
+ */
+public class ContentEncodingInterceptor implements Interceptor {
+    static final String ACCEPT_ENCODING = "Accept-Encoding";
+    static final String CONTENT_ENCODING = "Content-Encoding";
+    static final String GZIP = "gzip";
+
+    private final TransferMetrics metrics;
+
+    public ContentEncodingInterceptor(TransferMetrics metrics) {
+        if (metrics == null) {
+            throw new IllegalArgumentException("Metrics can not be null.");
+        }
+        this.metrics = metrics;
+    }
+
+    @Override
+    public Response intercept(@NonNull Chain chain) throws IOException {
+        Request request = chain.request();
+        // Ranges of a compressed body can't be decoded on their own
+        if (request.header("Range") == null) {
+            request = request.newBuilder()
+                    .header(ACCEPT_ENCODING, GZIP)
+                    .build();
+        }
+        Response response = chain.proceed(request);
+        ResponseBody body = response.body();
+        if (body == null) {
+            return response;
+        }
+
+        String encoding = response.header(CONTENT_ENCODING);
+        boolean gzipped = GZIP.equalsIgnoreCase(encoding);
+        CountingSource wire = new CountingSource(body.source());
+        Source decoded = gzipped ? new GzipSource(wire) : wire;
+        ReportingSource reporting = new ReportingSource(decoded, request, encoding, wire);
+
+        Response.Builder builder = response.newBuilder();
+        long contentLength = body.contentLength();
+        if (gzipped) {
+            builder.removeHeader(CONTENT_ENCODING).removeHeader("Content-Length");
+            contentLength = -1L;
+        }
+        return builder.body(ResponseBody.create(body.contentType(), contentLength, Okio.buffer(reporting)))
+                .build();
+    }
+
+    private static class CountingSource extends ForwardingSource {
+        long count;
+
+        CountingSource(Source delegate) {
+            super(delegate);
+        }
+
+        @Override
+        public long read(@NonNull Buffer sink, long byteCount) throws IOException {
+            long read = super.read(sink, byteCount);
+            if (read != -1) {
+                count += read;
+            }
+            return read;
+        }
+    }
+
+    /**
+     * Counts decoded bytes and records the transfer once, at the end of the body or when it is closed.
+     */
+    private class ReportingSource extends ForwardingSource {
+        private final Request request;
+        private final String encoding;
+        private final CountingSource wire;
+        private long decodedCount;
+        private boolean reported;
+
+        ReportingSource(Source delegate, Request request, String encoding, CountingSource wire) {
+            super(delegate);
+            this.request = request;
+            this.encoding = encoding;
+            this.wire = wire;
+        }
+
+        @Override
+        public long read(@NonNull Buffer sink, long byteCount) throws IOException {
+            long read = super.read(sink, byteCount);
+            if (read == -1) {
+                report();
+            } else {
+                decodedCount += read;
+            }
+            return read;
+        }
+
+        @Override
+        public void close() throws IOException {
+            report();
+            super.close();
+        }
+
+        private void report() {
+            if (!reported) {
+                reported = true;
+                metrics.record(request, encoding, wire.count, decodedCount);
+            }
+        }
+    }
+}
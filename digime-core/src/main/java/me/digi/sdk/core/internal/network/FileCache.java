@@ -0,0 +1,173 @@
+/*
+ * Copyright © 2017 digi.me. All rights reserved.
+ */
+
+package me.digi.sdk.core.internal.network;
+
+import android.support.annotation.NonNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import okhttp3.Cache;
+import okhttp3.Interceptor;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import okio.Buffer;
+import okio.ForwardingSource;
+import okio.Okio;
+
+/**
+ * Size capped (least recently used first) disk cache of consent-access file responses.
+ *
+ * Files don't change within a session and their URL contains both the session key and the file ID,
+ * so responses are cached by URL and served without a network round trip for as long as {@link #MAX_AGE_SECONDS}.
+ * Entries of other sessions are never looked up again and age out of the cache.
+ *
+ * Responses are stored as received from the network, before {@code CAContentCryptoInterceptor} or
+ * {@code CAContentConverterFactory} decrypt them, so file content is only ever decrypted on read and
+ * plaintext never reaches the disk. File lists are not cached.
+ */
+public class FileCache {
+    static final long MAX_AGE_SECONDS = TimeUnit.DAYS.toSeconds(1);
+    private static final String CACHE_CONTROL = "Cache-Control";
+    private static final int FILE_PATH_SEGMENTS = 5;
+
+    private final Cache cache;
+    private final AtomicLong requestCount = new AtomicLong();
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong bytesSaved = new AtomicLong();
+
+    /**
+     * @param directory Directory to keep cached responses in, used by this cache only
+     * @param maxSize   Maximum size of the cache in bytes
+     */
+    public FileCache(File directory, long maxSize) {
+        if (directory == null) {
+            throw new IllegalArgumentException("Cache directory can not be null.");
+        }
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("Cache size must be positive.");
+        }
+        this.cache = new Cache(directory, maxSize);
+    }
+
+    /**
+     * Adds the cache to a client builder.
+     */
+    public OkHttpClient.Builder attach(OkHttpClient.Builder builder) {
+        return builder.cache(cache)
+                .addInterceptor(new CacheUseInterceptor())
+                .addNetworkInterceptor(new CachePolicyInterceptor());
+    }
+
+    static boolean isFileRequest(Request request) {
+        List<String> segments = request.url().pathSegments();
+        return "GET".equals(request.method())
+                && segments.size() == FILE_PATH_SEGMENTS
+                && "permission-access".equals(segments.get(1))
+                && "query".equals(segments.get(2));
+    }
+
+    /**
+     * Number of file requests made through the cache.
+     */
+    public long getRequestCount() {
+        return requestCount.get();
+    }
+
+    /**
+     * Number of file requests served from the cache without using the network.
+     */
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    public double getHitRatio() {
+        long requests = requestCount.get();
+        return requests == 0 ? 0 : (double) hitCount.get() / requests;
+    }
+
+    /**
+     * Number of response bytes read from the cache instead of the network.
+     */
+    public long getBytesSaved() {
+        return bytesSaved.get();
+    }
+
+    /**
+     * Current size of the cache on disk in bytes.
+     */
+    public long getSize() throws IOException {
+        return cache.size();
+    }
+
+    public long getMaxSize() {
+        return cache.maxSize();
+    }
+
+    public void evictAll() throws IOException {
+        cache.evictAll();
+    }
+
+    /**
+     * Lets cached files be used (service calls ask for {@code no-cache}) and counts hits.
+     * Application interceptor, it has to be added after any interceptor that decrypts responses (such as {@code CAContentCryptoInterceptor}).
+     */
+    private class CacheUseInterceptor implements Interceptor {
+        @Override
+        public Response intercept(@NonNull Chain chain) throws IOException {
+            Request request = chain.request();
+            if (!isFileRequest(request)) {
+                return chain.proceed(request);
+            }
+            requestCount.incrementAndGet();
+            Response response = chain.proceed(request.newBuilder()
+                    .removeHeader(CACHE_CONTROL)
+                    .removeHeader("Pragma")
+                    .build());
+            ResponseBody body = response.body();
+            if (response.networkResponse() != null || response.cacheResponse() == null || body == null) {
+                return response;
+            }
+            hitCount.incrementAndGet();
+            return response.newBuilder()
+                    .body(ResponseBody.create(body.contentType(), body.contentLength(),
+                            Okio.buffer(new ForwardingSource(body.source()) {
+                                @Override
+                                public long read(@NonNull Buffer sink, long byteCount) throws IOException {
+                                    long read = super.read(sink, byteCount);
+                                    if (read != -1) {
+                                        bytesSaved.addAndGet(read);
+                                    }
+                                    return read;
+                                }
+                            })))
+                    .build();
+        }
+    }
+
+    /**
+     * Marks successful file responses as fresh and everything else under file paths as not storable.
+     */
+    private static class CachePolicyInterceptor implements Interceptor {
+        @Override
+        public Response intercept(@NonNull Chain chain) throws IOException {
+            Response response = chain.proceed(chain.request());
+            if (!isFileRequest(chain.request())) {
+                return response;
+            }
+            String cacheControl = response.code() == 200 ? "private, max-age=" + MAX_AGE_SECONDS : "no-store";
+            return response.newBuilder()
+                    .header(CACHE_CONTROL, cacheControl)
+                    .removeHeader("Pragma")
+                    .removeHeader("Expires")
+                    .build();
+        }
+    }
+}
@@ -6,10 +6,9 @@ package me.digi.sdk.core.internal.network;
 
 import android.support.annotation.NonNull;
 
+import java.io.IOException;
 import java.net.SocketTimeoutException;
 import java.util.Arrays;
-import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.TimeUnit;
 
 import me.digi.sdk.core.DigiMeClient;
 import me.digi.sdk.core.SDKException;
@@ -30,16 +29,19 @@ import static me.digi.sdk.core.SDKCallback.TIMEOUT_ERROR;
  *
  * By default retries are scheduled in case of 5xx responses or if a {@link SocketTimeoutException} occurs
  *
- * If exit cases are reached (max retries reached, max interval reached, response was successful, ...)
- * {@code ProxiedCallback} calls back into registered callback (the one that was attached to proxied Call)
+ * If exit cases are reached (max retries reached, max interval reached, response was successful, call was cancelled, ...)
+ * {@code ProxiedCallback} calls back into registered callback (the one that was attached to proxied Call).
+ * Cancellation is tracked in a {@link RetryState} shared by all attempts, so a call cancelled while a retry is pending
+ * fails with "Canceled" instead of being retried.
  */
 public class ProxiedCallback<T> implements Callback<T> {
     private static final int SOCKET_TIMEOUT_MAX_ALLOWED = 120; //2 minutes cumulative wait time with retries
 
     private final BackOffTimer backOffTimer;
     private final Call<T> proxiedCall;
+    private final RetryState<T> retryState;
     private final Callback<T> registeredCallback;
-    private final ScheduledExecutorService callbackExecutor;
+    private final RetryScheduler retryScheduler;
     private final NetworkConfig networkConfig;
     private final int triesAlready;
 
@@ -47,27 +49,30 @@ public class ProxiedCallback<T> implements Callback<T> {
      * Instantiates a new Proxied callback.
      *
      * @param call     {@link Call} to proxy
+     * @param state    Cancellation state shared with the {@link Call} returned to the caller
      * @param delegate Delegate callback, that receives the actual result
-     * @param executor Scheduled executro to use for retry scheduling
+     * @param scheduler Scheduler to use for retries
      * @param config   {@link Call} configuration
      */
-    ProxiedCallback(Call<T> call, Callback<T> delegate, ScheduledExecutorService executor, NetworkConfig config) {
-        this(call, delegate, executor, config, 0);
+    ProxiedCallback(Call<T> call, RetryState<T> state, Callback<T> delegate, RetryScheduler scheduler, NetworkConfig config) {
+        this(call, state, delegate, scheduler, config, 0);
     }
 
-    private ProxiedCallback(Call<T> call, Callback<T> delegate, ScheduledExecutorService executor, NetworkConfig config, int retries) {
+    private ProxiedCallback(Call<T> call, RetryState<T> state, Callback<T> delegate, RetryScheduler scheduler, NetworkConfig config, int retries) {
         this.proxiedCall = call;
+        this.retryState = state;
         this.registeredCallback = delegate;
-        this.callbackExecutor = executor;
+        this.retryScheduler = scheduler;
         this.networkConfig = config;
         this.triesAlready = retries;
         this.backOffTimer = config.shouldPerformExponentialBackoff() ? new BackOffTimer((int)config.getMinDelay()) : null;
     }
 
-    private ProxiedCallback(Call<T> call, Callback<T> delegate, ScheduledExecutorService executor, NetworkConfig config, int retries, BackOffTimer timer) {
+    private ProxiedCallback(Call<T> call, RetryState<T> state, Callback<T> delegate, RetryScheduler scheduler, NetworkConfig config, int retries, BackOffTimer timer) {
         this.proxiedCall = call;
+        this.retryState = state;
         this.registeredCallback = delegate;
-        this.callbackExecutor = executor;
+        this.retryScheduler = scheduler;
         this.networkConfig = config;
         this.triesAlready = retries;
         this.backOffTimer = timer;
@@ -75,7 +80,7 @@ public class ProxiedCallback<T> implements Callback<T> {
 
     @Override
     public void onResponse(@NonNull Call<T> call, @NonNull Response<T> response) {
-        if (!response.isSuccessful()) {
+        if (!response.isSuccessful() && !retryState.isCanceled()) {
             long nextDelay = getBackoff();
             if (nextDelay != BackOffTimer.STOP && isRetryRequired(networkConfig, response.code()) && triesAlready < networkConfig.getMaxRetries()) {
                 scheduleCall(nextDelay);
@@ -88,7 +93,7 @@ public class ProxiedCallback<T> implements Callback<T> {
     @Override
     public void onFailure(@NonNull Call<T> call, @NonNull Throwable t) {
         final long nextDelay = getBackoff();
-        if (nextDelay == BackOffTimer.STOP || !isRetryRequired(networkConfig, t)) {
+        if (call.isCanceled() || retryState.isCanceled() || nextDelay == BackOffTimer.STOP || !isRetryRequired(networkConfig, t)) {
             registeredCallback.onFailure(call, t);
         } else if (triesAlready < networkConfig.getMaxRetries()) {
             scheduleCall(nextDelay);
@@ -127,12 +132,16 @@ public class ProxiedCallback<T> implements Callback<T> {
     }
 
     private void scheduleCall(long delay) {
-        callbackExecutor.schedule(new Runnable() {
+        retryScheduler.schedule(new Runnable() {
             @Override
             public void run() {
                 final Call<T> call = proxiedCall.clone();
-                call.enqueue(new ProxiedCallback<>(call, registeredCallback, callbackExecutor, networkConfig, triesAlready + 1, backOffTimer));
+                if (!retryState.advance(call)) {
+                    registeredCallback.onFailure(call, new IOException("Canceled"));
+                    return;
+                }
+                call.enqueue(new ProxiedCallback<>(call, retryState, registeredCallback, retryScheduler, networkConfig, triesAlready + 1, backOffTimer));
             }
-        }, delay, TimeUnit.MILLISECONDS);
+        }, delay);
     }
 }
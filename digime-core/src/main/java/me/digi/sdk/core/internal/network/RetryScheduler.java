@@ -0,0 +1,117 @@
+/*
+ * Copyright © 2017 digi.me. All rights reserved.
+ */
+
+package me.digi.sdk.core.internal.network;
+
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Schedules delayed retries of failed calls for {@link ProxiedCallback}.
+ *
+ * A single {@linkplain #shared() shared} scheduler serves all API clients. Its one daemon thread is only started
+ * when the first retry is scheduled, and stops again after being idle, so sessions don't leak retry threads.
+ * A different scheduler (for example one backed by a test executor) can be set with {@link #setShared(RetryScheduler)}
+ * or passed to {@link CallConfigAdapterFactory#create(RetryScheduler)}.
+ */
+public class RetryScheduler {
+    private static final long IDLE_THREAD_TIMEOUT_SECONDS = 30;
+    private static final Object SYNC = new Object();
+    private static volatile RetryScheduler shared;
+
+    private final ScheduledExecutorService executor;
+    private final AtomicInteger pendingCount = new AtomicInteger();
+    private final AtomicLong scheduledCount = new AtomicLong();
+    private final AtomicLong executedCount = new AtomicLong();
+
+    /**
+     * @param executor Executor that runs scheduled retries
+     */
+    public RetryScheduler(ScheduledExecutorService executor) {
+        if (executor == null) {
+            throw new IllegalArgumentException("Executor can not be null.");
+        }
+        this.executor = executor;
+    }
+
+    public static RetryScheduler shared() {
+        RetryScheduler scheduler = shared;
+        if (scheduler == null) {
+            synchronized (SYNC) {
+                scheduler = shared;
+                if (scheduler == null) {
+                    scheduler = new RetryScheduler(defaultExecutor());
+                    shared = scheduler;
+                }
+            }
+        }
+        return scheduler;
+    }
+
+    /**
+     * Replaces the shared scheduler. Affects API clients created afterwards.
+     *
+     * @param scheduler Scheduler to use, or {@code null} to go back to the default one
+     */
+    public static void setShared(RetryScheduler scheduler) {
+        synchronized (SYNC) {
+            shared = scheduler;
+        }
+    }
+
+    /**
+     * Runs {@code retry} after {@code delayMillis} milliseconds.
+     */
+    public void schedule(final Runnable retry, long delayMillis) {
+        pendingCount.incrementAndGet();
+        scheduledCount.incrementAndGet();
+        executor.schedule(new Runnable() {
+            @Override
+            public void run() {
+                pendingCount.decrementAndGet();
+                executedCount.incrementAndGet();
+                retry.run();
+            }
+        }, delayMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Number of retries waiting for their delay to pass.
+     */
+    public int getPendingCount() {
+        return pendingCount.get();
+    }
+
+    /**
+     * Number of retries scheduled since the scheduler was created.
+     */
+    public long getScheduledCount() {
+        return scheduledCount.get();
+    }
+
+    /**
+     * Number of retries that have been run.
+     */
+    public long getExecutedCount() {
+        return executedCount.get();
+    }
+
+    private static ScheduledExecutorService defaultExecutor() {
+        ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "DigiMe retry scheduler");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        executor.setKeepAliveTime(IDLE_THREAD_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+}
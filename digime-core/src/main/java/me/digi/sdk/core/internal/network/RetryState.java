@@ -0,0 +1,49 @@
+/*
+ * Copyright © 2017 digi.me. All rights reserved.
+ */
+
+package me.digi.sdk.core.internal.network;
+
+import retrofit2.Call;
+
+/**
+ * Cancellation state shared by a {@link CallConfigAdapterFactory} call and all of its retries.
+ *
+ * Retries run on clones of the original call, so cancelling only the original would leave a scheduled or
+ * in-flight retry running. {@code RetryState} tracks the attempt that is currently in flight; {@link #cancel()}
+ * cancels it, and {@link #advance(Call)} refuses to start another attempt once the call was cancelled.
+ */
+final class RetryState<T> {
+    private volatile boolean canceled;
+    private volatile Call<T> current;
+
+    RetryState(Call<T> initial) {
+        current = initial;
+    }
+
+    /**
+     * Cancels the attempt in flight and any retry scheduled after it.
+     */
+    void cancel() {
+        canceled = true;
+        current.cancel();
+    }
+
+    boolean isCanceled() {
+        return canceled || current.isCanceled();
+    }
+
+    /**
+     * Makes {@code next} the attempt in flight.
+     *
+     * @return {@code false} if the call was cancelled, in which case {@code next} is cancelled as well and must not be enqueued
+     */
+    boolean advance(Call<T> next) {
+        current = next;
+        if (canceled) {
+            next.cancel();
+            return false;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,87 @@
+/*
+ * Copyright © 2017 digi.me. All rights reserved.
+ */
+
+package me.digi.sdk.core.internal.network;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import okhttp3.Request;
+
+/**
+ * Counts response bytes received on the wire and after content decoding, as recorded by {@link ContentEncodingInterceptor}.
+ *
+ * Totals are kept for all API clients in the {@linkplain #shared() shared} instance.
+ * Individual requests are reported to the {@link Listener} set with {@link #setListener(Listener)}.
+ */
+public class TransferMetrics {
+    private static final TransferMetrics SHARED = new TransferMetrics();
+
+    private final AtomicLong responseCount = new AtomicLong();
+    private final AtomicLong encodedResponseCount = new AtomicLong();
+    private final AtomicLong wireBytes = new AtomicLong();
+    private final AtomicLong decodedBytes = new AtomicLong();
+    private volatile Listener listener;
+
+    public interface Listener {
+        /**
+         * Called once a response body has been read to the end or closed.
+         * Runs on the thread that consumed the body, so it should return quickly.
+         *
+         * @param request         Request as it was sent to the network
+         * @param contentEncoding Encoding of the response body on the wire, or {@code null} if it was not encoded
+         * @param wireBytes       Number of body bytes received
+         * @param decodedBytes    Number of body bytes after decoding
+         */
+        void transferCompleted(Request request, String contentEncoding, long wireBytes, long decodedBytes);
+    }
+
+    public static TransferMetrics shared() {
+        return SHARED;
+    }
+
+    /**
+     * @param listener Listener to report each response to, or {@code null} to stop reporting
+     */
+    public void setListener(Listener listener) {
+        this.listener = listener;
+    }
+
+    void record(Request request, String contentEncoding, long wire, long decoded) {
+        responseCount.incrementAndGet();
+        if (contentEncoding != null) {
+            encodedResponseCount.incrementAndGet();
+        }
+        wireBytes.addAndGet(wire);
+        decodedBytes.addAndGet(decoded);
+        Listener current = listener;
+        if (current != null) {
+            current.transferCompleted(request, contentEncoding, wire, decoded);
+        }
+    }
+
+    public long getResponseCount() {
+        return responseCount.get();
+    }
+
+    /**
+     * Number of responses that arrived with a content encoding.
+     */
+    public long getEncodedResponseCount() {
+        return encodedResponseCount.get();
+    }
+
+    /**
+     * Total number of response body bytes received on the wire.
+     */
+    public long getWireBytes() {
+        return wireBytes.get();
+    }
+
+    /**
+     * Total number of response body bytes after decoding.
+     */
+    public long getDecodedBytes() {
+        return decodedBytes.get();
+    }
+}
@@ -8,20 +8,29 @@ import android.support.annotation.NonNull;
 
 import me.digi.sdk.core.BuildConfig;
 import me.digi.sdk.core.DigiMeClient;
-import me.digi.sdk.core.internal.CAContentCryptoInterceptor;
+import me.digi.sdk.core.internal.network.ContentEncodingInterceptor;
+import me.digi.sdk.core.internal.network.FileCache;
+import me.digi.sdk.core.internal.network.TransferMetrics;
 import me.digi.sdk.core.session.CASession;
 import me.digi.sdk.core.DigiMeSDKVersion;
 import me.digi.sdk.core.config.ApiConfig;
 
+import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import java.util.concurrent.TimeUnit;
 
 import okhttp3.CertificatePinner;
+import okhttp3.CipherSuite;
+import okhttp3.ConnectionPool;
 import okhttp3.ConnectionSpec;
+import okhttp3.Dispatcher;
 import okhttp3.Interceptor;
 import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
 import okhttp3.Request;
 import okhttp3.Response;
 import okhttp3.TlsVersion;
@@ -30,6 +39,60 @@ import okhttp3.logging.HttpLoggingInterceptor;
 public class OkHttpProvider {
 
     private static final String SDK_USER_AGENT = "DigiMeSDK";
+    private static final Object ROOT_SYNC = new Object();
+    private static final String[] TLS_1_3_CIPHER_SUITES = {
+            "TLS_AES_128_GCM_SHA256",
+            "TLS_AES_256_GCM_SHA384",
+            "TLS_CHACHA20_POLY1305_SHA256"
+    };
+
+    private static final String FILE_CACHE_DIRECTORY = "digime-files";
+
+    private static volatile OkHttpClient rootClient;
+    private static volatile FileCache fileCache;
+
+    /**
+     * Client all SDK clients are derived from, so that every session shares one connection pool and dispatcher
+     * and reuses already established (and pinned) connections.
+     * Pool and dispatcher limits are taken from {@link DigiMeClient} when the root client is first used.
+     */
+    public static OkHttpClient rootClient() {
+        OkHttpClient client = rootClient;
+        if (client == null) {
+            synchronized (ROOT_SYNC) {
+                client = rootClient;
+                if (client == null) {
+                    Dispatcher dispatcher = new Dispatcher();
+                    dispatcher.setMaxRequestsPerHost(DigiMeClient.maxRequestsPerHost);
+                    client = new OkHttpClient.Builder()
+                            .connectionPool(new ConnectionPool(DigiMeClient.maxIdleConnections, DigiMeClient.connectionKeepAlive, TimeUnit.SECONDS))
+                            .dispatcher(dispatcher)
+                            .build();
+                    rootClient = client;
+                }
+            }
+        }
+        return client;
+    }
+
+    /**
+     * Disk cache of encrypted file responses shared by all SDK clients,
+     * or {@code null} if {@link DigiMeClient#fileCacheSize} was not set when it was first requested.
+     */
+    public static FileCache fileCache() {
+        FileCache cache = fileCache;
+        if (cache == null && DigiMeClient.fileCacheSize > 0) {
+            synchronized (ROOT_SYNC) {
+                cache = fileCache;
+                if (cache == null) {
+                    cache = new FileCache(new File(DigiMeClient.getApplicationContext().getCacheDir(), FILE_CACHE_DIRECTORY),
+                            DigiMeClient.fileCacheSize);
+                    fileCache = cache;
+                }
+            }
+        }
+        return cache;
+    }
 
     public static OkHttpClient client(CertificatePinner certPinner) {
         return attachInterceptors(providerBuilder(certPinner))
@@ -48,7 +111,7 @@ public class OkHttpProvider {
             throw new IllegalArgumentException("Must provide a valid http client.");
         }
 
-        return attachInterceptors(client.newBuilder()).connectionSpecs(defaultConnectionSpec())
+        return configureTransport(attachInterceptors(client.newBuilder()))
                 .certificatePinner(certPinner)
                 .build();
     }
@@ -65,15 +128,13 @@ public class OkHttpProvider {
             throw new IllegalArgumentException("Must provide a valid http client.");
         }
 
-        return attachInterceptors(client.newBuilder())
-                .connectionSpecs(defaultConnectionSpec())
+        return configureTransport(attachInterceptors(client.newBuilder()))
                 .certificatePinner(certPinner)
                 .build();
     }
 
     private static OkHttpClient.Builder providerBuilder(CertificatePinner certPinner) {
-        return new OkHttpClient.Builder()
-                .connectionSpecs(defaultConnectionSpec())
+        return configureTransport(rootClient().newBuilder())
                 .certificatePinner(certPinner);
     }
 
@@ -84,17 +145,44 @@ public class OkHttpProvider {
             throw new IllegalArgumentException("Must provide a valid session.");
         }
 
-        return new OkHttpClient.Builder()
-                .connectionSpecs(defaultConnectionSpec())
+        return configureTransport(rootClient().newBuilder())
                 .certificatePinner(certPinner);
     }
 
+    /**
+     * Sets TLS versions and HTTP protocols. Unless {@link DigiMeClient#enableHttp2} is set, only TLS 1.2 is used
+     * and the protocols are left as configured on {@code builder}.
+     */
+    static OkHttpClient.Builder configureTransport(OkHttpClient.Builder builder) {
+        if (DigiMeClient.enableHttp2) {
+            return builder.connectionSpecs(Collections.singletonList(modernConnectionSpec()))
+                    .protocols(Arrays.asList(Protocol.HTTP_2, Protocol.HTTP_1_1));
+        }
+        return builder.connectionSpecs(defaultConnectionSpec());
+    }
+
     private static List<ConnectionSpec> defaultConnectionSpec() {
         return Collections.singletonList(new ConnectionSpec.Builder(ConnectionSpec.MODERN_TLS)
                 .tlsVersions(TlsVersion.TLS_1_2)
                 .build());
     }
 
+    /**
+     * TLS 1.3 and 1.2 with the TLS 1.3 cipher suites added to {@link ConnectionSpec#MODERN_TLS}.
+     * Versions and suites the platform doesn't support are left out when connecting, so this falls back to TLS 1.2.
+     */
+    private static ConnectionSpec modernConnectionSpec() {
+        List<String> cipherSuites = new ArrayList<>(Arrays.asList(TLS_1_3_CIPHER_SUITES));
+        //noinspection ConstantConditions
+        for (CipherSuite suite : ConnectionSpec.MODERN_TLS.cipherSuites()) {
+            cipherSuites.add(suite.javaName());
+        }
+        return new ConnectionSpec.Builder(ConnectionSpec.MODERN_TLS)
+                .tlsVersions(TlsVersion.TLS_1_3, TlsVersion.TLS_1_2)
+                .cipherSuites(cipherSuites.toArray(new String[cipherSuites.size()]))
+                .build();
+    }
+
     private static OkHttpClient.Builder attachInterceptors(OkHttpClient.Builder builder) {
 
         if (BuildConfig.LOG_REQUESTS) {
@@ -102,7 +190,11 @@ public class OkHttpProvider {
             logging.setLevel(HttpLoggingInterceptor.Level.HEADERS);
             builder.addInterceptor(logging);
         }
-        builder.addInterceptor(new CAContentCryptoInterceptor(DigiMeClient.getDefaultKeyLoader().getStore()));
+        builder.addNetworkInterceptor(new ContentEncodingInterceptor(TransferMetrics.shared()));
+        FileCache cache = fileCache();
+        if (cache != null) {
+            cache.attach(builder);
+        }
         return setDefaultTimeout(builder).addInterceptor(new Interceptor() {
                           @Override
                           public Response intercept(@NonNull Chain chain) throws IOException {
@@ -10,11 +10,15 @@ import java.io.IOException;
 
 import me.digi.sdk.core.entities.CAFileResponse;
 import me.digi.sdk.core.entities.CAFiles;
+import me.digi.sdk.core.internal.CAContentStream;
+import me.digi.sdk.core.internal.DecryptInConverter;
 import me.digi.sdk.core.internal.network.CallConfig;
+import okhttp3.ResponseBody;
 import retrofit2.Call;
 import retrofit2.http.GET;
 import retrofit2.http.Headers;
 import retrofit2.http.Path;
+import retrofit2.http.Streaming;
 
 public interface ConsentAccessService {
 
@@ -31,6 +35,7 @@ public interface ConsentAccessService {
             "Content-type: application/json",
             "Cache-Control: no-cache"
     })
+    @DecryptInConverter
     @GET("/v1/permission-access/query/{sessionKey}/{fileName}")
     Call<CAFileResponse> data(@Path("sessionKey") String sessionKey,
                               @Path("fileName") String fileName);
@@ -40,6 +45,32 @@ public interface ConsentAccessService {
             "Content-type: application/json",
             "Cache-Control: no-cache"
     })
+    @DecryptInConverter
+    @Streaming
+    @GET("/v1/permission-access/query/{sessionKey}/{fileName}")
+    Call<CAContentStream> dataStream(@Path("sessionKey") String sessionKey,
+                                     @Path("fileName") String fileName);
+
+    /**
+     * File response left encrypted, to be decoded with {@link me.digi.sdk.core.internal.CAFileDecoder}.
+     * The body is streamed, so it must be closed once decoded or dropped.
+     */
+    @CallConfig(shouldRetry = true, retryCount = 3, retryOnResponseCode = {404}, retriedExceptions = {IOException.class})
+    @Headers({
+            "Content-type: application/json",
+            "Cache-Control: no-cache"
+    })
+    @Streaming
+    @GET("/v1/permission-access/query/{sessionKey}/{fileName}")
+    Call<ResponseBody> dataEncrypted(@Path("sessionKey") String sessionKey,
+                                     @Path("fileName") String fileName);
+
+    @CallConfig(shouldRetry = true, retryCount = 3, retryOnResponseCode = {404}, retriedExceptions = {IOException.class})
+    @Headers({
+            "Content-type: application/json",
+            "Cache-Control: no-cache"
+    })
+    @DecryptInConverter
     @GET("/v1/permission-access/query/{sessionKey}/{fileName}")
     Call<JsonElement> dataRaw(@Path("sessionKey") String sessionKey,
                               @Path("fileName") String fileName);
@@ -4,7 +4,7 @@
 
 package me.digi.sdk.core.session;
 
-interface Session {
+public interface Session {
 
     String getId();
 
@@ -0,0 +1,84 @@
+/*
+ * Copyright © 2017 digi.me. All rights reserved.
+ */
+
+package me.digi.sdk.core;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import me.digi.sdk.core.session.CASession;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+public class ApiClientCacheTest {
+    private final ApiClientCache<Object> cache = new ApiClientCache<>(new ApiClientCache.ClientFactory<Object>() {
+        @Override
+        public Object create(CASession session) {
+            return new Object();
+        }
+    });
+    private int defaultMaxClients;
+
+    @Before
+    public void setUp() {
+        defaultMaxClients = DigiMeClient.maxApiClients;
+        DigiMeClient.maxApiClients = 2;
+    }
+
+    @After
+    public void tearDown() {
+        DigiMeClient.maxApiClients = defaultMaxClients;
+    }
+
+    @Test
+    public void reusesClientOfSession() {
+        CASession session = session("a", 60000);
+
+        assertSame(cache.get(session, false), cache.get(session, false));
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void evictsLeastRecentlyUsedButNotPinned() {
+        CASession pinned = session("default", 0);
+        CASession a = session("a", 60000);
+        CASession b = session("b", 60000);
+        Object pinnedClient = cache.get(pinned, true);
+        Object clientA = cache.get(a, false);
+        cache.get(b, false);
+        cache.get(a, false);
+        cache.get(session("c", 60000), false);
+
+        assertEquals(3, cache.size());
+        assertSame(pinnedClient, cache.get(pinned, true));
+        assertSame(clientA, cache.get(a, false));
+        assertEquals(1, cache.getEvictionCount());
+    }
+
+    @Test
+    public void evictsExpiredSessions() {
+        CASession expiring = session("a", 0);
+        Object client = cache.get(expiring, false);
+        cache.get(session("b", 60000), false);
+
+        assertEquals(1, cache.size());
+        assertNotSame(client, cache.get(expiring, false));
+    }
+
+    @Test
+    public void removeReleasesClient() {
+        CASession session = session("a", 60000);
+        Object client = cache.get(session, false);
+
+        assertSame(client, cache.remove(session));
+        assertEquals(0, cache.size());
+    }
+
+    private static CASession session(String key, long validFor) {
+        return new CASession(key, validFor == 0 ? 0 : System.currentTimeMillis() + validFor, key, null);
+    }
+}
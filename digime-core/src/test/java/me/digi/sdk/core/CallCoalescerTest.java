@@ -0,0 +1,84 @@
+/*
+ * Copyright © 2017 digi.me. All rights reserved.
+ */
+
+package me.digi.sdk.core;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import me.digi.sdk.core.entities.CAFileResponse;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+public class CallCoalescerTest {
+    private final CallCoalescer coalescer = new CallCoalescer();
+    private final List<String> events = new ArrayList<>();
+
+    @Test
+    public void sharesOneCallBetweenConcurrentCallers() {
+        ContentKey key = new ContentKey("session", "file", CAFileResponse.class);
+
+        SDKCallback<CAFileResponse> flight = coalescer.join(key, recording("first"));
+        assertNotNull(flight);
+        assertNull(coalescer.join(key, recording("second")));
+        assertNull(coalescer.join(key, null));
+        flight.succeeded(new SDKResponse<>(new CAFileResponse(), null));
+
+        assertEquals(2, events.size());
+        assertEquals("first succeeded", events.get(0));
+        assertEquals("second succeeded", events.get(1));
+        assertEquals(2, coalescer.getCoalescedCount());
+        assertEquals(0, coalescer.getInFlightCount());
+    }
+
+    @Test
+    public void deliversFailureToEveryCaller() {
+        ContentKey key = new ContentKey("session", "file", CAFileResponse.class);
+
+        SDKCallback<CAFileResponse> flight = coalescer.join(key, recording("first"));
+        coalescer.join(key, recording("second"));
+        flight.failed(new SDKException("Request Failure"));
+
+        assertEquals("first failed", events.get(0));
+        assertEquals("second failed", events.get(1));
+    }
+
+    @Test
+    public void keepsDifferentContentApart() {
+        assertNotNull(coalescer.join(new ContentKey("session", "a", CAFileResponse.class), recording("a")));
+        assertNotNull(coalescer.join(new ContentKey("session", "b", CAFileResponse.class), recording("b")));
+        assertNotNull(coalescer.join(new ContentKey("other", "a", CAFileResponse.class), recording("other")));
+        assertNotNull(coalescer.join(new ContentKey("session", "a", String.class), recording("json")));
+
+        assertEquals(4, coalescer.getInFlightCount());
+        assertEquals(0, coalescer.getCoalescedCount());
+    }
+
+    @Test
+    public void startsNewCallOnceFlightHasLanded() {
+        ContentKey key = new ContentKey("session", "file", CAFileResponse.class);
+
+        coalescer.join(key, recording("first")).succeeded(new SDKResponse<>(new CAFileResponse(), null));
+
+        assertNotNull(coalescer.join(key, recording("second")));
+    }
+
+    private SDKCallback<CAFileResponse> recording(final String name) {
+        return new SDKCallback<CAFileResponse>() {
+            @Override
+            public void succeeded(SDKResponse<CAFileResponse> result) {
+                events.add(name + " succeeded");
+            }
+
+            @Override
+            public void failed(SDKException exception) {
+                events.add(name + " failed");
+            }
+        };
+    }
+}
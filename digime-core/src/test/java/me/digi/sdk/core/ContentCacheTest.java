@@ -0,0 +1,136 @@
+/*
+ * Copyright © 2017 digi.me. All rights reserved.
+ */
+
+package me.digi.sdk.core;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParser;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+
+import me.digi.sdk.core.entities.CAContent;
+import me.digi.sdk.core.entities.CAFileResponse;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class ContentCacheTest {
+    private final ContentCache cache = new ContentCache(DigiMeAPIClient.createGson());
+    private long defaultCacheSize;
+
+    @Before
+    public void setUp() {
+        defaultCacheSize = DigiMeClient.contentCacheSize;
+    }
+
+    @After
+    public void tearDown() {
+        DigiMeClient.contentCacheSize = defaultCacheSize;
+    }
+
+    @Test
+    public void returnsContentOfSameSessionFileAndType() {
+        cache.put("session", "file", CAFileResponse.class, fileResponse(10));
+
+        SDKResponse<CAFileResponse> cached = cache.get("session", "file", CAFileResponse.class);
+        assertEquals(10, cached.body.fileContent.size());
+        assertEquals("Post number 3", cached.body.fileContent.get(3).text);
+        assertNull(cache.get("other", "file", CAFileResponse.class));
+        assertNull(cache.get("session", "other", CAFileResponse.class));
+        assertNull(cache.get("session", "file", JsonElement.class));
+        assertEquals(1, cache.getHitCount());
+        assertEquals(3, cache.getMissCount());
+    }
+
+    @Test
+    public void handsOutCopies() {
+        cache.put("session", "file", CAFileResponse.class, fileResponse(2));
+        cache.put("session", "file", JsonElement.class, jsonResponse());
+
+        SDKResponse<CAFileResponse> first = cache.get("session", "file", CAFileResponse.class);
+        first.body.fileContent.get(0).text = "changed";
+        first.body.fileContent.clear();
+        cache.get("session", "file", JsonElement.class).body.getAsJsonObject().remove("fileContent");
+
+        SDKResponse<CAFileResponse> second = cache.get("session", "file", CAFileResponse.class);
+        assertNotSame(first.body, second.body);
+        assertEquals("Post number 0", second.body.fileContent.get(0).text);
+        assertTrue(cache.get("session", "file", JsonElement.class).body.getAsJsonObject().has("fileContent"));
+    }
+
+    @Test
+    public void evictsLeastRecentlyUsedOverWeightLimit() {
+        cache.put("session", "a", CAFileResponse.class, fileResponse(100));
+        long entryWeight = cache.getWeight();
+        cache.clear();
+        DigiMeClient.contentCacheSize = 2 * entryWeight + entryWeight / 2;
+
+        cache.put("session", "a", CAFileResponse.class, fileResponse(100));
+        cache.put("session", "b", CAFileResponse.class, fileResponse(100));
+        cache.get("session", "a", CAFileResponse.class);
+        cache.put("session", "c", CAFileResponse.class, fileResponse(100));
+
+        assertEquals(2, cache.size());
+        assertEquals(100, cache.get("session", "a", CAFileResponse.class).body.fileContent.size());
+        assertNull(cache.get("session", "b", CAFileResponse.class));
+        assertEquals(1, cache.getEvictionCount());
+        assertTrue(cache.getWeight() <= DigiMeClient.contentCacheSize);
+    }
+
+    @Test
+    public void skipsContentWhenDisabled() {
+        DigiMeClient.contentCacheSize = 0;
+
+        cache.put("session", "file", CAFileResponse.class, fileResponse(1));
+
+        assertEquals(0, cache.size());
+        assertEquals(0, cache.getWeight());
+    }
+
+    @Test
+    public void invalidatesOnlyGivenSession() {
+        cache.put("other", "a", CAFileResponse.class, fileResponse(10));
+        long otherWeight = cache.getWeight();
+        cache.put("session", "a", CAFileResponse.class, fileResponse(10));
+        cache.put("session", "a", JsonElement.class, jsonResponse());
+
+        cache.invalidate("session");
+
+        assertEquals(1, cache.size());
+        assertNull(cache.get("session", "a", JsonElement.class));
+        assertEquals(otherWeight, cache.getWeight());
+    }
+
+    @Test
+    public void weighsBySerializedSize() {
+        cache.put("session", "small", CAFileResponse.class, fileResponse(10));
+        long small = cache.getWeight();
+        cache.put("session", "large", CAFileResponse.class, fileResponse(100));
+
+        assertTrue(small > 0);
+        assertTrue(cache.getWeight() - small > small);
+    }
+
+    private static SDKResponse<CAFileResponse> fileResponse(int items) {
+        CAFileResponse response = new CAFileResponse();
+        response.fileContent = new ArrayList<>();
+        for (int i = 0; i < items; i++) {
+            CAContent content = new CAContent();
+            content.text = "Post number " + i;
+            content.entityId = "entity_" + i;
+            response.fileContent.add(content);
+        }
+        return new SDKResponse<>(response, null);
+    }
+
+    private static SDKResponse<JsonElement> jsonResponse() {
+        return new SDKResponse<>(new JsonParser().parse("{\"fileContent\":[{\"text\":\"post\",\"likeCount\":1}]}"), null);
+    }
+}
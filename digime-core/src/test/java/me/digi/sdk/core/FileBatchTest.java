@@ -0,0 +1,189 @@
+/*
+ * Copyright © 2017 digi.me. All rights reserved.
+ */
+
+package me.digi.sdk.core;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import me.digi.sdk.core.config.BatchOptions;
+import me.digi.sdk.core.entities.CAFileResponse;
+import okhttp3.Request;
+import retrofit2.Call;
+import retrofit2.Callback;
+import retrofit2.Response;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class FileBatchTest {
+    private final Map<String, SDKCallback<CAFileResponse>> requested = new LinkedHashMap<>();
+    private final List<FakeCall> calls = new ArrayList<>();
+    private final List<String> events = new ArrayList<>();
+
+    private final FileBatch.FileFetcher fetcher = new FileBatch.FileFetcher() {
+        @Override
+        public Call<CAFileResponse> fetch(String fileId, FileBatch.FileCallback callback) {
+            requested.put(fileId, callback);
+            FakeCall call = new FakeCall();
+            calls.add(call);
+            return call;
+        }
+    };
+
+    private final BatchCallback callback = new BatchCallback() {
+        @Override
+        public void fileRetrieved(FileBatch batch, String fileId, CAFileResponse content) {
+            events.add("ok " + fileId + " " + batch.getCompletedCount() + "/" + batch.getTotalCount());
+        }
+
+        @Override
+        public void fileFailed(FileBatch batch, String fileId, SDKException exception) {
+            events.add("failed " + fileId + " " + batch.getCompletedCount() + "/" + batch.getTotalCount());
+        }
+
+        @Override
+        public void batchFinished(FileBatch batch) {
+            events.add("finished");
+        }
+    };
+
+    @Test
+    public void limitsRequestsInFlight() {
+        FileBatch batch = new FileBatch(Arrays.asList("a", "b", "c", "b", "d"), new BatchOptions(2, false), callback, fetcher);
+        batch.start();
+        assertEquals(Arrays.asList("a", "b"), new ArrayList<>(requested.keySet()));
+
+        succeed("b");
+        assertEquals(Arrays.asList("a", "b", "c"), new ArrayList<>(requested.keySet()));
+        fail("a");
+        succeed("c");
+        succeed("d");
+
+        assertEquals(Arrays.asList("ok b 1/4", "failed a 2/4", "ok c 3/4", "ok d 4/4", "finished"), events);
+        assertEquals(3, batch.getSucceededCount());
+        assertEquals(1, batch.getFailedCount());
+        assertTrue(batch.isFinished());
+    }
+
+    @Test
+    public void fetchThatThrowsFailsFile() {
+        FileBatch.FileFetcher throwing = new FileBatch.FileFetcher() {
+            @Override
+            public Call<?> fetch(String fileId, FileBatch.FileCallback callback) {
+                if (fileId.equals("b")) {
+                    throw new IllegalArgumentException("bad file ID");
+                }
+                return fetcher.fetch(fileId, callback);
+            }
+        };
+        FileBatch batch = new FileBatch(Arrays.asList("a", "b", "c"), new BatchOptions(2, false), callback, throwing);
+        batch.start();
+        assertEquals(Arrays.asList("a", "c"), new ArrayList<>(requested.keySet()));
+
+        succeed("a");
+        succeed("c");
+
+        assertEquals(Arrays.asList("failed b 1/3", "ok a 2/3", "ok c 3/3", "finished"), events);
+        assertTrue(batch.isFinished());
+    }
+
+    @Test
+    public void cancelStopsBatch() {
+        FileBatch batch = new FileBatch(Arrays.asList("a", "b", "c"), new BatchOptions(2, false), callback, fetcher);
+        batch.start();
+        batch.cancel();
+        succeed("a");
+
+        assertEquals(2, requested.size());
+        assertTrue(calls.get(0).canceled && calls.get(1).canceled);
+        assertEquals(Collections.singletonList("finished"), events);
+        assertTrue(batch.isCancelled());
+        assertEquals(0, batch.getCompletedCount());
+    }
+
+    @Test
+    public void cancelsOnFailureWhenRequested() {
+        FileBatch batch = new FileBatch(Arrays.asList("a", "b", "c"), new BatchOptions(1, true), callback, fetcher);
+        batch.start();
+        fail("a");
+
+        assertEquals(1, requested.size());
+        assertEquals(Arrays.asList("failed a 1/3", "finished"), events);
+        assertTrue(batch.isCancelled());
+    }
+
+    @Test
+    public void emptyBatchFinishesImmediately() {
+        FileBatch batch = new FileBatch(Collections.<String>emptyList(), new BatchOptions(), callback, fetcher);
+        batch.start();
+
+        assertEquals(Collections.singletonList("finished"), events);
+        assertFalse(batch.isCancelled());
+    }
+
+    @Test
+    public void failReportsEveryFile() {
+        FileBatch batch = new FileBatch(Arrays.asList("a", "b"), new BatchOptions(), callback, null);
+        batch.fail(new SDKException("invalid"));
+
+        assertEquals(Arrays.asList("failed a 2/2", "failed b 2/2", "finished"), events);
+    }
+
+    private void succeed(String fileId) {
+        requested.get(fileId).succeeded(new SDKResponse<>(new CAFileResponse(), null));
+    }
+
+    private void fail(String fileId) {
+        requested.get(fileId).failed(new SDKException("failed"));
+    }
+
+    private static final class FakeCall implements Call<CAFileResponse> {
+        boolean canceled;
+
+        @Override
+        public Response<CAFileResponse> execute() throws IOException {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void enqueue(Callback<CAFileResponse> callback) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public boolean isExecuted() {
+            return true;
+        }
+
+        @Override
+        public void cancel() {
+            canceled = true;
+        }
+
+        @Override
+        public boolean isCanceled() {
+            return canceled;
+        }
+
+        @SuppressWarnings("CloneDoesntCallSuperClone")
+        @Override
+        public Call<CAFileResponse> clone() {
+            return new FakeCall();
+        }
+
+        @Override
+        public Request request() {
+            return null;
+        }
+    }
+}
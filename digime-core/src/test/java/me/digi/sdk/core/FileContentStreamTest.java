@@ -0,0 +1,201 @@
+/*
+ * Copyright © 2017 digi.me. All rights reserved.
+ */
+
+package me.digi.sdk.core;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.Executor;
+
+import me.digi.sdk.core.config.StreamOptions;
+import me.digi.sdk.core.entities.CAContent;
+import me.digi.sdk.crypto.DGMCryptoFailureException;
+import me.digi.sdk.crypto.DGMCryptoStreamException;
+import me.digi.sdk.crypto.FailureCause;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class FileContentStreamTest {
+    private static final Executor DIRECT = new Executor() {
+        @Override
+        public void execute(Runnable command) {
+            command.run();
+        }
+    };
+
+    private final List<String> events = new ArrayList<>();
+    private final Queue<Runnable> deliveries = new ArrayDeque<>();
+    private final Executor queuedDelivery = new Executor() {
+        @Override
+        public void execute(Runnable command) {
+            deliveries.add(command);
+        }
+    };
+
+    private final ItemCallback<CAContent> callback = new ItemCallback<CAContent>() {
+        @Override
+        public void itemsRetrieved(FileContentStream stream, List<CAContent> items) {
+            events.add("items " + items.size());
+        }
+
+        @Override
+        public void failed(FileContentStream stream, SDKException exception) {
+            events.add("failed " + exception.getCode());
+        }
+
+        @Override
+        public void finished(FileContentStream stream) {
+            events.add("finished " + stream.getDeliveredCount());
+        }
+    };
+
+    @Test
+    public void deliversItemsInBatches() {
+        FakeReader reader = new FakeReader(120);
+        FileContentStream stream = new FileContentStream("file", new StreamOptions(50, 2), callback, DIRECT, null);
+
+        stream.read(reader);
+
+        assertEquals("[items 50, items 50, items 20, finished 120]", events.toString());
+        assertTrue(stream.isFinished());
+        assertTrue(reader.closed);
+    }
+
+    @Test
+    public void pausesDecodingWhileBatchesAreUndelivered() throws Exception {
+        final FakeReader reader = new FakeReader(100);
+        final FileContentStream stream = new FileContentStream("file", new StreamOptions(10, 2), callback, DIRECT, queuedDelivery);
+        Thread decoder = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                stream.read(reader);
+            }
+        });
+        decoder.start();
+        decoder.join(200);
+
+        assertTrue(decoder.isAlive());
+        assertEquals(2, reader.readCount);
+        deliveries.poll().run();
+        Thread.sleep(50);
+        assertEquals(3, reader.readCount);
+
+        while (decoder.isAlive() || !deliveries.isEmpty()) {
+            Runnable delivery = deliveries.poll();
+            if (delivery != null) {
+                delivery.run();
+            }
+        }
+        assertEquals(100, stream.getDeliveredCount());
+        assertEquals("finished 100", events.get(events.size() - 1));
+    }
+
+    @Test
+    public void stopsDeliveringOnceCancelled() {
+        FakeReader reader = new FakeReader(100);
+        final List<Runnable> decodes = new ArrayList<>();
+        FileContentStream stream = new FileContentStream("file", new StreamOptions(10, 1), callback, new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                decodes.add(command);
+            }
+        }, DIRECT);
+        stream.cancel();
+        stream.read(reader);
+        decodes.get(0).run();
+
+        assertEquals("[finished 0]", events.toString());
+        assertEquals(0, reader.readCount);
+        assertTrue(reader.closed);
+        assertTrue(stream.isCancelled());
+    }
+
+    @Test
+    public void cancellingFromCallbackEndsStream() {
+        FakeReader reader = new FakeReader(100);
+        FileContentStream stream = new FileContentStream("file", new StreamOptions(10, 2), new ItemCallback<CAContent>() {
+            @Override
+            public void itemsRetrieved(FileContentStream stream, List<CAContent> items) {
+                events.add("items " + items.size());
+                stream.cancel();
+            }
+
+            @Override
+            public void failed(FileContentStream stream, SDKException exception) {
+                events.add("failed");
+            }
+
+            @Override
+            public void finished(FileContentStream stream) {
+                events.add("finished");
+            }
+        }, DIRECT, null);
+
+        stream.read(reader);
+
+        assertEquals("[items 10, finished]", events.toString());
+        assertTrue(reader.readCount <= 2);
+        assertTrue(reader.closed);
+    }
+
+    @Test
+    public void reportsDecryptionFailures() {
+        FakeReader reader = new FakeReader(30);
+        reader.failAfter = 2;
+        FileContentStream stream = new FileContentStream("file", new StreamOptions(10, 2), callback, DIRECT, null);
+
+        stream.read(reader);
+
+        assertEquals("[items 10, items 10, failed " + SDKCallback.DECRYPTION_ERROR + ", finished 20]", events.toString());
+        assertTrue(reader.closed);
+    }
+
+    @Test
+    public void reportsRequestFailures() {
+        FileContentStream stream = new FileContentStream("file", new StreamOptions(), callback, DIRECT, null);
+
+        stream.fail(new SDKException("Request Failure"));
+
+        assertEquals("[failed -1, finished 0]", events.toString());
+        assertTrue(stream.isFinished());
+        assertFalse(stream.isCancelled());
+    }
+
+    private static class FakeReader implements FileContentStream.ItemReader {
+        private int remaining;
+        volatile int readCount;
+        int failAfter = -1;
+        boolean closed;
+
+        FakeReader(int itemCount) {
+            this.remaining = itemCount;
+        }
+
+        @Override
+        public List<CAContent> read(int maxCount) throws IOException {
+            if (readCount == failAfter) {
+                throw new DGMCryptoStreamException(new DGMCryptoFailureException(FailureCause.CHECKSUM_CORRUPTED_FAILURE));
+            }
+            readCount++;
+            List<CAContent> items = new ArrayList<>();
+            while (items.size() < maxCount && remaining > 0) {
+                items.add(new CAContent());
+                remaining--;
+            }
+            return items;
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+    }
+}
@@ -0,0 +1,271 @@
+/*
+ * Copyright © 2017 digi.me. All rights reserved.
+ */
+
+package me.digi.sdk.core;
+
+import com.google.gson.GsonBuilder;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.security.PrivateKey;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.Executor;
+
+import me.digi.sdk.core.entities.CAFileResponse;
+import me.digi.sdk.core.entities.CAFileResponseTypeAdapter;
+import me.digi.sdk.core.internal.CAFileDecoder;
+import me.digi.sdk.crypto.CAKeyStore;
+import okhttp3.MediaType;
+import okhttp3.Request;
+import okhttp3.ResponseBody;
+import okio.Buffer;
+import okio.BufferedSource;
+import okio.ForwardingSource;
+import okio.Okio;
+import retrofit2.Call;
+import retrofit2.Callback;
+import retrofit2.Response;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class FilePipelineTest {
+    private final CAFileDecoder decoder = new CAFileDecoder(new CAKeyStore((PrivateKey) null),
+            new GsonBuilder().registerTypeAdapter(CAFileResponse.class, new CAFileResponseTypeAdapter()).create());
+
+    private final List<String> events = new ArrayList<>();
+    private final Queue<Runnable> cpuTasks = new ArrayDeque<>();
+    private final Queue<Runnable> deliveries = new ArrayDeque<>();
+    private final Executor cpu = new Executor() {
+        @Override
+        public void execute(Runnable command) {
+            cpuTasks.add(command);
+        }
+    };
+    private final Executor delivery = new Executor() {
+        @Override
+        public void execute(Runnable command) {
+            deliveries.add(command);
+        }
+    };
+
+    private final FilePipeline pipeline = new FilePipeline(cpu, 1);
+
+    @Test
+    public void passesFilesThroughEveryStage() {
+        FakeCall call = fetch("a");
+        assertEquals(1, stage("fetch").getActiveCount());
+
+        call.respond("a");
+        assertEquals(1, events.size());
+        assertEquals(1, stage("decrypt").getActiveCount());
+
+        cpuTasks.poll().run();
+        assertEquals(1, stage("parse").getActiveCount());
+        cpuTasks.poll().run();
+        assertEquals(1, stage("deliver").getActiveCount());
+        assertTrue(cpuTasks.isEmpty());
+
+        deliveries.poll().run();
+        assertEquals(Arrays.asList("downloaded a", "ok a"), events);
+        for (PipelineStage stage : pipeline.getStages()) {
+            assertEquals(stage.getName(), 1, stage.getProcessedCount());
+            assertEquals(stage.getName(), 0, stage.getActiveCount());
+            assertEquals(stage.getName(), 0, stage.getQueueDepth());
+        }
+    }
+
+    @Test
+    public void boundedQueuesHoldBackDownloads() {
+        List<String> fileIds = Arrays.asList("a", "b", "c", "d", "e", "f");
+        for (String fileId : fileIds) {
+            fetch(fileId).respond(fileId);
+        }
+
+        // One file decrypting, two queued for decryption, the rest waiting in the fetch stage
+        assertEquals(1, stage("decrypt").getActiveCount());
+        assertEquals(2, stage("decrypt").getQueueDepth());
+        assertEquals(3, stage("fetch").getQueueDepth());
+        assertEquals(1, cpuTasks.size());
+
+        // Decoding stops once parse and deliver queues are full, until files are delivered
+        while (!cpuTasks.isEmpty()) {
+            cpuTasks.poll().run();
+        }
+        assertEquals(1, stage("deliver").getActiveCount());
+        assertEquals(2, stage("deliver").getQueueDepth());
+        assertEquals(2, stage("parse").getQueueDepth());
+        assertEquals(1, stage("decrypt").getQueueDepth());
+        assertEquals(0, stage("decrypt").getActiveCount());
+
+        while (!cpuTasks.isEmpty() || !deliveries.isEmpty()) {
+            (cpuTasks.isEmpty() ? deliveries : cpuTasks).poll().run();
+        }
+        List<String> delivered = new ArrayList<>();
+        for (String event : events) {
+            if (event.startsWith("ok")) {
+                delivered.add(event.substring(3));
+            }
+        }
+        assertEquals(fileIds, delivered);
+        for (PipelineStage stage : pipeline.getStages()) {
+            assertEquals(stage.getName(), 6, stage.getProcessedCount());
+            assertEquals(stage.getName(), 0, stage.getQueueDepth());
+        }
+    }
+
+    @Test
+    public void failedFilesSkipDecoding() throws IOException {
+        fetch("a").failWith(new IOException("offline"));
+        fetch("b").respondWith("{not json");
+        runAll();
+
+        assertEquals(Arrays.asList("downloaded a", "downloaded b", "failed a", "failed b"), events);
+        assertEquals(1, stage("fetch").getFailedCount());
+        assertEquals(1, stage("decrypt").getFailedCount() + stage("parse").getFailedCount());
+    }
+
+    @Test
+    public void cancelledFilesAreDropped() {
+        FakeCall first = fetch("a");
+        FakeCall second = fetch("b");
+        first.respond("a");
+        second.respond("b");
+        second.cancel();
+        runAll();
+
+        FakeCall third = fetch("c");
+        third.cancel();
+        third.respond("c");
+        runAll();
+
+        assertEquals(Arrays.asList("downloaded a", "downloaded b", "ok a", "downloaded c"), events);
+        assertEquals(0, stage("fetch").getQueueDepth());
+    }
+
+    @Test
+    public void cancelledDownloadsAreClosedWhileWaiting() {
+        List<FakeCall> calls = new ArrayList<>();
+        for (String fileId : Arrays.asList("a", "b", "c", "d", "e", "f")) {
+            FakeCall call = fetch(fileId);
+            call.respond(fileId);
+            calls.add(call);
+        }
+        FakeCall waiting = calls.get(5);
+        waiting.cancel();
+        assertEquals(3, stage("fetch").getQueueDepth());
+
+        cpuTasks.poll().run();
+        assertTrue(waiting.bodyClosed);
+        assertEquals(1, stage("fetch").getQueueDepth());
+
+        runAll();
+        for (FakeCall call : calls) {
+            assertTrue(call.bodyClosed);
+        }
+    }
+
+    private void runAll() {
+        while (!cpuTasks.isEmpty() || !deliveries.isEmpty()) {
+            (cpuTasks.isEmpty() ? deliveries : cpuTasks).poll().run();
+        }
+    }
+
+    private PipelineStage stage(String name) {
+        for (PipelineStage stage : pipeline.getStages()) {
+            if (stage.getName().equals(name)) {
+                return stage;
+            }
+        }
+        throw new AssertionError(name);
+    }
+
+    private FakeCall fetch(final String fileId) {
+        FakeCall call = new FakeCall();
+        pipeline.fetch(call, decoder, new Runnable() {
+            @Override
+            public void run() {
+                events.add("downloaded " + fileId);
+            }
+        }, new SDKCallback<CAFileResponse>() {
+            @Override
+            public void succeeded(SDKResponse<CAFileResponse> result) {
+                events.add("ok " + result.body.fileIds.get(0));
+            }
+
+            @Override
+            public void failed(SDKException exception) {
+                events.add("failed " + fileId);
+            }
+        }, delivery);
+        return call;
+    }
+
+    private static final class FakeCall implements Call<ResponseBody> {
+        private Callback<ResponseBody> callback;
+        private boolean canceled;
+        boolean bodyClosed;
+
+        void respond(String fileId) {
+            respondWith("{\"fileContent\":[],\"fileList\":[\"" + fileId + "\"]}");
+        }
+
+        void respondWith(String json) {
+            Buffer content = new Buffer().writeUtf8(json);
+            BufferedSource source = Okio.buffer(new ForwardingSource(content) {
+                @Override
+                public void close() throws IOException {
+                    bodyClosed = true;
+                    super.close();
+                }
+            });
+            callback.onResponse(this, Response.success(ResponseBody.create(MediaType.parse("application/json"), content.size(), source)));
+        }
+
+        void failWith(IOException e) {
+            callback.onFailure(this, e);
+        }
+
+        @Override
+        public Response<ResponseBody> execute() throws IOException {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void enqueue(Callback<ResponseBody> callback) {
+            this.callback = callback;
+        }
+
+        @Override
+        public boolean isExecuted() {
+            return callback != null;
+        }
+
+        @Override
+        public void cancel() {
+            canceled = true;
+        }
+
+        @Override
+        public boolean isCanceled() {
+            return canceled;
+        }
+
+        @SuppressWarnings("CloneDoesntCallSuperClone")
+        @Override
+        public Call<ResponseBody> clone() {
+            return new FakeCall();
+        }
+
+        @Override
+        public Request request() {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,61 @@
+/*
+ * Copyright © 2017 digi.me. All rights reserved.
+ */
+
+package me.digi.sdk.core.entities;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonSyntaxException;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class EntityTypeAdapterTest {
+    private static final String FILE_RESPONSE = "{\"fileContent\":[{\"annotation\":\"\",\"baseid\":\"base_1\",\"commentcount\":2,"
+            + "\"createddate\":1500000000001,\"entityid\":\"entity_1\",\"favouritecount\":\"3\",\"iscommentable\":1,"
+            + "\"latitude\":51.5074,\"longitude\":-0.1278,\"personfullname\":null,\"postid\":42,\"rawtext\":\"a \\\"b\\\"\","
+            + "\"referenceentitytype\":null,\"source\":true,\"unknown\":{\"nested\":[1,2]},\"type\":7,\"updateddate\":5},"
+            + "null,{}],\"fileList\":[\"18_1_1_1_1_D201701_1.json\",null],\"extra\":\"ignored\"}";
+
+    private final Gson reflective = new Gson();
+    private final Gson adapters = new GsonBuilder()
+            .registerTypeAdapter(CAContent.class, new CAContentTypeAdapter())
+            .registerTypeAdapter(CAFileResponse.class, new CAFileResponseTypeAdapter())
+            .registerTypeAdapter(CAFiles.class, new CAFilesTypeAdapter())
+            .create();
+
+    @Test
+    public void readsFileResponseLikeReflectiveAdapter() {
+        CAFileResponse expected = reflective.fromJson(FILE_RESPONSE, CAFileResponse.class);
+        CAFileResponse actual = adapters.fromJson(FILE_RESPONSE, CAFileResponse.class);
+
+        assertEquals(reflective.toJson(expected), reflective.toJson(actual));
+        assertEquals(3, actual.fileContent.size());
+        assertNull(actual.fileContent.get(1));
+        assertEquals("42", actual.fileContent.get(0).postId);
+        assertEquals(3, actual.fileContent.get(0).favouriteCount);
+    }
+
+    @Test
+    public void writesFileResponseLikeReflectiveAdapter() {
+        CAFileResponse response = reflective.fromJson(FILE_RESPONSE, CAFileResponse.class);
+
+        assertEquals(reflective.toJson(response), adapters.toJson(response));
+    }
+
+    @Test
+    public void readsFileList() {
+        String json = "{\"fileList\":[\"a\",\"b\"],\"other\":1}";
+
+        assertEquals(reflective.toJson(reflective.fromJson(json, CAFiles.class)), adapters.toJson(adapters.fromJson(json, CAFiles.class)));
+        assertNull(adapters.fromJson("{\"fileList\":null}", CAFiles.class).fileIds);
+    }
+
+    @Test(expected = JsonSyntaxException.class)
+    public void rejectsNonNumericNumberField() {
+        adapters.fromJson("{\"fileContent\":[{\"commentcount\":\"many\"}]}", CAFileResponse.class);
+    }
+}
@@ -0,0 +1,141 @@
+/*
+ * Copyright © 2017 digi.me. All rights reserved.
+ */
+
+package me.digi.sdk.core.internal;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonElement;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.MalformedJsonException;
+
+import org.junit.Test;
+import org.spongycastle.jce.provider.BouncyCastleProvider;
+import org.spongycastle.util.encoders.Base64;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.security.SecureRandom;
+import java.security.Security;
+import java.util.List;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.IvParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+
+import me.digi.sdk.core.entities.CAContent;
+import me.digi.sdk.core.entities.CAContentTypeAdapter;
+import me.digi.sdk.crypto.ByteUtils;
+import me.digi.sdk.crypto.CAKeyStore;
+import me.digi.sdk.crypto.DGMCryptoFailureException;
+import me.digi.sdk.crypto.DGMCryptoStreamException;
+import me.digi.sdk.crypto.FailureCause;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+public class CAFileCodecTest {
+    private final Gson gson = new GsonBuilder().registerTypeAdapter(CAContent.class, new CAContentTypeAdapter()).create();
+    private final CAFileCodec codec = new CAFileCodec(new CAKeyStore((PrivateKey) null), gson);
+    private final TypeAdapter<JsonElement> jsonAdapter = codec.gson().getAdapter(JsonElement.class);
+
+    @Test
+    public void parsesVerifiedContent() throws IOException {
+        List<CAContent> content = codec.parseContent(plaintext("[{\"id\":\"a\"},{\"id\":\"b\"}]", false), codec.contentAdapter());
+        assertEquals(2, content.size());
+        assertNull(codec.parseContent(plaintext("", false), jsonAdapter));
+    }
+
+    @Test
+    public void tamperedContentFailsAsDecryptionError() throws IOException {
+        try {
+            codec.parseContent(plaintext("[{\"id\":\u0001\"a\"}, {\"id\":\"b\"}]", true), jsonAdapter);
+            fail("Tampered content must not parse");
+        } catch (DGMCryptoStreamException e) {
+            assertEquals(FailureCause.DATA_CORRUPTED_FAILURE, e.cause());
+        }
+    }
+
+    @Test(expected = MalformedJsonException.class)
+    public void malformedVerifiedContentFailsAsParseError() throws IOException {
+        codec.parseContent(plaintext("[{\"id\":\u0001\"a\"}]", false), jsonAdapter);
+    }
+
+    @Test
+    public void triesKeyOfSessionFirst() throws Exception {
+        Security.insertProviderAt(new BouncyCastleProvider(), 1);
+        KeyPair sessionKeys = generateKeyPair();
+        KeyPair otherKeys = generateKeyPair();
+        CAKeyStore keyStore = new CAKeyStore(sessionKeys.getPrivate());
+        keyStore.addKey(otherKeys.getPrivate());
+        CAFileCodec sessionCodec = new CAFileCodec(keyStore, gson, "session");
+        CAFileCodec otherCodec = new CAFileCodec(keyStore, gson, "other");
+
+        // Each key fails once and ends up first in the store, the other session's key last
+        decrypt(sessionCodec, encrypt("[]", sessionKeys.getPublic()));
+        decrypt(otherCodec, encrypt("[]", otherKeys.getPublic()));
+        decrypt(sessionCodec, encrypt("[]", sessionKeys.getPublic()));
+
+        assertEquals(1, keyStore.getKeyStats(otherKeys.getPrivate()).getFailureCount());
+        assertEquals(1, keyStore.getKeyStats(sessionKeys.getPrivate()).getFailureCount());
+    }
+
+    private static void decrypt(CAFileCodec codec, byte[] file) throws IOException {
+        try (InputStream decrypted = codec.decryptingStream(new ByteArrayInputStream(file))) {
+            CAFileCodec.verifyRemaining(decrypted);
+        }
+    }
+
+    private static KeyPair generateKeyPair() throws Exception {
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA", "SC");
+        generator.initialize(2048);
+        return generator.generateKeyPair();
+    }
+
+    /**
+     * Base64 encoded file content as served: {@code RSA(DSK) | DIV | AES(SHA512(data) | data)}.
+     */
+    private static byte[] encrypt(String json, PublicKey publicKey) throws Exception {
+        SecureRandom random = new SecureRandom();
+        byte[] dsk = new byte[32];
+        byte[] div = new byte[16];
+        random.nextBytes(dsk);
+        random.nextBytes(div);
+        Cipher rsa = Cipher.getInstance("RSA/ECB/OAEPWithSHA1AndMGF1Padding", "SC");
+        rsa.init(Cipher.ENCRYPT_MODE, publicKey);
+        Cipher aes = Cipher.getInstance("AES/CBC/PKCS5Padding");
+        aes.init(Cipher.ENCRYPT_MODE, new SecretKeySpec(dsk, "AES"), new IvParameterSpec(div));
+
+        ByteArrayOutputStream file = new ByteArrayOutputStream();
+        file.write(rsa.doFinal(dsk));
+        file.write(div);
+        file.write(aes.doFinal(ByteUtils.getDataAndHashBytes(json.getBytes(StandardCharsets.UTF_8))));
+        return Base64.encode(file.toByteArray());
+    }
+
+    /**
+     * Plaintext as read from a decrypting stream, which fails at the end if {@code tampered}.
+     */
+    private static InputStream plaintext(String json, final boolean tampered) {
+        return new FilterInputStream(new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8))) {
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                int read = super.read(b, off, len);
+                if (read == -1 && tampered) {
+                    throw new DGMCryptoStreamException(new DGMCryptoFailureException(FailureCause.DATA_CORRUPTED_FAILURE));
+                }
+                return read;
+            }
+        };
+    }
+}
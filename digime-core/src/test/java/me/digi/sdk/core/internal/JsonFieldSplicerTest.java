@@ -0,0 +1,96 @@
+/*
+ * Copyright © 2017 digi.me. All rights reserved.
+ */
+
+package me.digi.sdk.core.internal;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.InputStream;
+
+import okio.Buffer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class JsonFieldSplicerTest {
+
+    @Test
+    public void replacesStringField() throws Exception {
+        String json = "{ \"fileList\": [\"a\", {\"fileContent\": \"nested\"}], \"count\" : 2,\n"
+                + "\"fileContent\":\"ab\\/c\\u0064\\\\\", \"tail\": {\"x\": \"}\"}}";
+        Buffer out = new Buffer();
+        JsonFieldSplicer splicer = new JsonFieldSplicer(new Buffer().writeUtf8(json), out, "fileContent");
+
+        assertTrue(splicer.copyToField());
+        assertEquals("ab/cd\\", readAll(splicer.fieldValueStream()));
+        out.writeUtf8("[1]");
+        splicer.copyRemaining();
+
+        assertEquals("{ \"fileList\": [\"a\", {\"fileContent\": \"nested\"}], \"count\" : 2,\n"
+                + "\"fileContent\":[1], \"tail\": {\"x\": \"}\"}}", out.readUtf8());
+    }
+
+    @Test
+    public void copiesDocumentWithoutStringField() throws Exception {
+        String json = "{\"fileContent\": [{\"a\": 1}], \"other\": \"fileContent\"}";
+        Buffer out = new Buffer();
+        JsonFieldSplicer splicer = new JsonFieldSplicer(new Buffer().writeUtf8(json), out, "fileContent");
+
+        assertFalse(splicer.copyToField());
+        assertEquals(json, out.readUtf8());
+    }
+
+    @Test
+    public void copiesNonObjectDocument() throws Exception {
+        String json = "[\"fileContent\"]";
+        Buffer out = new Buffer();
+
+        assertFalse(new JsonFieldSplicer(new Buffer().writeUtf8(json), out, "fileContent").copyToField());
+        assertEquals(json, out.readUtf8());
+    }
+
+    @Test
+    public void closingValueStreamSkipsRestOfValue() throws Exception {
+        Buffer out = new Buffer();
+        JsonFieldSplicer splicer = new JsonFieldSplicer(new Buffer().writeUtf8("{\"fileContent\":\"ab\\\"c==\",\"n\":1}"), out, "fileContent");
+
+        assertTrue(splicer.copyToField());
+        InputStream value = splicer.fieldValueStream();
+        assertEquals('a', value.read());
+        value.close();
+        splicer.copyRemaining();
+
+        assertEquals("{\"fileContent\":,\"n\":1}", out.readUtf8());
+    }
+
+    @Test
+    public void decodesUnicodeEscapes() throws Exception {
+        JsonFieldSplicer splicer = new JsonFieldSplicer(new Buffer().writeUtf8(
+                "{\"fileContent\": \"a\\u00e9\\u20AC\\ud83d\\ude00\\ud800\\n\\b\"}"), new Buffer(), "fileContent");
+
+        assertTrue(splicer.copyToField());
+        assertEquals("a\u00e9\u20ac\ud83d\ude00?\n\b", readAll(splicer.fieldValueStream()));
+    }
+
+    @Test(expected = EOFException.class)
+    public void unterminatedValueFails() throws Exception {
+        JsonFieldSplicer splicer = new JsonFieldSplicer(new Buffer().writeUtf8("{\"fileContent\": \"abc"), new Buffer(), "fileContent");
+
+        assertTrue(splicer.copyToField());
+        readAll(splicer.fieldValueStream());
+    }
+
+    private static String readAll(InputStream in) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[3];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            out.write(buffer, 0, read);
+        }
+        return out.toString("UTF-8");
+    }
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright © 2017 digi.me. All rights reserved.
+ */
+
+package me.digi.sdk.core.internal.concurrent;
+
+import org.junit.Test;
+
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.Executor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class MeteredExecutorTest {
+    private final Queue<Runnable> queued = new ArrayDeque<>();
+    private final MeteredExecutor executor = new MeteredExecutor(new Executor() {
+        @Override
+        public void execute(Runnable command) {
+            queued.add(command);
+        }
+    });
+
+    @Test
+    public void tracksQueuedActiveAndCompletedTasks() {
+        final int[] activeWhileRunning = new int[1];
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                activeWhileRunning[0] = executor.getActiveCount();
+            }
+        });
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {}
+        });
+
+        assertEquals(2, executor.getQueuedCount());
+        queued.poll().run();
+
+        assertEquals(1, activeWhileRunning[0]);
+        assertEquals(1, executor.getQueuedCount());
+        assertEquals(0, executor.getActiveCount());
+        assertEquals(1, executor.getCompletedCount());
+        assertEquals(1, executor.getWaitTimes().getCount());
+        assertEquals(1, executor.getRunTimes().getCount());
+    }
+
+    @Test
+    public void countsFailedTasks() {
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                throw new IllegalStateException();
+            }
+        });
+
+        try {
+            queued.poll().run();
+            fail();
+        } catch (IllegalStateException expected) {
+            // Rethrown to the pool
+        }
+        assertEquals(1, executor.getFailedCount());
+        assertEquals(0, executor.getCompletedCount());
+        assertEquals(0, executor.getActiveCount());
+    }
+
+    @Test
+    public void replacedPoolsAreMetered() {
+        final Runnable[] ran = new Runnable[1];
+        SDKExecutors.setCpu(new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                ran[0] = command;
+            }
+        });
+        try {
+            SDKExecutors.cpu().execute(new Runnable() {
+                @Override
+                public void run() {}
+            });
+            assertEquals(1, SDKExecutors.cpu().getQueuedCount());
+            ran[0].run();
+            assertEquals(1, SDKExecutors.cpu().getCompletedCount());
+        } finally {
+            SDKExecutors.setCpu(null);
+        }
+    }
+}
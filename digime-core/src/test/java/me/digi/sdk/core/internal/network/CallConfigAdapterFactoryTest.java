@@ -0,0 +1,113 @@
+/*
+ * Copyright © 2017 digi.me. All rights reserved.
+ */
+
+package me.digi.sdk.core.internal.network;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import okhttp3.ResponseBody;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import retrofit2.Call;
+import retrofit2.Callback;
+import retrofit2.Response;
+import retrofit2.Retrofit;
+import retrofit2.http.GET;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class CallConfigAdapterFactoryTest {
+
+    interface Service {
+        @CallConfig(shouldRetry = true, retryCount = 2)
+        @GET("/")
+        Call<ResponseBody> get();
+    }
+
+    private static final Executor DIRECT = new Executor() {
+        @Override
+        public void execute(Runnable command) {
+            command.run();
+        }
+    };
+
+    private MockWebServer server;
+
+    @Before
+    public void setUp() throws IOException {
+        server = new MockWebServer();
+        server.start();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        server.shutdown();
+    }
+
+    @Test
+    public void cancelBetweenAttemptsStopsRetry() throws Exception {
+        server.enqueue(new MockResponse().setResponseCode(503));
+        server.enqueue(new MockResponse().setResponseCode(503));
+        HeldRetryScheduler scheduler = new HeldRetryScheduler();
+        Service service = new Retrofit.Builder()
+                .baseUrl(server.url("/"))
+                .callbackExecutor(DIRECT)
+                .addCallAdapterFactory(CallConfigAdapterFactory.create(scheduler))
+                .build()
+                .create(Service.class);
+
+        Call<ResponseBody> call = service.get();
+        final AtomicReference<Throwable> failure = new AtomicReference<>();
+        final CountDownLatch done = new CountDownLatch(1);
+        call.enqueue(new Callback<ResponseBody>() {
+            @Override
+            public void onResponse(Call<ResponseBody> call, Response<ResponseBody> response) {
+                done.countDown();
+            }
+
+            @Override
+            public void onFailure(Call<ResponseBody> call, Throwable t) {
+                failure.set(t);
+                done.countDown();
+            }
+        });
+
+        assertTrue(scheduler.scheduled.await(5, TimeUnit.SECONDS));
+        call.cancel();
+        assertTrue(call.isCanceled());
+        scheduler.retry.run();
+
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertTrue(failure.get() instanceof IOException);
+        assertEquals(1, server.getRequestCount());
+    }
+
+    /**
+     * Holds on to the scheduled retry so the test decides when it runs.
+     */
+    private static final class HeldRetryScheduler extends RetryScheduler {
+        final CountDownLatch scheduled = new CountDownLatch(1);
+        volatile Runnable retry;
+
+        HeldRetryScheduler() {
+            super(new ScheduledThreadPoolExecutor(1));
+        }
+
+        @Override
+        public void schedule(Runnable retry, long delayMillis) {
+            this.retry = retry;
+            scheduled.countDown();
+        }
+    }
+}
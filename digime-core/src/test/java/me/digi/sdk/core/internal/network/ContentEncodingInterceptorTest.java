@@ -0,0 +1,123 @@
+/*
+ * Copyright © 2017 digi.me. All rights reserved.
+ */
+
+package me.digi.sdk.core.internal.network;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okio.Buffer;
+import okio.BufferedSink;
+import okio.GzipSink;
+import okio.Okio;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class ContentEncodingInterceptorTest {
+    private final MockWebServer server = new MockWebServer();
+    private final TransferMetrics metrics = new TransferMetrics();
+    private final List<String> reported = new ArrayList<>();
+    private OkHttpClient client;
+
+    @Before
+    public void setUp() throws IOException {
+        server.start();
+        metrics.setListener(new TransferMetrics.Listener() {
+            @Override
+            public void transferCompleted(Request request, String contentEncoding, long wireBytes, long decodedBytes) {
+                reported.add(request.url().encodedPath() + " " + contentEncoding + " " + wireBytes + " " + decodedBytes);
+            }
+        });
+        client = new OkHttpClient.Builder()
+                .addNetworkInterceptor(new ContentEncodingInterceptor(metrics))
+                .build();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        server.shutdown();
+    }
+
+    @Test
+    public void decodesGzipResponsesAndRecordsWireBytes() throws Exception {
+        String json = fileJson();
+        Buffer gzipped = gzip(json);
+        long wireSize = gzipped.size();
+        server.enqueue(new MockResponse()
+                .setHeader("Content-Encoding", "gzip")
+                .setBody(gzipped));
+
+        Response response = client.newCall(request()).execute();
+        String body = response.body().string();
+
+        assertEquals("gzip", server.takeRequest().getHeader("Accept-Encoding"));
+        assertEquals(json, body);
+        assertNull(response.header("Content-Encoding"));
+        assertEquals(-1L, response.body().contentLength());
+        assertEquals(1, reported.size());
+        assertEquals("/file.json gzip " + wireSize + " " + json.length(), reported.get(0));
+        assertEquals(wireSize, metrics.getWireBytes());
+        assertEquals(json.length(), metrics.getDecodedBytes());
+        assertEquals(1, metrics.getEncodedResponseCount());
+        assertTrue(metrics.getWireBytes() < metrics.getDecodedBytes());
+    }
+
+    @Test
+    public void passesUncompressedResponsesThrough() throws Exception {
+        server.enqueue(new MockResponse().setBody("{}"));
+
+        Response response = client.newCall(request()).execute();
+
+        assertEquals("{}", response.body().string());
+        assertEquals(2L, response.body().contentLength());
+        assertEquals("/file.json null 2 2", reported.get(0));
+        assertEquals(0, metrics.getEncodedResponseCount());
+    }
+
+    @Test
+    public void recordsPartiallyReadBodyOnClose() throws Exception {
+        server.enqueue(new MockResponse()
+                .setHeader("Content-Encoding", "gzip")
+                .setBody(gzip(fileJson())));
+
+        Response response = client.newCall(request()).execute();
+        response.body().source().readByte();
+        response.close();
+
+        assertEquals(1, metrics.getResponseCount());
+        assertEquals(1, reported.size());
+    }
+
+    private Request request() {
+        return new Request.Builder().url(server.url("/file.json")).build();
+    }
+
+    private static String fileJson() {
+        StringBuilder content = new StringBuilder("{\"fileContent\":\"");
+        for (int i = 0; i < 1000; i++) {
+            content.append("QUJDREVGR0hJSktMTU5PUFFSU1RVVldYWVo=");
+        }
+        return content.append("\"}").toString();
+    }
+
+    private static Buffer gzip(String data) throws IOException {
+        Buffer result = new Buffer();
+        BufferedSink sink = Okio.buffer(new GzipSink(result));
+        sink.writeUtf8(data);
+        sink.close();
+        return result;
+    }
+}
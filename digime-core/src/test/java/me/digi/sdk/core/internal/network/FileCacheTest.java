@@ -0,0 +1,101 @@
+/*
+ * Copyright © 2017 digi.me. All rights reserved.
+ */
+
+package me.digi.sdk.core.internal.network;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+public class FileCacheTest {
+    private static final String FILE_PATH = "/v1/permission-access/query/session-key/18_1_1_1_1_D201701_1.json";
+    private static final String ENCRYPTED_BODY = "{\"fileContent\":\"ZW5jcnlwdGVk\"}";
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private final MockWebServer server = new MockWebServer();
+    private FileCache cache;
+    private OkHttpClient client;
+
+    @Before
+    public void setUp() throws IOException {
+        server.start();
+        cache = new FileCache(folder.newFolder(), 1024 * 1024);
+        client = cache.attach(new OkHttpClient.Builder()).build();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        server.shutdown();
+    }
+
+    @Test
+    public void servesRepeatedFileRequestsFromCache() throws Exception {
+        server.enqueue(new MockResponse().setBody(ENCRYPTED_BODY));
+
+        Response first = fetch(FILE_PATH);
+        assertEquals(ENCRYPTED_BODY, first.body().string());
+        Response second = fetch(FILE_PATH);
+        assertEquals(ENCRYPTED_BODY, second.body().string());
+
+        assertEquals(1, server.getRequestCount());
+        assertNull(second.networkResponse());
+        assertNotNull(second.cacheResponse());
+        assertEquals(2, cache.getRequestCount());
+        assertEquals(1, cache.getHitCount());
+        assertEquals(0.5, cache.getHitRatio(), 0);
+        assertEquals(ENCRYPTED_BODY.length(), cache.getBytesSaved());
+    }
+
+    @Test
+    public void keysFilesBySession() throws Exception {
+        server.enqueue(new MockResponse().setBody(ENCRYPTED_BODY));
+        server.enqueue(new MockResponse().setBody(ENCRYPTED_BODY));
+
+        fetch(FILE_PATH).body().string();
+        fetch(FILE_PATH.replace("session-key", "other-session")).body().string();
+
+        assertEquals(2, server.getRequestCount());
+        assertEquals(0, cache.getHitCount());
+    }
+
+    @Test
+    public void doesNotCacheFailedResponsesOrFileLists() throws Exception {
+        server.enqueue(new MockResponse().setResponseCode(404));
+        server.enqueue(new MockResponse().setBody(ENCRYPTED_BODY));
+        server.enqueue(new MockResponse().setBody("{\"fileIds\":[]}"));
+        server.enqueue(new MockResponse().setBody("{\"fileIds\":[]}"));
+
+        assertEquals(404, fetch(FILE_PATH).code());
+        assertEquals(ENCRYPTED_BODY, fetch(FILE_PATH).body().string());
+        fetch("/v1/permission-access/query/session-key").body().string();
+        fetch("/v1/permission-access/query/session-key").body().string();
+
+        assertEquals(4, server.getRequestCount());
+        assertEquals(0, cache.getHitCount());
+    }
+
+    private Response fetch(String path) throws IOException {
+        return client.newCall(new Request.Builder()
+                .url(server.url(path))
+                .header("Cache-Control", "no-cache")
+                .build())
+                .execute();
+    }
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright © 2017 digi.me. All rights reserved.
+ */
+
+package me.digi.sdk.core.internal.network;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class RetrySchedulerTest {
+
+    @After
+    public void tearDown() {
+        RetryScheduler.setShared(null);
+    }
+
+    @Test
+    public void sharedSchedulerRunsRetriesOnDaemonThread() throws Exception {
+        RetryScheduler scheduler = RetryScheduler.shared();
+        final CountDownLatch ran = new CountDownLatch(1);
+        final AtomicBoolean daemon = new AtomicBoolean();
+
+        scheduler.schedule(new Runnable() {
+            @Override
+            public void run() {
+                daemon.set(Thread.currentThread().isDaemon());
+                ran.countDown();
+            }
+        }, 1);
+
+        assertTrue(ran.await(5, TimeUnit.SECONDS));
+        assertTrue(daemon.get());
+        assertSame(scheduler, RetryScheduler.shared());
+    }
+
+    @Test
+    public void countsPendingAndExecutedRetries() throws Exception {
+        ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1);
+        RetryScheduler scheduler = new RetryScheduler(executor);
+        final CountDownLatch ran = new CountDownLatch(1);
+        Runnable retry = new Runnable() {
+            @Override
+            public void run() {
+                ran.countDown();
+            }
+        };
+
+        scheduler.schedule(retry, 10);
+        scheduler.schedule(retry, TimeUnit.HOURS.toMillis(1));
+        assertTrue(ran.await(5, TimeUnit.SECONDS));
+
+        assertEquals(2, scheduler.getScheduledCount());
+        assertEquals(1, scheduler.getExecutedCount());
+        assertEquals(1, scheduler.getPendingCount());
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void sharedSchedulerCanBeReplaced() {
+        RetryScheduler injected = new RetryScheduler(new ScheduledThreadPoolExecutor(1));
+        RetryScheduler.setShared(injected);
+        assertSame(injected, RetryScheduler.shared());
+
+        RetryScheduler.setShared(null);
+        assertNotSame(injected, RetryScheduler.shared());
+    }
+}
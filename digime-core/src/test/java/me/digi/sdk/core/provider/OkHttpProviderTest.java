@@ -0,0 +1,136 @@
+/*
+ * Copyright © 2017 digi.me. All rights reserved.
+ */
+
+package me.digi.sdk.core.provider;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import javax.net.ssl.HostnameVerifier;
+import javax.net.ssl.SSLSession;
+
+import me.digi.sdk.core.DigiMeClient;
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.internal.tls.SslClient;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class OkHttpProviderTest {
+    private static final int CALL_COUNT = 8;
+
+    private final SslClient sslClient = SslClient.localhost();
+    private MockWebServer server;
+    private boolean defaultEnableHttp2;
+
+    @Before
+    public void setUp() throws IOException {
+        defaultEnableHttp2 = DigiMeClient.enableHttp2;
+        server = new MockWebServer();
+        server.useHttps(sslClient.socketFactory, false);
+        server.setProtocols(Arrays.asList(Protocol.HTTP_2, Protocol.HTTP_1_1));
+        server.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) {
+                return new MockResponse().setBody("{}").setBodyDelay(100, TimeUnit.MILLISECONDS);
+            }
+        });
+        server.start();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        DigiMeClient.enableHttp2 = defaultEnableHttp2;
+        server.shutdown();
+    }
+
+    @Test
+    public void multiplexesConcurrentCallsOverOneConnectionWithHttp2() throws Exception {
+        DigiMeClient.enableHttp2 = true;
+        OkHttpClient client = client();
+
+        List<Response> responses = fetchConcurrently(client);
+
+        for (Response response : responses) {
+            assertEquals(Protocol.HTTP_2, response.protocol());
+        }
+        assertEquals(1, client.connectionPool().connectionCount());
+    }
+
+    @Test
+    public void keepsClientProtocolsWhenHttp2IsNotEnabled() throws Exception {
+        DigiMeClient.enableHttp2 = false;
+        OkHttpClient http1Client = new OkHttpClient.Builder()
+                .protocols(Collections.singletonList(Protocol.HTTP_1_1))
+                .build();
+
+        OkHttpClient defaultClient = OkHttpProvider.configureTransport(new OkHttpClient.Builder()).build();
+        OkHttpClient client = OkHttpProvider.configureTransport(http1Client.newBuilder()).build();
+
+        assertEquals(new OkHttpClient().protocols(), defaultClient.protocols());
+        assertEquals(http1Client.protocols(), client.protocols());
+    }
+
+    private OkHttpClient client() {
+        return OkHttpProvider.configureTransport(new OkHttpClient.Builder())
+                .sslSocketFactory(sslClient.socketFactory, sslClient.trustManager)
+                .hostnameVerifier(new HostnameVerifier() {
+                    @Override
+                    public boolean verify(String hostname, SSLSession session) {
+                        return true;
+                    }
+                })
+                .build();
+    }
+
+    private List<Response> fetchConcurrently(OkHttpClient client) throws InterruptedException {
+        final List<Response> responses = new ArrayList<>();
+        final CountDownLatch latch = new CountDownLatch(CALL_COUNT);
+        for (int i = 0; i < CALL_COUNT; i++) {
+            Request request = new Request.Builder()
+                    .url(server.url("/v1/permission-access/query/session/file_" + i + ".json"))
+                    .build();
+            client.newCall(request).enqueue(new Callback() {
+                @Override
+                public void onFailure(Call call, IOException e) {
+                    latch.countDown();
+                }
+
+                @Override
+                public void onResponse(Call call, Response response) throws IOException {
+                    try {
+                        response.body().string();
+                        synchronized (responses) {
+                            responses.add(response);
+                        }
+                    } finally {
+                        response.close();
+                        latch.countDown();
+                    }
+                }
+            });
+        }
+        assertTrue(latch.await(10, TimeUnit.SECONDS));
+        assertEquals(CALL_COUNT, responses.size());
+        return responses;
+    }
+}
@@ -0,0 +1,69 @@
+/*
+ * Copyright © 2017 digi.me. All rights reserved.
+ */
+
+package me.digi.sdk.crypto;
+
+import org.spongycastle.crypto.BufferedBlockCipher;
+import org.spongycastle.crypto.engines.AESEngine;
+import org.spongycastle.crypto.modes.CBCBlockCipher;
+import org.spongycastle.crypto.paddings.PaddedBufferedBlockCipher;
+
+/**
+ * Implementation used for AES/CBC/PKCS7 content decryption.
+ * Can be set with {@link CryptoUtils#setAESBackend(AESBackend)}.
+ */
+public enum AESBackend {
+    /**
+     * Picks the faster of {@link #PLATFORM} and {@link #SPONGY_CASTLE} with a short self-benchmark, run once in the background.
+     * Platform backend is only considered if it produces the same output as SpongyCastle; SpongyCastle is used until then.
+     * Resolves to the selected backend.
+     */
+    AUTO {
+        @Override
+        BufferedBlockCipher newCipher() {
+            return CryptoUtils.getAESBackend().newCipher();
+        }
+
+        @Override
+        boolean owns(BufferedBlockCipher cipher) {
+            return CryptoUtils.getAESBackend().owns(cipher);
+        }
+    },
+    /**
+     * Pure Java SpongyCastle {@code AESEngine}, available everywhere.
+     */
+    SPONGY_CASTLE {
+        @Override
+        BufferedBlockCipher newCipher() {
+            return new PaddedBufferedBlockCipher(new CBCBlockCipher(new AESEngine()));
+        }
+
+        @Override
+        boolean owns(BufferedBlockCipher cipher) {
+            return cipher instanceof PaddedBufferedBlockCipher;
+        }
+    },
+    /**
+     * {@code AES/CBC/PKCS5Padding} from the platform JCE provider (Conscrypt on Android),
+     * which can use hardware AES instructions.
+     */
+    PLATFORM {
+        @Override
+        BufferedBlockCipher newCipher() {
+            return new PlatformBlockCipher();
+        }
+
+        @Override
+        boolean owns(BufferedBlockCipher cipher) {
+            return cipher instanceof PlatformBlockCipher;
+        }
+    };
+
+    abstract BufferedBlockCipher newCipher();
+
+    /**
+     * Whether {@code cipher} was created by this backend.
+     */
+    abstract boolean owns(BufferedBlockCipher cipher);
+}
@@ -0,0 +1,206 @@
+/*
+ * Copyright © 2017 digi.me. All rights reserved.
+ */
+
+package me.digi.sdk.crypto;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+/**
+ * Decodes standard (RFC 4648) Base64 as it is read, without depending on {@code android.util}.
+ *
+ * Encoded input is read in large blocks and decoded straight into the buffer passed to {@code read}, four characters
+ * at a time, so decrypting streams can decode into their cipher input buffer without an intermediate copy.
+ * Same as {@code android.util.Base64.DEFAULT}, characters outside the alphabet (line breaks, whitespace) are skipped
+ * and trailing padding is optional. Malformed input fails with {@link IOException}.
+ */
+final class Base64DecodingInputStream extends InputStream {
+    static final int DEFAULT_BUFFER_SIZE = 8192;
+
+    private static final int SKIP = -1;
+    private static final int PADDING = -2;
+    private static final int[] DECODE = new int[256];
+
+    static {
+        Arrays.fill(DECODE, SKIP);
+        String alphabet = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/";
+        for (int i = 0; i < alphabet.length(); i++) {
+            DECODE[alphabet.charAt(i)] = i;
+        }
+        DECODE['='] = PADDING;
+    }
+
+    private final InputStream source;
+    private final byte[] encoded;
+    private int encodedPos;
+    private int encodedLimit;
+
+    private int quantum;
+    private int quantumLength;
+    private boolean padded;
+    private boolean sourceFinished;
+
+    /**
+     * Decoded bytes of the last quantum that didn't fit in the caller's buffer.
+     */
+    private final byte[] pending = new byte[3];
+    private int pendingPos;
+    private int pendingLimit;
+    private final byte[] single = new byte[1];
+
+    Base64DecodingInputStream(InputStream source) {
+        this(source, DEFAULT_BUFFER_SIZE);
+    }
+
+    Base64DecodingInputStream(InputStream source, int bufferSize) {
+        this.source = source;
+        this.encoded = new byte[Math.max(4, bufferSize)];
+    }
+
+    @Override
+    public int read() throws IOException {
+        return read(single, 0, 1) == -1 ? -1 : single[0] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        int start = off;
+        int end = off + len;
+        while (off < end) {
+            if (pendingPos < pendingLimit) {
+                int count = Math.min(pendingLimit - pendingPos, end - off);
+                System.arraycopy(pending, pendingPos, b, off, count);
+                pendingPos += count;
+                off += count;
+                continue;
+            }
+            if (encodedPos == encodedLimit) {
+                if (sourceFinished || (off > start && source.available() == 0)) {
+                    break;
+                }
+                fill();
+                continue;
+            }
+            off = decodeQuanta(b, off, end);
+            if (off < end && encodedPos < encodedLimit) {
+                decodeCharacter(encoded[encodedPos++] & 0xff);
+            }
+        }
+        return off == start ? -1 : off - start;
+    }
+
+    @Override
+    public int available() throws IOException {
+        return pendingLimit - pendingPos;
+    }
+
+    @Override
+    public void close() throws IOException {
+        source.close();
+    }
+
+    private void fill() throws IOException {
+        int read = source.read(encoded);
+        if (read == -1) {
+            sourceFinished = true;
+            finishQuantum();
+        } else {
+            encodedPos = 0;
+            encodedLimit = read;
+        }
+    }
+
+    /**
+     * Fast path: decodes whole groups of four alphabet characters straight into {@code b}.
+     *
+     * @return Offset in {@code b} after the decoded bytes
+     */
+    private int decodeQuanta(byte[] b, int off, int end) {
+        if (quantumLength != 0 || padded) {
+            return off;
+        }
+        final byte[] in = encoded;
+        int pos = encodedPos;
+        final int limit = encodedLimit - 3;
+        final int outLimit = end - 2;
+        while (pos < limit && off < outLimit) {
+            // A character outside the alphabet decodes to a negative value, which makes the whole group negative
+            int bits = DECODE[in[pos] & 0xff] << 18
+                    | DECODE[in[pos + 1] & 0xff] << 12
+                    | DECODE[in[pos + 2] & 0xff] << 6
+                    | DECODE[in[pos + 3] & 0xff];
+            if (bits < 0) {
+                break;
+            }
+            b[off] = (byte) (bits >> 16);
+            b[off + 1] = (byte) (bits >> 8);
+            b[off + 2] = (byte) bits;
+            off += 3;
+            pos += 4;
+        }
+        encodedPos = pos;
+        return off;
+    }
+
+    /**
+     * Slow path: decodes a single character, leaving complete quanta in {@link #pending}.
+     */
+    private void decodeCharacter(int c) throws IOException {
+        int value = DECODE[c];
+        if (value == SKIP) {
+            return;
+        }
+        if (value == PADDING) {
+            if (!padded) {
+                if (quantumLength < 2) {
+                    throw new IOException("Bad Base64 input: unexpected padding");
+                }
+                finishQuantum();
+                padded = true;
+            }
+            return;
+        }
+        if (padded) {
+            throw new IOException("Bad Base64 input: data after padding");
+        }
+        quantum = quantum << 6 | value;
+        if (++quantumLength == 4) {
+            pending[0] = (byte) (quantum >> 16);
+            pending[1] = (byte) (quantum >> 8);
+            pending[2] = (byte) quantum;
+            pendingPos = 0;
+            pendingLimit = 3;
+            quantum = 0;
+            quantumLength = 0;
+        }
+    }
+
+    /**
+     * Decodes an incomplete last quantum, at the padding or the end of input.
+     */
+    private void finishQuantum() throws IOException {
+        switch (quantumLength) {
+            case 0:
+                return;
+            case 1:
+                throw new IOException("Bad Base64 input: truncated");
+            case 2:
+                pending[0] = (byte) (quantum >> 4);
+                pendingLimit = 1;
+                break;
+            default:
+                pending[0] = (byte) (quantum >> 10);
+                pending[1] = (byte) (quantum >> 2);
+                pendingLimit = 2;
+                break;
+        }
+        pendingPos = 0;
+        quantum = 0;
+        quantumLength = 0;
+    }
+}
@@ -92,6 +92,20 @@ public class ByteUtils {
         return buffer.toByteArray();
     }
 
+    /**
+     * Reads from {@code stream} until {@code buffer} is full or end of stream is reached.
+     *
+     * @return Number of bytes read into {@code buffer}
+     */
+    public static int readFully(InputStream stream, byte[] buffer) throws IOException {
+        int total = 0;
+        int nRead;
+        while (total < buffer.length && (nRead = stream.read(buffer, total, buffer.length - total)) != -1) {
+            total += nRead;
+        }
+        return total;
+    }
+
     public static byte[] getDataAndHashBytes(byte[] data) {
         byte[] hash = CryptoUtils.hashSha512(data);
         return concatenateByteArrays(hash, data);
@@ -5,23 +5,28 @@
 package me.digi.sdk.crypto;
 
 import android.support.annotation.NonNull;
-import android.util.Base64;
-import android.util.Base64InputStream;
+import android.support.annotation.Nullable;
 
-import org.spongycastle.util.Arrays;
+import org.spongycastle.crypto.Digest;
 
 import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
 import java.security.PrivateKey;
+import java.util.Arrays;
 import java.util.Iterator;
+import java.util.concurrent.Executor;
 
 import static me.digi.sdk.crypto.CryptoUtils.*;
 
 public class CACryptoProvider {
-    private static final int HASH_LENGTH = 64;
-    private static final int ENCRYPTED_DSK_LENGTH = 256;
-    private static final int DIV_LENGTH = 16;
+    static final int HASH_LENGTH = 64;
+    static final int ENCRYPTED_DSK_LENGTH = 256;
+    static final int DIV_LENGTH = 16;
+    static final int MIN_FILE_LENGTH = 352;
 
     private CAKeyStore providerKeys;
 
@@ -42,67 +47,216 @@ public class CACryptoProvider {
     }
 
     public String decryptStream(@NonNull InputStream fileInputStream, boolean streamBase64Encoded) throws IOException, DGMCryptoFailureException {
+        return decryptStream(fileInputStream, streamBase64Encoded, null);
+    }
+
+    /**
+     * Decrypts the file content from {@code fileInputStream} into a UTF-8 string.
+     *
+     * @param fileInputStream     Encrypted file content
+     * @param streamBase64Encoded Whether {@code fileInputStream} is Base64 encoded
+     * @param keyHint             Identifier of the content owner used to pick the decryption key first, see {@link CAKeyStore#iterator(String)}
+     * @return Decrypted content
+     * @throws IOException               If reading from the stream fails
+     * @throws DGMCryptoFailureException If decryption fails or content hash doesn't match
+     */
+    public String decryptStream(@NonNull InputStream fileInputStream, boolean streamBase64Encoded, @Nullable String keyHint) throws IOException, DGMCryptoFailureException {
+        ByteArrayOutputStream decrypted = new ByteArrayOutputStream();
+        decryptStream(fileInputStream, decrypted, streamBase64Encoded, keyHint);
+        return decrypted.toString(StandardCharsets.UTF_8.name());
+    }
+
+    /**
+     * Decrypts the file content from {@code fileInputStream} and writes decrypted data to {@code outputStream}.
+     * Neither of the streams is closed.
+     *
+     * @param fileInputStream     Encrypted file content
+     * @param outputStream        Stream to write decrypted data into
+     * @param streamBase64Encoded Whether {@code fileInputStream} is Base64 encoded
+     * @throws IOException               If reading from or writing to the streams fails
+     * @throws DGMCryptoFailureException If decryption fails or content hash doesn't match
+     */
+    public void decryptStream(@NonNull InputStream fileInputStream, @NonNull OutputStream outputStream, boolean streamBase64Encoded) throws IOException, DGMCryptoFailureException {
+        decryptStream(fileInputStream, outputStream, streamBase64Encoded, null);
+    }
+
+    /**
+     * Same as {@link #decryptStream(InputStream, OutputStream, boolean)}, trying the key that last succeeded for {@code keyHint} first.
+     *
+     * @param keyHint Identifier of the content owner, see {@link CAKeyStore#iterator(String)}
+     */
+    public void decryptStream(@NonNull InputStream fileInputStream, @NonNull OutputStream outputStream, boolean streamBase64Encoded, @Nullable String keyHint) throws IOException, DGMCryptoFailureException {
+        copyDecrypted(openDecryptingStream(fileInputStream, streamBase64Encoded, keyHint), outputStream);
+    }
+
+    /**
+     * Same as {@link #decryptStream(InputStream, OutputStream, boolean, String)}, but content of at least
+     * {@link CryptoUtils#setParallelDecryptionThreshold(int)} bytes is read whole and decrypted in parallel on {@code executor},
+     * with the calling thread taking part; encrypted and decrypted content are then held in memory at once.
+     * At most the threshold is read ahead to tell the size, smaller content is decrypted as it is copied out.
+     * If parallel decryption is turned off, all content is decrypted as it is read.
+     *
+     * @param executor Executor helping with decryption, may be the one the calling thread belongs to
+     */
+    public void decryptStream(@NonNull InputStream fileInputStream, @NonNull OutputStream outputStream, boolean streamBase64Encoded, @Nullable String keyHint, @NonNull Executor executor) throws IOException, DGMCryptoFailureException {
+        int threshold = getParallelDecryptionThreshold();
+        if (threshold <= 0) {
+            decryptStream(fileInputStream, outputStream, streamBase64Encoded, keyHint);
+            return;
+        }
         byte[] encryptedDSK = new byte[ENCRYPTED_DSK_LENGTH];
         byte[] DIV = new byte[DIV_LENGTH];
-
-        if (providerKeys.isEmpty()) {
-            throw new DGMCryptoFailureException(FailureCause.INVALID_KEY_FAILURE);
+        InputStream dataStream = readHeader(fileInputStream, streamBase64Encoded, encryptedDSK, DIV);
+        ByteArrayOutputStream data = new ByteArrayOutputStream();
+        if (readInto(dataStream, data, threshold)) {
+            copyDecrypted(openDecryptingStream(new ByteArrayInputStream(data.toByteArray()), encryptedDSK, DIV, keyHint), outputStream);
+            return;
         }
-        InputStream dataStream = fileInputStream;
-        if (streamBase64Encoded) {
-            dataStream = new Base64InputStream(fileInputStream, Base64.DEFAULT);
+        readInto(dataStream, data, Long.MAX_VALUE);
+        byte[] encrypted = data.toByteArray();
+        // Let go of the read buffer, only its copy is needed from here
+        data = null;
+        if (encrypted.length + ENCRYPTED_DSK_LENGTH + DIV_LENGTH < MIN_FILE_LENGTH || encrypted.length % DIV_LENGTH != 0) {
+            throw new DGMCryptoFailureException(FailureCause.CHECKSUM_CORRUPTED_FAILURE);
         }
 
-        if ( dataStream.read(encryptedDSK) != encryptedDSK.length //read DSK
-             || dataStream.read(DIV) != DIV.length //read DIV header
-                ) {
-            throw new DGMCryptoFailureException(FailureCause.FILE_READING_FAILURE);
+        byte[] DSK = unwrapDSK(encryptedDSK, keyHint);
+        byte[] decrypted;
+        try {
+            decrypted = decryptAES(encrypted, DSK, DIV, executor);
+        } catch (DGMCryptoFailureException e) {
+            // Reported like a failure of the streaming decryption
+            throw new DGMCryptoFailureException(FailureCause.DATA_CORRUPTED_FAILURE, e.getCause());
+        } finally {
+            Arrays.fill(DSK, (byte) 0);
         }
+        int hashLength = Math.min(decrypted.length, HASH_LENGTH);
+        Digest digest = sha512Digest();
+        digest.update(decrypted, hashLength, decrypted.length - hashLength);
+        CADecryptingInputStream.verifyHash(Arrays.copyOf(decrypted, HASH_LENGTH), hashLength, digest);
+        outputStream.write(decrypted, HASH_LENGTH, decrypted.length - HASH_LENGTH);
+    }
 
-        InputStream dataAndHash = null;
-        Iterator<PrivateKey> keyIterator = providerKeys.iterator();
-        boolean retry = true;
-        while (keyIterator.hasNext() && retry) {
-            try {
-                PrivateKey currentKey = keyIterator.next();
-                byte[] DSK = decryptRSA(encryptedDSK, currentKey);
-                byte[] content = ByteUtils.readBytesFromStream(dataStream);
-                int totalLength = content.length + ENCRYPTED_DSK_LENGTH + DIV_LENGTH;
-
-                if (totalLength < 352 || totalLength % 16 != 0) {
-                    throw new DGMCryptoFailureException(FailureCause.CHECKSUM_CORRUPTED_FAILURE);
-                }
-
-                dataAndHash = new ByteArrayInputStream(decryptAES(content, DSK, DIV));
-                retry = false;
-            } catch (Exception e) {
-                if (!keyIterator.hasNext())
-                    throw new DGMCryptoFailureException(FailureCause.DATA_CORRUPTED_FAILURE, e);
+    private static void copyDecrypted(CADecryptingInputStream decrypted, OutputStream outputStream) throws IOException, DGMCryptoFailureException {
+        byte[] buffer = new byte[CADecryptingInputStream.DEFAULT_BUFFER_SIZE];
+        int read;
+        try {
+            while ((read = decrypted.read(buffer)) != -1) {
+                outputStream.write(buffer, 0, read);
             }
+        } catch (DGMCryptoStreamException e) {
+            throw e.failure();
+        } finally {
+            // Input stream stays open, only the cipher is handed back if reading or writing failed halfway
+            decrypted.releaseCipher();
         }
+    }
 
-        return ByteUtils.bytesToString(readAndVerify(dataAndHash));
+    /**
+     * Returns a stream that decrypts the file content from {@code fileInputStream} as it is being read.
+     * Only file header is read upfront (to unwrap the content key), data is decrypted and hashed chunk by chunk,
+     * so memory usage is bounded by a small fixed buffer regardless of the file size.
+     *
+     * Content hash is verified when end of stream is reached. Upon failure {@code read} throws {@link DGMCryptoStreamException}.
+     * Closing the returned stream closes {@code fileInputStream}.
+     *
+     * @param fileInputStream     Encrypted file content
+     * @param streamBase64Encoded Whether {@code fileInputStream} is Base64 encoded
+     * @return Stream of decrypted data
+     * @throws IOException               If file header can't be read
+     * @throws DGMCryptoFailureException If none of the available keys can decrypt the file
+     */
+    public InputStream decryptingStream(@NonNull InputStream fileInputStream, boolean streamBase64Encoded) throws IOException, DGMCryptoFailureException {
+        return decryptingStream(fileInputStream, streamBase64Encoded, null);
     }
 
-    private byte[] readAndVerify(InputStream dataAndHash) throws DGMCryptoFailureException, IOException {
-        byte[] hash = new byte[HASH_LENGTH];
+    /**
+     * Same as {@link #decryptingStream(InputStream, boolean)}, trying the key that last succeeded for {@code keyHint} first.
+     *
+     * @param keyHint Identifier of the content owner, see {@link CAKeyStore#iterator(String)}
+     */
+    public InputStream decryptingStream(@NonNull InputStream fileInputStream, boolean streamBase64Encoded, @Nullable String keyHint) throws IOException, DGMCryptoFailureException {
+        return openDecryptingStream(fileInputStream, streamBase64Encoded, keyHint);
+    }
 
-        if (dataAndHash.read(hash) != hash.length) {
-            throw new DGMCryptoFailureException(FailureCause.CHECKSUM_CORRUPTED_FAILURE);
+    private CADecryptingInputStream openDecryptingStream(InputStream fileInputStream, boolean streamBase64Encoded, String keyHint) throws IOException, DGMCryptoFailureException {
+        byte[] encryptedDSK = new byte[ENCRYPTED_DSK_LENGTH];
+        byte[] DIV = new byte[DIV_LENGTH];
+        InputStream dataStream = readHeader(fileInputStream, streamBase64Encoded, encryptedDSK, DIV);
+        return openDecryptingStream(dataStream, encryptedDSK, DIV, keyHint);
+    }
+
+    private CADecryptingInputStream openDecryptingStream(InputStream dataStream, byte[] encryptedDSK, byte[] DIV, String keyHint) throws DGMCryptoFailureException {
+        byte[] DSK = unwrapDSK(encryptedDSK, keyHint);
+        try {
+            return new CADecryptingInputStream(dataStream, blockCipher(DSK, DIV));
+        } finally {
+            Arrays.fill(DSK, (byte) 0);
         }
+    }
 
-        byte[] data = ByteUtils.readBytesFromStream(dataAndHash);
-        verifyHashForData(data, hash);
+    /**
+     * Reads the encrypted DSK and DIV headers.
+     *
+     * @return Stream positioned at the encrypted data
+     */
+    private InputStream readHeader(InputStream fileInputStream, boolean streamBase64Encoded, byte[] encryptedDSK, byte[] DIV) throws IOException, DGMCryptoFailureException {
+        if (providerKeys.isEmpty()) {
+            throw new DGMCryptoFailureException(FailureCause.INVALID_KEY_FAILURE);
+        }
+        InputStream dataStream = fileInputStream;
+        if (streamBase64Encoded) {
+            dataStream = new Base64DecodingInputStream(fileInputStream);
+        }
 
-        return data;
+        if ( ByteUtils.readFully(dataStream, encryptedDSK) != encryptedDSK.length //read DSK
+             || ByteUtils.readFully(dataStream, DIV) != DIV.length //read DIV header
+                ) {
+            throw new DGMCryptoFailureException(FailureCause.FILE_READING_FAILURE);
+        }
+        return dataStream;
     }
 
-    private void verifyHashForData(byte[] data, byte[] hash) throws DGMCryptoFailureException {
-        byte[] newHash = hashSha512(data);
+    /**
+     * Reads from {@code dataStream} into {@code data} until {@code limit} bytes were read or the stream ends.
+     *
+     * @return Whether the end of the stream was reached
+     */
+    private static boolean readInto(InputStream dataStream, ByteArrayOutputStream data, long limit) throws IOException {
+        byte[] buffer = new byte[CADecryptingInputStream.DEFAULT_BUFFER_SIZE];
+        long remaining = limit;
+        while (remaining > 0) {
+            int read = dataStream.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+            if (read == -1) {
+                return true;
+            }
+            data.write(buffer, 0, read);
+            remaining -= read;
+        }
+        return false;
+    }
 
-        if (!Arrays.areEqual(newHash, hash)) {
-            throw new DGMCryptoFailureException(FailureCause.DATA_CORRUPTED_FAILURE);
+    private byte[] unwrapDSK(byte[] encryptedDSK, String keyHint) throws DGMCryptoFailureException {
+        CADataKeyCache dataKeyCache = providerKeys.getDataKeyCache();
+        byte[] cached = dataKeyCache.get(encryptedDSK);
+        if (cached != null) {
+            return cached;
+        }
+        Iterator<PrivateKey> keyIterator = providerKeys.iterator(keyHint);
+        while (keyIterator.hasNext()) {
+            PrivateKey key = keyIterator.next();
+            try {
+                byte[] DSK = decryptRSA(encryptedDSK, key);
+                providerKeys.keySucceeded(key, keyHint);
+                dataKeyCache.put(encryptedDSK, DSK);
+                return DSK;
+            } catch (Exception e) {
+                providerKeys.keyFailed(key);
+                if (!keyIterator.hasNext())
+                    throw new DGMCryptoFailureException(FailureCause.DATA_CORRUPTED_FAILURE, e);
+            }
         }
+        throw new DGMCryptoFailureException(FailureCause.INVALID_KEY_FAILURE);
     }
 
 }
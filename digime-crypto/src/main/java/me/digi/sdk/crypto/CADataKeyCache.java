@@ -0,0 +1,171 @@
+/*
+ * Copyright © 2017 digi.me. All rights reserved.
+ */
+
+package me.digi.sdk.crypto;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded, time limited cache of unwrapped data keys (DSK), so that files sharing a DSK (or retries of the same file)
+ * skip the RSA private key operation.
+ * Entries are keyed by SHA-512 of the encrypted DSK and evicted in least recently used order once the cache is full,
+ * or once they outlive the configured time to live. Key bytes are zeroed on eviction and on {@link #clear()}.
+ */
+@SuppressWarnings("WeakerAccess")
+public class CADataKeyCache {
+    public static final int DEFAULT_MAX_ENTRIES = 32;
+    public static final long DEFAULT_TTL_MILLIS = TimeUnit.MINUTES.toMillis(10);
+
+    private final int maxEntries;
+    private final long ttlNanos;
+    private final LinkedHashMap<ByteBuffer, CachedKey> entries;
+
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+    private final AtomicLong evictionCount = new AtomicLong();
+
+    public CADataKeyCache() {
+        this(DEFAULT_MAX_ENTRIES, DEFAULT_TTL_MILLIS);
+    }
+
+    /**
+     * Instantiates a new cache
+     *
+     * @param maxEntries Maximum number of cached keys, {@code 0} disables caching
+     * @param ttlMillis  Time in milliseconds an entry stays valid after it was stored
+     */
+    public CADataKeyCache(int maxEntries, long ttlMillis) {
+        if (maxEntries < 0 || ttlMillis < 0) {
+            throw new IllegalArgumentException("Cache size and time to live can't be negative");
+        }
+        this.maxEntries = maxEntries;
+        this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(ttlMillis);
+        this.entries = new LinkedHashMap<ByteBuffer, CachedKey>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<ByteBuffer, CachedKey> eldest) {
+                if (size() > CADataKeyCache.this.maxEntries) {
+                    eldest.getValue().destroy();
+                    evictionCount.incrementAndGet();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Looks up a data key unwrapped earlier from {@code encryptedDSK}.
+     *
+     * @param encryptedDSK RSA encrypted DSK as read from the file header
+     * @return Copy of the unwrapped key, or {@code null} if it's not cached or has expired
+     */
+    public byte[] get(byte[] encryptedDSK) {
+        if (maxEntries == 0) {
+            missCount.incrementAndGet();
+            return null;
+        }
+        ByteBuffer cacheKey = cacheKey(encryptedDSK);
+        synchronized (entries) {
+            CachedKey entry = entries.get(cacheKey);
+            if (entry != null && entry.isExpired(now())) {
+                entries.remove(cacheKey);
+                entry.destroy();
+                evictionCount.incrementAndGet();
+                entry = null;
+            }
+            if (entry == null) {
+                missCount.incrementAndGet();
+                return null;
+            }
+            hitCount.incrementAndGet();
+            return entry.key.clone();
+        }
+    }
+
+    /**
+     * Stores a copy of {@code dsk} unwrapped from {@code encryptedDSK}.
+     *
+     * @param encryptedDSK RSA encrypted DSK as read from the file header
+     * @param dsk          Unwrapped data key
+     */
+    public void put(byte[] encryptedDSK, byte[] dsk) {
+        if (maxEntries == 0) {
+            return;
+        }
+        ByteBuffer cacheKey = cacheKey(encryptedDSK);
+        CachedKey entry = new CachedKey(dsk.clone(), now() + ttlNanos);
+        synchronized (entries) {
+            CachedKey previous = entries.put(cacheKey, entry);
+            if (previous != null) {
+                previous.destroy();
+            }
+        }
+    }
+
+    /**
+     * Removes all cached keys and zeroes their bytes.
+     */
+    public void clear() {
+        synchronized (entries) {
+            Iterator<CachedKey> it = entries.values().iterator();
+            while (it.hasNext()) {
+                it.next().destroy();
+                it.remove();
+            }
+        }
+    }
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    /**
+     * Number of entries removed because the cache was full or they expired.
+     */
+    public long getEvictionCount() {
+        return evictionCount.get();
+    }
+
+    long now() {
+        return System.nanoTime();
+    }
+
+    private static ByteBuffer cacheKey(byte[] encryptedDSK) {
+        return ByteBuffer.wrap(CryptoUtils.hashSha512(encryptedDSK));
+    }
+
+    private static final class CachedKey {
+        final byte[] key;
+        final long expiresAt;
+
+        CachedKey(byte[] key, long expiresAt) {
+            this.key = key;
+            this.expiresAt = expiresAt;
+        }
+
+        boolean isExpired(long now) {
+            return now - expiresAt >= 0;
+        }
+
+        void destroy() {
+            Arrays.fill(key, (byte) 0);
+        }
+    }
+}
@@ -0,0 +1,178 @@
+/*
+ * Copyright © 2017 digi.me. All rights reserved.
+ */
+
+package me.digi.sdk.crypto;
+
+import org.spongycastle.crypto.BufferedBlockCipher;
+import org.spongycastle.crypto.Digest;
+import org.spongycastle.crypto.InvalidCipherTextException;
+import org.spongycastle.crypto.digests.SHA512Digest;
+import org.spongycastle.util.Arrays;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Decrypts the AES payload of a CA file chunk by chunk.
+ *
+ * Decrypted payload is laid out as {@code SHA512(data) | data}; the leading hash is held back and the data
+ * is hashed incrementally while it is being read. Hash is verified once the end of the ciphertext is reached,
+ * so the final {@code read} either returns {@code -1} for valid content or fails with {@link DGMCryptoStreamException}.
+ * Only a fixed size buffer is held, no matter how big the file is. Ciphertext is read into the same buffer the plaintext
+ * is decrypted into, one block ahead of it, so blocks are decrypted in place.
+ * Cipher is handed back to the {@link CryptoUtils} pool once the ciphertext is consumed or the stream is closed.
+ */
+final class CADecryptingInputStream extends InputStream {
+    static final int DEFAULT_BUFFER_SIZE = 8192;
+
+    private final InputStream source;
+    private final BufferedBlockCipher cipher;
+    private final Digest digest = new SHA512Digest();
+
+    private final byte[] expectedHash = new byte[CACryptoProvider.HASH_LENGTH];
+    private int hashFill;
+
+    private final int blockSize;
+    private final byte[] buffer;
+    private int outPos;
+    private int outLimit;
+
+    private long cipherLength;
+    private boolean finished;
+    private boolean cipherReleased;
+
+    CADecryptingInputStream(InputStream source, BufferedBlockCipher cipher) {
+        this.source = source;
+        this.cipher = cipher;
+        this.blockSize = cipher.getBlockSize();
+        // Output can be a block longer than the input, for the block held back by the previous call
+        this.buffer = new byte[blockSize + DEFAULT_BUFFER_SIZE + blockSize];
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (!ensureAvailable()) {
+            return -1;
+        }
+        return buffer[outPos++] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        if (!ensureAvailable()) {
+            return -1;
+        }
+        int count = Math.min(len, outLimit - outPos);
+        System.arraycopy(buffer, outPos, b, off, count);
+        outPos += count;
+        return count;
+    }
+
+    @Override
+    public int available() throws IOException {
+        return outLimit - outPos;
+    }
+
+    @Override
+    public void close() throws IOException {
+        releaseCipher();
+        source.close();
+    }
+
+    private boolean ensureAvailable() throws IOException {
+        while (outPos >= outLimit) {
+            if (finished) {
+                return false;
+            }
+            if (cipherReleased) {
+                throw new IOException("Stream closed");
+            }
+            int produced;
+            // Plaintext is written from the start of the buffer and never overtakes the ciphertext read after the first block
+            int read = source.read(buffer, blockSize, DEFAULT_BUFFER_SIZE);
+            if (read == -1) {
+                produced = finish();
+            } else {
+                cipherLength += read;
+                produced = cipher.processBytes(buffer, blockSize, read, buffer, 0);
+            }
+            outPos = extractHash(produced);
+            outLimit = produced;
+            digest.update(buffer, outPos, outLimit - outPos);
+            if (finished) {
+                verify();
+            }
+        }
+        return true;
+    }
+
+    private int finish() throws DGMCryptoStreamException {
+        finished = true;
+        try {
+            long totalLength = cipherLength + CACryptoProvider.ENCRYPTED_DSK_LENGTH + CACryptoProvider.DIV_LENGTH;
+            if (totalLength < CACryptoProvider.MIN_FILE_LENGTH || totalLength % cipher.getBlockSize() != 0) {
+                throw new DGMCryptoStreamException(new DGMCryptoFailureException(FailureCause.CHECKSUM_CORRUPTED_FAILURE));
+            }
+            return cipher.doFinal(buffer, 0);
+        } catch (InvalidCipherTextException e) {
+            throw new DGMCryptoStreamException(new DGMCryptoFailureException(FailureCause.DATA_CORRUPTED_FAILURE, e));
+        } finally {
+            releaseCipher();
+        }
+    }
+
+    /**
+     * Hands the cipher back to the pool without closing the source. Further reads fail.
+     */
+    void releaseCipher() {
+        if (!cipherReleased) {
+            cipherReleased = true;
+            CryptoUtils.releaseBlockCipher(cipher);
+        }
+    }
+
+    /**
+     * Moves leading hash bytes out of the output buffer
+     *
+     * @return Offset of the first data byte in the output buffer
+     */
+    private int extractHash(int produced) {
+        int taken = 0;
+        if (hashFill < expectedHash.length) {
+            taken = Math.min(expectedHash.length - hashFill, produced);
+            System.arraycopy(buffer, 0, expectedHash, hashFill, taken);
+            hashFill += taken;
+        }
+        return taken;
+    }
+
+    private void verify() throws DGMCryptoStreamException {
+        try {
+            verifyHash(expectedHash, hashFill, digest);
+        } catch (DGMCryptoFailureException e) {
+            throw new DGMCryptoStreamException(e);
+        }
+    }
+
+    /**
+     * Checks decrypted data against the hash it is preceded by.
+     *
+     * @param expectedHash Hash the decrypted payload starts with
+     * @param hashLength   Number of hash bytes the payload actually held
+     * @param digest       Digest updated with the data following the hash
+     */
+    static void verifyHash(byte[] expectedHash, int hashLength, Digest digest) throws DGMCryptoFailureException {
+        if (hashLength != CACryptoProvider.HASH_LENGTH) {
+            throw new DGMCryptoFailureException(FailureCause.CHECKSUM_CORRUPTED_FAILURE);
+        }
+        byte[] actualHash = new byte[digest.getDigestSize()];
+        digest.doFinal(actualHash, 0);
+        if (!Arrays.constantTimeAreEqual(actualHash, expectedHash)) {
+            throw new DGMCryptoFailureException(FailureCause.DATA_CORRUPTED_FAILURE);
+        }
+    }
+}
@@ -5,25 +5,49 @@
 package me.digi.sdk.crypto;
 
 import android.content.Context;
+import android.support.annotation.Nullable;
 
 import java.security.PrivateKey;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 /**
  * A key container that allows for efficient wrapping of multiple RSA private keys from different sources.
  * It's primary usage is transparent iteration of decryption keys where separation is ambiguous and is loaded from different sources.
+ * Keys that successfully decrypt content are promoted to the head of the container and remembered per key hint
+ * (for example a contract or session), so subsequent decryptions try the right key first.
+ * Only the most recently used {@value #MAX_KEY_HINTS} hints are remembered.
  */
 @SuppressWarnings("WeakerAccess")
 public class CAKeyStore {
-    private final ConcurrentLinkedDeque<PrivateKey> storedKeys = new ConcurrentLinkedDeque<>();
+    static final int MAX_KEY_HINTS = 64;
+
+    /**
+     * Keys in most recently used order. The list is never modified, every change replaces it with an updated copy
+     * (under {@link #keysLock}), so iterators handed out keep seeing all keys while others are reordered.
+     */
+    private volatile List<PrivateKey> storedKeys = Collections.emptyList();
+    private final Object keysLock = new Object();
+    private final Map<String, PrivateKey> hintedKeys = new LinkedHashMap<String, PrivateKey>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, PrivateKey> eldest) {
+            return size() > MAX_KEY_HINTS;
+        }
+    };
+    private final ConcurrentHashMap<PrivateKey, KeyStats> keyStats = new ConcurrentHashMap<>();
+    private final CADataKeyCache dataKeyCache = new CADataKeyCache();
     private static final Logger LOGGER = Logger.getLogger(CAKeyStore.class.getName());
 
     /**
-     * Instantiates a new container with a root key (will always be at the end of deque)
+     * Instantiates a new container with a root key (will be at the end of deque until it's used for decryption)
      *
      * @param rootKey Root Private key
      */
@@ -32,7 +56,7 @@ public class CAKeyStore {
     }
 
     /**
-     * Instantiates a new container with a root key (will always be at the end of deque) in hexadecimal string format
+     * Instantiates a new container with a root key (will be at the end of deque until it's used for decryption) in hexadecimal string format
      *
      * @param hexCodedKey Hex coded Root Private key
      */
@@ -54,7 +78,7 @@ public class CAKeyStore {
      */
     public void addKey(PrivateKey k) {
         if (k != null) {
-            storedKeys.addFirst(k);
+            moveToHead(k);
         }
     }
 
@@ -111,7 +135,7 @@ public class CAKeyStore {
     public void addFromList(List<PrivateKey> keyList) {
         if (keyList != null) {
             for (PrivateKey pk : keyList) {
-                storedKeys.addFirst(pk);
+                moveToHead(pk);
             }
         }
     }
@@ -119,12 +143,140 @@ public class CAKeyStore {
     /**
      * Returns a new key iterator.
      * Concurrent access operations execute safely
-     * across multiple threads.
+     * across multiple threads; the iterator works on a snapshot of the keys taken when it's created.
+     * {@link Iterator#remove()} removes the last returned key from the container, not just from the snapshot.
      *
      * @return Private key iterator.
      */
     public Iterator<PrivateKey> iterator() {
-        return storedKeys.iterator();
+        return new KeyIterator(storedKeys);
+    }
+
+    /**
+     * Returns a new key iterator which starts with the key that last succeeded for {@code keyHint},
+     * followed by the remaining keys in most recently used order.
+     * Like {@link #iterator()}, it works on a snapshot and {@link Iterator#remove()} removes keys from the container.
+     *
+     * @param keyHint Identifier of the content owner (contract, session), or {@code null} if unknown
+     * @return Private key iterator.
+     */
+    public Iterator<PrivateKey> iterator(@Nullable String keyHint) {
+        List<PrivateKey> keys = storedKeys;
+        PrivateKey hinted = keyHint == null ? null : hintedKey(keyHint);
+        if (hinted == null || keys.isEmpty() || hinted.equals(keys.get(0))) {
+            return new KeyIterator(keys);
+        }
+        List<PrivateKey> ordered = new ArrayList<>(keys.size());
+        ordered.add(hinted);
+        for (PrivateKey key : keys) {
+            if (!key.equals(hinted)) {
+                ordered.add(key);
+            }
+        }
+        return new KeyIterator(ordered);
+    }
+
+    /**
+     * Records a successful decryption with {@code key}, moving it to the head of the container.
+     */
+    void keySucceeded(PrivateKey key, @Nullable String keyHint) {
+        statsFor(key).successCount.incrementAndGet();
+        if (keyHint != null) {
+            synchronized (hintedKeys) {
+                hintedKeys.put(keyHint, key);
+            }
+        }
+        List<PrivateKey> keys = storedKeys;
+        if (!keys.isEmpty() && !key.equals(keys.get(0))) {
+            synchronized (keysLock) {
+                if (storedKeys.contains(key)) {
+                    moveToHead(key);
+                }
+            }
+        }
+    }
+
+    /**
+     * Forgets the key that last succeeded for {@code keyHint}, once the content owner it identifies (such as a session) is gone.
+     *
+     * @param keyHint Identifier of the content owner
+     */
+    public void clearKeyHint(String keyHint) {
+        synchronized (hintedKeys) {
+            hintedKeys.remove(keyHint);
+        }
+    }
+
+    private PrivateKey hintedKey(String keyHint) {
+        synchronized (hintedKeys) {
+            return hintedKeys.get(keyHint);
+        }
+    }
+
+    /**
+     * Publishes a copy of the keys with {@code key} first, removing it from its previous position.
+     */
+    private void moveToHead(PrivateKey key) {
+        synchronized (keysLock) {
+            List<PrivateKey> keys = new ArrayList<>(storedKeys.size() + 1);
+            keys.add(key);
+            for (PrivateKey stored : storedKeys) {
+                if (!stored.equals(key)) {
+                    keys.add(stored);
+                }
+            }
+            storedKeys = Collections.unmodifiableList(keys);
+        }
+    }
+
+    /**
+     * Removes {@code key} from the container, together with the hints pointing to it.
+     */
+    private void removeKey(PrivateKey key) {
+        synchronized (keysLock) {
+            List<PrivateKey> keys = new ArrayList<>(storedKeys);
+            keys.remove(key);
+            storedKeys = Collections.unmodifiableList(keys);
+        }
+        synchronized (hintedKeys) {
+            hintedKeys.values().removeAll(Collections.singleton(key));
+        }
+    }
+
+    /**
+     * Records a failed decryption attempt with {@code key}.
+     */
+    void keyFailed(PrivateKey key) {
+        statsFor(key).failureCount.incrementAndGet();
+    }
+
+    /**
+     * Returns decryption counters for a key in this container.
+     *
+     * @param key Private key
+     * @return Counters of successful and failed decryptions with {@code key}
+     */
+    public KeyStats getKeyStats(PrivateKey key) {
+        return statsFor(key);
+    }
+
+    private KeyStats statsFor(PrivateKey key) {
+        KeyStats stats = keyStats.get(key);
+        if (stats == null) {
+            keyStats.putIfAbsent(key, new KeyStats());
+            stats = keyStats.get(key);
+        }
+        return stats;
+    }
+
+    /**
+     * Returns the cache of data keys unwrapped with the keys in this container.
+     * Cache is shared by all {@link CACryptoProvider} instances created for this container.
+     *
+     * @return Data key cache
+     */
+    public CADataKeyCache getDataKeyCache() {
+        return dataKeyCache;
     }
 
     /**
@@ -135,4 +287,52 @@ public class CAKeyStore {
     public boolean isEmpty() {
         return storedKeys.isEmpty();
     }
+
+    /**
+     * Iterates a snapshot of the keys, removing keys from the container itself.
+     */
+    private final class KeyIterator implements Iterator<PrivateKey> {
+        private final Iterator<PrivateKey> snapshot;
+        private PrivateKey last;
+
+        KeyIterator(List<PrivateKey> keys) {
+            this.snapshot = keys.iterator();
+        }
+
+        @Override
+        public boolean hasNext() {
+            return snapshot.hasNext();
+        }
+
+        @Override
+        public PrivateKey next() {
+            last = snapshot.next();
+            return last;
+        }
+
+        @Override
+        public void remove() {
+            if (last == null) {
+                throw new IllegalStateException();
+            }
+            removeKey(last);
+            last = null;
+        }
+    }
+
+    /**
+     * Decryption counters of a single key.
+     */
+    public static final class KeyStats {
+        private final AtomicLong successCount = new AtomicLong();
+        private final AtomicLong failureCount = new AtomicLong();
+
+        public long getSuccessCount() {
+            return successCount.get();
+        }
+
+        public long getFailureCount() {
+            return failureCount.get();
+        }
+    }
 }
@@ -4,6 +4,8 @@
 
 package me.digi.sdk.crypto;
 
+import android.support.annotation.NonNull;
+
 import org.spongycastle.asn1.pkcs.PrivateKeyInfo;
 import org.spongycastle.asn1.x509.SubjectPublicKeyInfo;
 import org.spongycastle.crypto.BufferedBlockCipher;
@@ -11,10 +13,6 @@ import org.spongycastle.crypto.CipherParameters;
 import org.spongycastle.crypto.Digest;
 import org.spongycastle.crypto.InvalidCipherTextException;
 import org.spongycastle.crypto.digests.SHA512Digest;
-import org.spongycastle.crypto.engines.AESEngine;
-import org.spongycastle.crypto.io.DigestInputStream;
-import org.spongycastle.crypto.modes.CBCBlockCipher;
-import org.spongycastle.crypto.paddings.PaddedBufferedBlockCipher;
 import org.spongycastle.crypto.params.KeyParameter;
 import org.spongycastle.crypto.params.ParametersWithIV;
 import org.spongycastle.jce.provider.BouncyCastleProvider;
@@ -23,11 +21,12 @@ import org.spongycastle.openssl.PEMParser;
 import org.spongycastle.openssl.jcajce.JcaPEMKeyConverter;
 import org.spongycastle.util.io.pem.PemReader;
 
-import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.Reader;
 import java.io.StringReader;
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
 import java.security.KeyFactory;
 import java.security.KeyPair;
 import java.security.NoSuchAlgorithmException;
@@ -36,6 +35,14 @@ import java.security.PrivateKey;
 import java.security.Security;
 import java.security.spec.InvalidKeySpecException;
 import java.security.spec.PKCS8EncodedKeySpec;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -50,9 +57,55 @@ public class CryptoUtils {
 
     private static final String RSA = "RSA";
     private static final String DEFAULT_RSA_PADDING = "RSA/ECB/OAEPWithSHA1AndMGF1Padding";
+    private static final int DIGEST_CHUNK_SIZE = 8192;
+
+    private static final ThreadLocal<SHA512Digest> THREAD_SHA512 = new ThreadLocal<SHA512Digest>() {
+        @Override
+        protected SHA512Digest initialValue() {
+            return new SHA512Digest();
+        }
+    };
+
+    /*
+     * Cipher lookups go through the JCA provider registry and AES ciphers allocate engine, mode and padding
+     * objects, which is a noticeable share of decrypting a small file. RSA ciphers are kept per thread (they are
+     * only used within a single call), AES ciphers are pooled since decrypting streams hold on to them until
+     * the content is read.
+     */
+    private static final ThreadLocal<Map<String, Cipher>> THREAD_RSA_CIPHERS = new ThreadLocal<Map<String, Cipher>>() {
+        @Override
+        protected Map<String, Cipher> initialValue() {
+            return new HashMap<>();
+        }
+    };
+
+    private static final int AES_POOL_CAPACITY = Math.max(4, 2 * Runtime.getRuntime().availableProcessors());
+    private static final ConcurrentLinkedQueue<BufferedBlockCipher> AES_POOL = new ConcurrentLinkedQueue<>();
+    private static final AtomicInteger aesPoolSize = new AtomicInteger();
+
+    private static final int AES_BLOCK_SIZE = 16;
+    private static final byte[] RELEASED_KEY = new byte[32];
+    private static final byte[] RELEASED_IV = new byte[AES_BLOCK_SIZE];
+    private static final int MIN_PARALLEL_SEGMENT_SIZE = 256 * 1024;
+    private static volatile int parallelDecryptionThreshold = 1024 * 1024;
+
+    private static final int AES_SELF_TEST_SIZE = 64 * 1024;
+    private static final int AES_SELF_TEST_ROUNDS = 3;
+    private static final Object aesBackendLock = new Object();
+    /**
+     * Backend ciphers are created with, never {@link AESBackend#AUTO}.
+     */
+    private static volatile AESBackend aesBackend = AESBackend.SPONGY_CASTLE;
+    // Guarded by aesBackendLock
+    private static boolean aesBackendAuto = true;
+    private static boolean aesSelectionRunning;
+    private static AESBackend selectedAESBackend;
 
     static {
         Security.insertProviderAt(new BouncyCastleProvider(), 1);
+        synchronized (aesBackendLock) {
+            startAESBackendSelection();
+        }
     }
 
     /**
@@ -81,7 +134,7 @@ public class CryptoUtils {
             throw new IllegalArgumentException();
         }
         try {
-            Cipher rsaCipher = Cipher.getInstance(provider, "SC");
+            Cipher rsaCipher = rsaCipher(provider);
             rsaCipher.init(Cipher.DECRYPT_MODE, privateKey);
             return rsaCipher.doFinal(data);
         } catch (Exception e) {
@@ -94,6 +147,16 @@ public class CryptoUtils {
         }
     }
 
+    private static Cipher rsaCipher(String provider) throws GeneralSecurityException {
+        Map<String, Cipher> ciphers = THREAD_RSA_CIPHERS.get();
+        Cipher cipher = ciphers.get(provider);
+        if (cipher == null) {
+            cipher = Cipher.getInstance(provider, "SC");
+            ciphers.put(provider, cipher);
+        }
+        return cipher;
+    }
+
     /**
      * Extract a private key from the byte array.
      * Provided byte array can either represent a raw {@code PKCS8} coded key or a PEM encoded key blob.
@@ -157,21 +220,304 @@ public class CryptoUtils {
      * @return The decrypted bytes
      */
     static byte[] decryptAES(byte[] data, byte[] key, byte[] ivBytes) throws DGMCryptoFailureException {
+        return decryptAES(data, key, ivBytes, null, 1);
+    }
+
+    /**
+     * AES decrypt the given data, in parallel on {@code executor} if it is at least {@link #setParallelDecryptionThreshold(int)} bytes.
+     *
+     * @param executor Executor helping the calling thread, {@code null} to decrypt on the calling thread only
+     * @return The decrypted bytes
+     */
+    static byte[] decryptAES(byte[] data, byte[] key, byte[] ivBytes, Executor executor) throws DGMCryptoFailureException {
+        int threshold = parallelDecryptionThreshold;
+        int segments = 1;
+        if (executor != null && threshold > 0 && data.length >= threshold) {
+            segments = Math.min(Runtime.getRuntime().availableProcessors(), data.length / MIN_PARALLEL_SEGMENT_SIZE);
+        }
+        return decryptAES(data, key, ivBytes, executor, segments);
+    }
+
+    /**
+     * AES decrypt the given data, splitting it into {@code segments} block aligned parts decrypted in parallel.
+     * Each CBC block only depends on its ciphertext and the previous ciphertext block, so a segment can be decrypted
+     * on its own with the preceding ciphertext block as IV; only the last segment is unpadded.
+     *
+     * The calling thread decrypts segments too, and takes over any that {@code executor} hasn't started,
+     * so this doesn't wait on a busy executor and can be called from one of its own threads.
+     *
+     * @param executor Executor helping the calling thread
+     * @param segments Number of parts to decrypt in parallel, 1 or less decrypts on the calling thread
+     * @return The decrypted bytes, identical to serial decryption
+     */
+    static byte[] decryptAES(byte[] data, byte[] key, byte[] ivBytes, Executor executor, int segments) throws DGMCryptoFailureException {
+        int blocks = data.length / AES_BLOCK_SIZE;
+        if (executor != null && segments > 1 && blocks > 1 && data.length % AES_BLOCK_SIZE == 0) {
+            SegmentedDecryption decryption = new SegmentedDecryption(data, key, ivBytes, Math.min(segments, blocks));
+            decryption.run(executor);
+            if (decryption.failure != null) {
+                throw new DGMCryptoFailureException(FailureCause.AES_DECRYPTION_FAILURE, decryption.failure);
+            }
+            if (!decryption.unsupported) {
+                return Arrays.copyOf(decryption.output, decryption.outputLength);
+            }
+            // Backend doesn't hold back exactly the last block of a segment, fall back to decrypting serially
+        }
+        BufferedBlockCipher cipher = blockCipher(key, ivBytes);
         try {
-            return cipherData(blockCipher(key, ivBytes), data);
+            return cipherData(cipher, data);
         } catch (InvalidCipherTextException e) {
             throw new DGMCryptoFailureException(FailureCause.AES_DECRYPTION_FAILURE, e);
+        } finally {
+            releaseBlockCipher(cipher);
         }
     }
 
-    private static BufferedBlockCipher blockCipher(byte[] key, byte[] ivBytes) {
-        PaddedBufferedBlockCipher aes = new PaddedBufferedBlockCipher(new CBCBlockCipher(
-            new AESEngine()));
+    /**
+     * Sets the size from which file content decrypted with an executor, see
+     * {@link CACryptoProvider#decryptStream(java.io.InputStream, java.io.OutputStream, boolean, String, Executor)}, is decrypted in parallel.
+     *
+     * @param bytes Minimum size of encrypted data in bytes, 0 or less to always decrypt on the calling thread
+     */
+    public static void setParallelDecryptionThreshold(int bytes) {
+        parallelDecryptionThreshold = bytes;
+    }
+
+    static int getParallelDecryptionThreshold() {
+        return parallelDecryptionThreshold;
+    }
+
+    /**
+     * Decrypts the data in block aligned segments, each straight into its place in the output.
+     * Segments are claimed in order by the calling thread and the executor's tasks, whichever gets to them first.
+     */
+    private static final class SegmentedDecryption implements Runnable {
+        private final byte[] data;
+        private final byte[] key;
+        private final byte[] ivBytes;
+        private final int blocks;
+        private final int segmentCount;
+        private final int segmentBlocks;
+        private final AtomicInteger nextSegment = new AtomicInteger();
+        private final CountDownLatch finished;
+        final byte[] output;
+
+        volatile int outputLength;
+        volatile InvalidCipherTextException failure;
+        volatile boolean unsupported;
+
+        SegmentedDecryption(byte[] data, byte[] key, byte[] ivBytes, int segments) {
+            this.data = data;
+            this.key = key;
+            this.ivBytes = ivBytes;
+            this.blocks = data.length / AES_BLOCK_SIZE;
+            this.segmentBlocks = (blocks + segments - 1) / segments;
+            this.segmentCount = (blocks + segmentBlocks - 1) / segmentBlocks;
+            this.finished = new CountDownLatch(segmentCount);
+            this.output = new byte[data.length];
+        }
+
+        void run(Executor executor) {
+            for (int i = 1; i < segmentCount; i++) {
+                try {
+                    executor.execute(this);
+                } catch (RejectedExecutionException e) {
+                    break;
+                }
+            }
+            run();
+            boolean interrupted = false;
+            // Only segments already being decrypted by other threads are left, wait for them to be written
+            while (true) {
+                try {
+                    finished.await();
+                    break;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        @Override
+        public void run() {
+            int segment;
+            while ((segment = nextSegment.getAndIncrement()) < segmentCount) {
+                try {
+                    decryptSegment(segment);
+                } finally {
+                    finished.countDown();
+                }
+            }
+        }
+
+        private void decryptSegment(int segment) {
+            int firstBlock = segment * segmentBlocks;
+            int offset = firstBlock * AES_BLOCK_SIZE;
+            int length = Math.min(segmentBlocks, blocks - firstBlock) * AES_BLOCK_SIZE;
+            byte[] iv = firstBlock == 0 ? ivBytes : Arrays.copyOfRange(data, offset - AES_BLOCK_SIZE, offset);
+            BufferedBlockCipher cipher = blockCipher(key, iv);
+            try {
+                if (offset + length == data.length) {
+                    int written = cipher.processBytes(data, offset, length, output, offset);
+                    outputLength = offset + written + cipher.doFinal(output, offset + written);
+                } else {
+                    // Padded ciphers hold back the last block they are given, so passing the first block of the next
+                    // segment along gets this whole segment decrypted without unpadding it
+                    if (cipher.processBytes(data, offset, length + AES_BLOCK_SIZE, output, offset) != length) {
+                        unsupported = true;
+                    }
+                }
+            } catch (InvalidCipherTextException e) {
+                failure = e;
+            } finally {
+                releaseBlockCipher(cipher);
+            }
+        }
+    }
+
+    /**
+     * Returns an AES/CBC/PKCS7 decryption cipher initialized with the given key and IV, reusing a pooled instance if available.
+     * Cipher should be handed back with {@link #releaseBlockCipher(BufferedBlockCipher)} once it's no longer used.
+     */
+    static BufferedBlockCipher blockCipher(byte[] key, byte[] ivBytes) {
+        AESBackend backend = getAESBackend();
+        BufferedBlockCipher aes = AES_POOL.poll();
+        if (aes != null) {
+            aesPoolSize.decrementAndGet();
+        }
+        if (aes == null || !backend.owns(aes)) {
+            aes = backend.newCipher();
+        }
         CipherParameters ivAndKey = new ParametersWithIV(new KeyParameter(key), ivBytes);
         aes.init(false, ivAndKey);
         return aes;
     }
 
+    /**
+     * Returns a cipher obtained from {@link #blockCipher(byte[], byte[])} to the pool, re-initialized with an all zero key.
+     * Cipher must not be used by the caller afterwards.
+     */
+    static void releaseBlockCipher(BufferedBlockCipher cipher) {
+        // Re-initializing drops the key schedule of the content key, so it isn't kept around by pooled or discarded ciphers
+        cipher.init(false, new ParametersWithIV(new KeyParameter(RELEASED_KEY), RELEASED_IV));
+        if (aesPoolSize.incrementAndGet() <= AES_POOL_CAPACITY) {
+            AES_POOL.offer(cipher);
+        } else {
+            aesPoolSize.decrementAndGet();
+        }
+    }
+
+    /**
+     * Sets the implementation used for AES content decryption.
+     * {@link AESBackend#AUTO} (the default) picks the fastest of the available backends, benchmarked once in the background.
+     *
+     * @param backend AES backend to use
+     * @throws IllegalStateException If {@link AESBackend#PLATFORM} is requested and no platform provider supports AES/CBC
+     */
+    public static void setAESBackend(@NonNull AESBackend backend) {
+        if (backend == AESBackend.PLATFORM && !PlatformBlockCipher.isAvailable()) {
+            throw new IllegalStateException("Platform AES is not available");
+        }
+        synchronized (aesBackendLock) {
+            aesBackendAuto = backend == AESBackend.AUTO;
+            if (!aesBackendAuto) {
+                aesBackend = backend;
+            } else if (selectedAESBackend != null) {
+                aesBackend = selectedAESBackend;
+            } else {
+                startAESBackendSelection();
+            }
+        }
+    }
+
+    /**
+     * Returns the AES backend in use. With {@link AESBackend#AUTO}, that's SpongyCastle until the background selection has finished.
+     *
+     * @return {@link AESBackend#SPONGY_CASTLE} or {@link AESBackend#PLATFORM}
+     */
+    public static AESBackend getAESBackend() {
+        return aesBackend;
+    }
+
+    /**
+     * Runs {@link #selectAESBackend()} on a background thread, so decryption doesn't wait for it. Called with the lock held.
+     */
+    private static void startAESBackendSelection() {
+        if (aesSelectionRunning) {
+            return;
+        }
+        aesSelectionRunning = true;
+        Thread selection = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                AESBackend selected = selectAESBackend();
+                synchronized (aesBackendLock) {
+                    aesSelectionRunning = false;
+                    selectedAESBackend = selected;
+                    if (aesBackendAuto) {
+                        aesBackend = selected;
+                    }
+                }
+            }
+        }, "digime-aes-selection");
+        selection.setDaemon(true);
+        selection.setPriority(Thread.MIN_PRIORITY);
+        selection.start();
+    }
+
+    /**
+     * Decrypts the same sample with both backends, keeping platform AES only if it's faster and produces identical output.
+     */
+    private static AESBackend selectAESBackend() {
+        if (!PlatformBlockCipher.isAvailable()) {
+            return AESBackend.SPONGY_CASTLE;
+        }
+        try {
+            byte[] key = new byte[32];
+            byte[] iv = new byte[16];
+            byte[] plain = new byte[AES_SELF_TEST_SIZE];
+            for (int i = 0; i < plain.length; i++) {
+                plain[i] = (byte) i;
+            }
+            BufferedBlockCipher encryptor = AESBackend.SPONGY_CASTLE.newCipher();
+            encryptor.init(true, new ParametersWithIV(new KeyParameter(key), iv));
+            byte[] encrypted = cipherData(encryptor, plain);
+
+            long[] spongyTime = new long[1];
+            long[] platformTime = new long[1];
+            byte[] spongyResult = timedDecrypt(AESBackend.SPONGY_CASTLE, encrypted, key, iv, spongyTime);
+            byte[] platformResult = timedDecrypt(AESBackend.PLATFORM, encrypted, key, iv, platformTime);
+
+            AESBackend selected = AESBackend.SPONGY_CASTLE;
+            if (Arrays.equals(spongyResult, plain) && Arrays.equals(platformResult, plain)
+                    && platformTime[0] < spongyTime[0]) {
+                selected = AESBackend.PLATFORM;
+            }
+            LOGGER.log(Level.INFO, "Selected AES backend " + selected + " (platform " + platformTime[0] + "ns, SpongyCastle " + spongyTime[0] + "ns)");
+            return selected;
+        } catch (Exception e) {
+            LOGGER.log(Level.WARNING, "AES backend self test failed, using SpongyCastle: " + e.getMessage());
+            return AESBackend.SPONGY_CASTLE;
+        }
+    }
+
+    private static byte[] timedDecrypt(AESBackend backend, byte[] data, byte[] key, byte[] iv, long[] bestTime) throws InvalidCipherTextException {
+        BufferedBlockCipher cipher = backend.newCipher();
+        CipherParameters ivAndKey = new ParametersWithIV(new KeyParameter(key), iv);
+        byte[] result = null;
+        bestTime[0] = Long.MAX_VALUE;
+        for (int i = 0; i < AES_SELF_TEST_ROUNDS; i++) {
+            long start = System.nanoTime();
+            cipher.init(false, ivAndKey);
+            result = cipherData(cipher, data);
+            bestTime[0] = Math.min(bestTime[0], System.nanoTime() - start);
+        }
+        return result;
+    }
+
     private static byte[] cipherData(BufferedBlockCipher cipher, byte[] data) throws InvalidCipherTextException {
         int minSize = cipher.getOutputSize(data.length);
         byte[] outBuf = new byte[minSize];
@@ -196,20 +542,59 @@ public class CryptoUtils {
         return sb.toString();
     }
 
-    @SuppressWarnings("StatementWithEmptyBody")
     public static byte[] hashSha512(byte[] data) {
-        final byte[] dataHashBytes = new byte[64];
-        try (DigestInputStream in = new DigestInputStream(new ByteArrayInputStream(data),
-            new SHA512Digest())) {
-            // Read the stream and do nothing with it
-            while (in.read() != -1) {}
-
-            final Digest md = in.getDigest();
-            md.doFinal(dataHashBytes, 0);
-        } catch (IOException e) {
-            //TODO report that calculating hash failed
-            e.printStackTrace();
+        return hashSha512(data, 0, data.length);
+    }
+
+    /**
+     * Computes SHA-512 hash of {@code length} bytes of {@code data} starting at {@code offset}
+     *
+     * @return 64 byte hash
+     */
+    public static byte[] hashSha512(byte[] data, int offset, int length) {
+        final SHA512Digest digest = sha512Digest();
+        digest.update(data, offset, length);
+        return finishDigest(digest);
+    }
+
+    /**
+     * Computes SHA-512 hash of the remaining bytes in {@code buffer}.
+     * Buffer position is advanced to its limit, same as with {@link java.security.MessageDigest#update(ByteBuffer)}.
+     *
+     * @return 64 byte hash
+     */
+    public static byte[] hashSha512(ByteBuffer buffer) {
+        final SHA512Digest digest = sha512Digest();
+        if (buffer.hasArray()) {
+            digest.update(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+            buffer.position(buffer.limit());
+        } else {
+            final byte[] chunk = new byte[Math.min(buffer.remaining(), DIGEST_CHUNK_SIZE)];
+            while (buffer.hasRemaining()) {
+                int length = Math.min(buffer.remaining(), chunk.length);
+                buffer.get(chunk, 0, length);
+                digest.update(chunk, 0, length);
+            }
         }
+        return finishDigest(digest);
+    }
+
+    /**
+     * Returns a reset SHA-512 digest owned by the calling thread.
+     * The instance is reused by subsequent calls on the same thread, so it must be used (and finished) within the current call
+     * and never handed over to other threads or kept by long lived objects.
+     *
+     * @return Thread confined {@link SHA512Digest}
+     */
+    public static SHA512Digest sha512Digest() {
+        final SHA512Digest digest = THREAD_SHA512.get();
+        digest.reset();
+        return digest;
+    }
+
+    private static byte[] finishDigest(Digest digest) {
+        final byte[] dataHashBytes = new byte[digest.getDigestSize()];
+        digest.doFinal(dataHashBytes, 0);
         return dataHashBytes;
     }
 }
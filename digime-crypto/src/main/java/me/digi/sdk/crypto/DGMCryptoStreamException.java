@@ -0,0 +1,30 @@
+/*
+ * Copyright © 2017 digi.me. All rights reserved.
+ */
+
+package me.digi.sdk.crypto;
+
+import java.io.IOException;
+
+/**
+ * {@link IOException} raised by decrypting streams, since {@link java.io.InputStream} can not throw checked crypto exceptions.
+ * Wraps the original {@link DGMCryptoFailureException} which can be retrieved with {@link #failure()}.
+ */
+public class DGMCryptoStreamException extends IOException {
+    private static final long serialVersionUID = -2293402785126404128L;
+
+    private final DGMCryptoFailureException failure;
+
+    public DGMCryptoStreamException(DGMCryptoFailureException failure) {
+        super(failure.getMessage(), failure);
+        this.failure = failure;
+    }
+
+    public DGMCryptoFailureException failure() {
+        return failure;
+    }
+
+    public FailureCause cause() {
+        return failure.cause();
+    }
+}
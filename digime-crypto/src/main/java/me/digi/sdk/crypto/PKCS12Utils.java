@@ -6,8 +6,6 @@ package me.digi.sdk.crypto;
 
 import android.content.Context;
 import android.text.TextUtils;
-import android.util.Base64;
-import android.util.Base64InputStream;
 
 import org.spongycastle.jce.provider.BouncyCastleProvider;
 
@@ -110,7 +108,7 @@ public class PKCS12Utils {
         } catch (Exception e) {
             throw new DGMCryptoFailureException(FailureCause.KEY_LOAD_FAILURE, e);
         }
-        return getKeysFromP12Stream(new Base64InputStream(is, Base64.DEFAULT), keyAlias, passphrase, keyPassphrase);
+        return getKeysFromP12Stream(new Base64DecodingInputStream(is), keyAlias, passphrase, keyPassphrase);
     }
 
     /**
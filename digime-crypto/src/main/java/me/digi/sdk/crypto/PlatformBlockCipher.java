@@ -0,0 +1,144 @@
+/*
+ * Copyright © 2017 digi.me. All rights reserved.
+ */
+
+package me.digi.sdk.crypto;
+
+import org.spongycastle.crypto.BufferedBlockCipher;
+import org.spongycastle.crypto.CipherParameters;
+import org.spongycastle.crypto.InvalidCipherTextException;
+import org.spongycastle.crypto.OutputLengthException;
+import org.spongycastle.crypto.params.KeyParameter;
+import org.spongycastle.crypto.params.ParametersWithIV;
+
+import java.security.GeneralSecurityException;
+import java.security.Provider;
+import java.security.Security;
+
+import javax.crypto.BadPaddingException;
+import javax.crypto.Cipher;
+import javax.crypto.IllegalBlockSizeException;
+import javax.crypto.ShortBufferException;
+import javax.crypto.spec.IvParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * {@link BufferedBlockCipher} facade over {@code AES/CBC/PKCS5Padding} of the first JCE provider other than SpongyCastle,
+ * so platform (hardware accelerated) AES can be used wherever SpongyCastle block ciphers are expected.
+ * PKCS5 padding in JCE is the 16 byte block PKCS7 padding SpongyCastle uses.
+ */
+final class PlatformBlockCipher extends BufferedBlockCipher {
+    private static final String TRANSFORMATION = "AES/CBC/PKCS5Padding";
+    private static final int AES_BLOCK_SIZE = 16;
+    private static final String SPONGY_CASTLE_PROVIDER = "SC";
+
+    private static volatile Provider platformProvider;
+
+    private final Cipher cipher;
+    private SecretKeySpec key;
+    private IvParameterSpec iv;
+    private int mode;
+
+    PlatformBlockCipher() {
+        Provider provider = platformProvider();
+        if (provider == null) {
+            throw new IllegalStateException("No platform provider for " + TRANSFORMATION);
+        }
+        try {
+            cipher = Cipher.getInstance(TRANSFORMATION, provider);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Whether a JCE provider other than SpongyCastle offers {@code AES/CBC/PKCS5Padding}.
+     */
+    static boolean isAvailable() {
+        return platformProvider() != null;
+    }
+
+    private static Provider platformProvider() {
+        Provider provider = platformProvider;
+        if (provider == null) {
+            for (Provider candidate : Security.getProviders()) {
+                if (SPONGY_CASTLE_PROVIDER.equals(candidate.getName())) {
+                    continue;
+                }
+                try {
+                    Cipher.getInstance(TRANSFORMATION, candidate);
+                    provider = candidate;
+                    break;
+                } catch (GeneralSecurityException ignored) {
+                    // provider doesn't support the transformation
+                }
+            }
+            platformProvider = provider;
+        }
+        return provider;
+    }
+
+    @Override
+    public void init(boolean forEncryption, CipherParameters params) throws IllegalArgumentException {
+        if (!(params instanceof ParametersWithIV) || !(((ParametersWithIV) params).getParameters() instanceof KeyParameter)) {
+            throw new IllegalArgumentException("Key and IV parameters are required");
+        }
+        ParametersWithIV ivAndKey = (ParametersWithIV) params;
+        mode = forEncryption ? Cipher.ENCRYPT_MODE : Cipher.DECRYPT_MODE;
+        key = new SecretKeySpec(((KeyParameter) ivAndKey.getParameters()).getKey(), "AES");
+        iv = new IvParameterSpec(ivAndKey.getIV());
+        reset();
+    }
+
+    @Override
+    public int getBlockSize() {
+        return AES_BLOCK_SIZE;
+    }
+
+    @Override
+    public int getUpdateOutputSize(int len) {
+        return cipher.getOutputSize(len);
+    }
+
+    @Override
+    public int getOutputSize(int length) {
+        return cipher.getOutputSize(length);
+    }
+
+    @Override
+    public int processByte(byte in, byte[] out, int outOff) {
+        return processBytes(new byte[]{in}, 0, 1, out, outOff);
+    }
+
+    @Override
+    public int processBytes(byte[] in, int inOff, int len, byte[] out, int outOff) {
+        try {
+            return cipher.update(in, inOff, len, out, outOff);
+        } catch (ShortBufferException e) {
+            throw new OutputLengthException("Output buffer too short");
+        }
+    }
+
+    @Override
+    public int doFinal(byte[] out, int outOff) throws InvalidCipherTextException {
+        try {
+            return cipher.doFinal(out, outOff);
+        } catch (ShortBufferException e) {
+            throw new OutputLengthException("Output buffer too short");
+        } catch (BadPaddingException | IllegalBlockSizeException e) {
+            throw new InvalidCipherTextException(e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public void reset() {
+        if (key == null) {
+            return;
+        }
+        try {
+            cipher.init(mode, key, iv);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalArgumentException(e);
+        }
+    }
+}
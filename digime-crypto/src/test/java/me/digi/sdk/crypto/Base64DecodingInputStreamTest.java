@@ -0,0 +1,101 @@
+/*
+ * Copyright © 2017 digi.me. All rights reserved.
+ */
+
+package me.digi.sdk.crypto;
+
+import org.junit.Test;
+import org.spongycastle.util.encoders.Base64;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class Base64DecodingInputStreamTest {
+
+    @Test
+    public void decodesEveryLengthAndReadSize() throws Exception {
+        for (int length = 0; length < 40; length++) {
+            byte[] data = CAFileFixture.randomBytes(length);
+            byte[] encoded = Base64.encode(data);
+            for (int readSize : new int[]{1, 2, 3, 5, 64}) {
+                for (int bufferSize : new int[]{4, 7, 8192}) {
+                    assertArrayEquals(length + "/" + readSize + "/" + bufferSize, data,
+                            decode(new ByteArrayInputStream(encoded), bufferSize, readSize));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void decodesLargeInputFromShortReads() throws Exception {
+        byte[] data = CAFileFixture.randomBytes(100003);
+        InputStream trickle = new FilterInputStream(new ByteArrayInputStream(Base64.encode(data))) {
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                return super.read(b, off, Math.min(len, 13));
+            }
+
+            @Override
+            public int available() {
+                return 0;
+            }
+        };
+        assertArrayEquals(data, decode(trickle, 8192, 8192));
+    }
+
+    @Test
+    public void skipsCharactersOutsideAlphabet() throws Exception {
+        byte[] data = CAFileFixture.randomBytes(200);
+        String encoded = new String(Base64.encode(data), StandardCharsets.US_ASCII);
+        StringBuilder wrapped = new StringBuilder();
+        for (int i = 0; i < encoded.length(); i += 76) {
+            wrapped.append(encoded, i, Math.min(encoded.length(), i + 76)).append("\r\n");
+        }
+        assertArrayEquals(data, decode(ascii(wrapped.toString()), 8192, 8192));
+        assertArrayEquals(data, decode(ascii(" " + encoded.replace("=", "") + "\n"), 8192, 8192));
+    }
+
+    @Test
+    public void rejectsMalformedInput() {
+        for (String malformed : new String[]{"QUJD=", "QQ==QQ==", "A", "QUJDR", "=QUJD"}) {
+            try {
+                decode(ascii(malformed), 8192, 8192);
+                fail(malformed + " should be rejected");
+            } catch (IOException expected) {
+                // malformed input
+            }
+        }
+    }
+
+    @Test
+    public void singleByteReads() throws Exception {
+        InputStream in = new Base64DecodingInputStream(ascii("QUJD"));
+        assertEquals('A', in.read());
+        assertEquals('B', in.read());
+        assertEquals('C', in.read());
+        assertEquals(-1, in.read());
+    }
+
+    private static InputStream ascii(String encoded) {
+        return new ByteArrayInputStream(encoded.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    private static byte[] decode(InputStream encoded, int bufferSize, int readSize) throws IOException {
+        InputStream in = new Base64DecodingInputStream(encoded, bufferSize);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[readSize];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            out.write(buffer, 0, read);
+        }
+        return out.toByteArray();
+    }
+}
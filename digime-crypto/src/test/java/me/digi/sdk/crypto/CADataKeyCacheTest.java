@@ -0,0 +1,89 @@
+/*
+ * Copyright © 2017 digi.me. All rights reserved.
+ */
+
+package me.digi.sdk.crypto;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.security.KeyPair;
+import java.security.Security;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class CADataKeyCacheTest {
+
+    @Test
+    public void returnsCopyOfStoredKey() {
+        CADataKeyCache cache = new CADataKeyCache();
+        byte[] encryptedDSK = CAFileFixture.randomBytes(256);
+        byte[] dsk = CAFileFixture.randomBytes(32);
+
+        assertNull(cache.get(encryptedDSK));
+        cache.put(encryptedDSK, dsk);
+        byte[] cached = cache.get(encryptedDSK);
+        assertArrayEquals(dsk, cached);
+
+        cached[0] ^= 0x01;
+        assertArrayEquals(dsk, cache.get(encryptedDSK));
+        assertEquals(2, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+    }
+
+    @Test
+    public void evictsLeastRecentlyUsed() {
+        CADataKeyCache cache = new CADataKeyCache(2, TimeUnit.MINUTES.toMillis(1));
+        byte[] first = CAFileFixture.randomBytes(256);
+        byte[] second = CAFileFixture.randomBytes(256);
+        byte[] third = CAFileFixture.randomBytes(256);
+
+        cache.put(first, CAFileFixture.randomBytes(32));
+        cache.put(second, CAFileFixture.randomBytes(32));
+        cache.get(first);
+        cache.put(third, CAFileFixture.randomBytes(32));
+
+        assertEquals(2, cache.size());
+        assertEquals(1, cache.getEvictionCount());
+        assertNull(cache.get(second));
+    }
+
+    @Test
+    public void expiresEntries() {
+        final long[] now = {0};
+        CADataKeyCache cache = new CADataKeyCache(4, 1000) {
+            @Override
+            long now() {
+                return now[0];
+            }
+        };
+        byte[] encryptedDSK = CAFileFixture.randomBytes(256);
+        cache.put(encryptedDSK, CAFileFixture.randomBytes(32));
+
+        now[0] = TimeUnit.MILLISECONDS.toNanos(999);
+        assertEquals(32, cache.get(encryptedDSK).length);
+        now[0] = TimeUnit.MILLISECONDS.toNanos(1000);
+        assertNull(cache.get(encryptedDSK));
+        assertEquals(0, cache.size());
+        assertEquals(1, cache.getEvictionCount());
+    }
+
+    @Test
+    public void providerReusesUnwrappedKey() throws Exception {
+        Security.insertProviderAt(new org.spongycastle.jce.provider.BouncyCastleProvider(), 1);
+        KeyPair keyPair = CAFileFixture.generateKeyPair();
+        byte[] data = CAFileFixture.randomBytes(1000);
+        byte[] file = CAFileFixture.encrypt(data, keyPair.getPublic());
+        CAKeyStore keyStore = new CAKeyStore(keyPair.getPrivate());
+        CACryptoProvider provider = new CACryptoProvider(keyStore);
+
+        for (int i = 0; i < 3; i++) {
+            assertArrayEquals(data, ByteUtils.readBytesFromStream(provider.decryptingStream(new ByteArrayInputStream(file), false)));
+        }
+        assertEquals(1, keyStore.getDataKeyCache().getMissCount());
+        assertEquals(2, keyStore.getDataKeyCache().getHitCount());
+    }
+}
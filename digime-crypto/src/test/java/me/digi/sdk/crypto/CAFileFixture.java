@@ -0,0 +1,62 @@
+/*
+ * Copyright © 2017 digi.me. All rights reserved.
+ */
+
+package me.digi.sdk.crypto;
+
+import org.spongycastle.crypto.engines.AESEngine;
+import org.spongycastle.crypto.modes.CBCBlockCipher;
+import org.spongycastle.crypto.paddings.PaddedBufferedBlockCipher;
+import org.spongycastle.crypto.params.KeyParameter;
+import org.spongycastle.crypto.params.ParametersWithIV;
+
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.PublicKey;
+import java.util.Random;
+
+import javax.crypto.Cipher;
+
+/**
+ * Produces CA files ({@code RSA(DSK) | DIV | AES(SHA512(data) | data)}) for tests that can't rely on device assets.
+ */
+final class CAFileFixture {
+    private static final Random RANDOM = new Random(0x5EED);
+
+    private CAFileFixture() {}
+
+    static KeyPair generateKeyPair() throws Exception {
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA", "SC");
+        generator.initialize(2048);
+        return generator.generateKeyPair();
+    }
+
+    static byte[] randomBytes(int length) {
+        byte[] bytes = new byte[length];
+        RANDOM.nextBytes(bytes);
+        return bytes;
+    }
+
+    static byte[] encrypt(byte[] data, PublicKey publicKey) throws Exception {
+        return encrypt(data, publicKey, randomBytes(32), randomBytes(16));
+    }
+
+    static byte[] encrypt(byte[] data, PublicKey publicKey, byte[] dsk, byte[] div) throws Exception {
+        Cipher rsa = Cipher.getInstance("RSA/ECB/OAEPWithSHA1AndMGF1Padding", "SC");
+        rsa.init(Cipher.ENCRYPT_MODE, publicKey);
+        byte[] encryptedDSK = rsa.doFinal(dsk);
+
+        PaddedBufferedBlockCipher aes = new PaddedBufferedBlockCipher(new CBCBlockCipher(new AESEngine()));
+        aes.init(true, new ParametersWithIV(new KeyParameter(dsk), div));
+        byte[] plain = ByteUtils.getDataAndHashBytes(data);
+        byte[] encrypted = new byte[aes.getOutputSize(plain.length)];
+        int length = aes.processBytes(plain, 0, plain.length, encrypted, 0);
+        length += aes.doFinal(encrypted, length);
+
+        byte[] file = new byte[encryptedDSK.length + div.length + length];
+        System.arraycopy(encryptedDSK, 0, file, 0, encryptedDSK.length);
+        System.arraycopy(div, 0, file, encryptedDSK.length, div.length);
+        System.arraycopy(encrypted, 0, file, encryptedDSK.length + div.length, length);
+        return file;
+    }
+}
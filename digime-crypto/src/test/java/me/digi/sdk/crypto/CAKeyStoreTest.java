@@ -0,0 +1,128 @@
+/*
+ * Copyright © 2017 digi.me. All rights reserved.
+ */
+
+package me.digi.sdk.crypto;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.security.KeyPair;
+import java.security.PrivateKey;
+import java.security.Security;
+import java.util.Iterator;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class CAKeyStoreTest {
+    private static KeyPair rootKeyPair;
+    private static KeyPair firstKeyPair;
+    private static KeyPair secondKeyPair;
+
+    @BeforeClass
+    public static void setUp() throws Exception {
+        Security.insertProviderAt(new org.spongycastle.jce.provider.BouncyCastleProvider(), 1);
+        rootKeyPair = CAFileFixture.generateKeyPair();
+        firstKeyPair = CAFileFixture.generateKeyPair();
+        secondKeyPair = CAFileFixture.generateKeyPair();
+    }
+
+    @Test
+    public void promotesSucceedingKey() throws Exception {
+        CAKeyStore keyStore = new CAKeyStore(rootKeyPair.getPrivate());
+        keyStore.addKey(firstKeyPair.getPrivate());
+        keyStore.addKey(secondKeyPair.getPrivate());
+        CACryptoProvider provider = new CACryptoProvider(keyStore);
+
+        decrypt(provider, rootKeyPair, null);
+        assertEquals(2, keyStore.getKeyStats(firstKeyPair.getPrivate()).getFailureCount() + keyStore.getKeyStats(secondKeyPair.getPrivate()).getFailureCount());
+        assertSame(rootKeyPair.getPrivate(), keyStore.iterator().next());
+
+        decrypt(provider, rootKeyPair, null);
+        assertEquals(2, keyStore.getKeyStats(rootKeyPair.getPrivate()).getSuccessCount());
+        assertEquals(0, keyStore.getKeyStats(rootKeyPair.getPrivate()).getFailureCount());
+        assertEquals(1, keyStore.getKeyStats(firstKeyPair.getPrivate()).getFailureCount());
+        assertEquals(1, keyStore.getKeyStats(secondKeyPair.getPrivate()).getFailureCount());
+    }
+
+    @Test
+    public void hintedKeyIsTriedFirst() throws Exception {
+        CAKeyStore keyStore = new CAKeyStore(rootKeyPair.getPrivate());
+        keyStore.addKey(firstKeyPair.getPrivate());
+        CACryptoProvider provider = new CACryptoProvider(keyStore);
+
+        decrypt(provider, rootKeyPair, "root_session");
+        decrypt(provider, firstKeyPair, "first_session");
+        assertSame(firstKeyPair.getPrivate(), keyStore.iterator().next());
+
+        Iterator<PrivateKey> hinted = keyStore.iterator("root_session");
+        assertSame(rootKeyPair.getPrivate(), hinted.next());
+        assertSame(firstKeyPair.getPrivate(), hinted.next());
+
+        decrypt(provider, rootKeyPair, "root_session");
+        assertEquals(1, keyStore.getKeyStats(rootKeyPair.getPrivate()).getFailureCount());
+        assertEquals(2, keyStore.getKeyStats(rootKeyPair.getPrivate()).getSuccessCount());
+    }
+
+    @Test
+    public void iteratorKeepsAllKeysWhileReordered() throws Exception {
+        CAKeyStore keyStore = new CAKeyStore(rootKeyPair.getPrivate());
+        keyStore.addKey(firstKeyPair.getPrivate());
+        keyStore.addKey(secondKeyPair.getPrivate());
+
+        Iterator<PrivateKey> keys = keyStore.iterator();
+        assertSame(secondKeyPair.getPrivate(), keys.next());
+        keyStore.keySucceeded(rootKeyPair.getPrivate(), null);
+        assertSame(firstKeyPair.getPrivate(), keys.next());
+        assertSame(rootKeyPair.getPrivate(), keys.next());
+        assertFalse(keys.hasNext());
+        assertSame(rootKeyPair.getPrivate(), keyStore.iterator().next());
+    }
+
+    @Test
+    public void iteratorRemovesKeyFromStore() throws Exception {
+        CAKeyStore keyStore = new CAKeyStore(rootKeyPair.getPrivate());
+        keyStore.addKey(firstKeyPair.getPrivate());
+
+        Iterator<PrivateKey> keys = keyStore.iterator("session");
+        assertSame(firstKeyPair.getPrivate(), keys.next());
+        keys.remove();
+        assertSame(rootKeyPair.getPrivate(), keys.next());
+
+        Iterator<PrivateKey> remaining = keyStore.iterator();
+        assertSame(rootKeyPair.getPrivate(), remaining.next());
+        assertFalse(remaining.hasNext());
+        remaining.remove();
+        assertTrue(keyStore.isEmpty());
+    }
+
+    @Test
+    public void keyHintsAreBounded() throws Exception {
+        CAKeyStore keyStore = new CAKeyStore(rootKeyPair.getPrivate());
+        keyStore.addKey(firstKeyPair.getPrivate());
+
+        keyStore.keySucceeded(rootKeyPair.getPrivate(), "cleared_session");
+        keyStore.keySucceeded(firstKeyPair.getPrivate(), null);
+        keyStore.clearKeyHint("cleared_session");
+        assertSame(firstKeyPair.getPrivate(), keyStore.iterator("cleared_session").next());
+
+        keyStore.keySucceeded(rootKeyPair.getPrivate(), "oldest_session");
+        for (int i = 0; i < CAKeyStore.MAX_KEY_HINTS; i++) {
+            keyStore.keySucceeded(rootKeyPair.getPrivate(), "session_" + i);
+        }
+        keyStore.keySucceeded(firstKeyPair.getPrivate(), null);
+        assertSame(firstKeyPair.getPrivate(), keyStore.iterator("oldest_session").next());
+        assertSame(rootKeyPair.getPrivate(), keyStore.iterator("session_0").next());
+    }
+
+    private static void decrypt(CACryptoProvider provider, KeyPair owner, String keyHint) throws Exception {
+        byte[] data = CAFileFixture.randomBytes(500);
+        byte[] file = CAFileFixture.encrypt(data, owner.getPublic());
+        assertArrayEquals(data, ByteUtils.readBytesFromStream(provider.decryptingStream(new ByteArrayInputStream(file), false, keyHint)));
+    }
+}
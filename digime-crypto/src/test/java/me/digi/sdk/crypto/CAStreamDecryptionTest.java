@@ -0,0 +1,201 @@
+/*
+ * Copyright © 2017 digi.me. All rights reserved.
+ */
+
+package me.digi.sdk.crypto;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.spongycastle.util.encoders.Base64;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.security.KeyPair;
+import java.security.Security;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class CAStreamDecryptionTest {
+    private static KeyPair keyPair;
+
+    @BeforeClass
+    public static void setUp() throws Exception {
+        Security.insertProviderAt(new org.spongycastle.jce.provider.BouncyCastleProvider(), 1);
+        keyPair = CAFileFixture.generateKeyPair();
+    }
+
+    @Test
+    public void streamedContentMatchesSource() throws Exception {
+        byte[] data = CAFileFixture.randomBytes(3 * 1024 * 1024 + 7);
+        CACryptoProvider provider = new CACryptoProvider(keyPair.getPrivate());
+
+        InputStream decrypted = provider.decryptingStream(new ByteArrayInputStream(CAFileFixture.encrypt(data, keyPair.getPublic())), false);
+        assertArrayEquals(data, ByteUtils.readBytesFromStream(decrypted));
+    }
+
+    @Test
+    public void base64ContentMatchesSource() throws Exception {
+        byte[] data = CAFileFixture.randomBytes(1024 * 1024 + 5);
+        byte[] encoded = Base64.encode(CAFileFixture.encrypt(data, keyPair.getPublic()));
+        CACryptoProvider provider = new CACryptoProvider(keyPair.getPrivate());
+
+        InputStream decrypted = provider.decryptingStream(new ByteArrayInputStream(encoded), true);
+        assertArrayEquals(data, ByteUtils.readBytesFromStream(decrypted));
+    }
+
+    @Test
+    public void outputStreamMatchesStringDecryption() throws Exception {
+        byte[] data = "[{\"entityid\":\"1\"},{\"entityid\":\"2\"}]".getBytes("UTF-8");
+        byte[] file = CAFileFixture.encrypt(data, keyPair.getPublic());
+        CACryptoProvider provider = new CACryptoProvider(keyPair.getPrivate());
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        provider.decryptStream(new ByteArrayInputStream(file), out, false);
+        assertArrayEquals(data, out.toByteArray());
+        assertEquals(ByteUtils.bytesToString(data), provider.decryptStream(new ByteArrayInputStream(file), false));
+    }
+
+    @Test
+    public void parallelDecryptionMatchesSource() throws Exception {
+        byte[] data = CAFileFixture.randomBytes(3 * 1024 * 1024 + 7);
+        byte[] encoded = Base64.encode(CAFileFixture.encrypt(data, keyPair.getPublic()));
+        CACryptoProvider provider = new CACryptoProvider(keyPair.getPrivate());
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            for (int threshold : new int[]{0, 1024 * 1024}) {
+                CryptoUtils.setParallelDecryptionThreshold(threshold);
+                ByteArrayOutputStream out = new ByteArrayOutputStream();
+                provider.decryptStream(new ByteArrayInputStream(encoded), out, true, null, executor);
+                assertArrayEquals("Threshold " + threshold, data, out.toByteArray());
+            }
+        } finally {
+            CryptoUtils.setParallelDecryptionThreshold(1024 * 1024);
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void contentBelowParallelThresholdIsNotBuffered() throws Exception {
+        byte[] data = CAFileFixture.randomBytes(64 * 1024 + 3);
+        byte[] file = CAFileFixture.encrypt(data, keyPair.getPublic());
+        CACryptoProvider provider = new CACryptoProvider(keyPair.getPrivate());
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            for (int threshold : new int[]{1024 * 1024, 16 * 1024}) {
+                CryptoUtils.setParallelDecryptionThreshold(threshold);
+                final int[] largestWrite = new int[1];
+                ByteArrayOutputStream out = new ByteArrayOutputStream() {
+                    @Override
+                    public synchronized void write(byte[] b, int off, int len) {
+                        largestWrite[0] = Math.max(largestWrite[0], len);
+                        super.write(b, off, len);
+                    }
+                };
+                provider.decryptStream(new ByteArrayInputStream(file), out, false, null, executor);
+                assertArrayEquals("Threshold " + threshold, data, out.toByteArray());
+                if (threshold > file.length) {
+                    assertTrue(largestWrite[0] <= CADecryptingInputStream.DEFAULT_BUFFER_SIZE);
+                } else {
+                    assertEquals(data.length, largestWrite[0]);
+                }
+            }
+        } finally {
+            CryptoUtils.setParallelDecryptionThreshold(1024 * 1024);
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void parallelDecryptionRejectsTamperedContent() throws Exception {
+        byte[] file = CAFileFixture.encrypt(CAFileFixture.randomBytes(2 * 1024 * 1024), keyPair.getPublic());
+        file[file.length / 2] ^= 0x01;
+        CACryptoProvider provider = new CACryptoProvider(keyPair.getPrivate());
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            provider.decryptStream(new ByteArrayInputStream(file), new ByteArrayOutputStream(), false, null, executor);
+            fail("Tampered content must not pass hash verification");
+        } catch (DGMCryptoFailureException e) {
+            assertEquals(FailureCause.DATA_CORRUPTED_FAILURE, e.cause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void emptyContentDecryptsToEmptyStream() throws Exception {
+        CACryptoProvider provider = new CACryptoProvider(keyPair.getPrivate());
+        byte[] file = CAFileFixture.encrypt(new byte[0], keyPair.getPublic());
+
+        assertEquals("", provider.decryptStream(new ByteArrayInputStream(file), false));
+    }
+
+    @Test
+    public void tamperedContentFailsAtEndOfStream() throws Exception {
+        byte[] file = CAFileFixture.encrypt(CAFileFixture.randomBytes(100000), keyPair.getPublic());
+        file[file.length / 2] ^= 0x01;
+        CACryptoProvider provider = new CACryptoProvider(keyPair.getPrivate());
+
+        InputStream decrypted = provider.decryptingStream(new ByteArrayInputStream(file), false);
+        try {
+            ByteUtils.readBytesFromStream(decrypted);
+            fail("Tampered content must not pass hash verification");
+        } catch (DGMCryptoStreamException e) {
+            assertEquals(FailureCause.DATA_CORRUPTED_FAILURE, e.cause());
+        }
+    }
+
+    @Test
+    public void truncatedContentFails() throws Exception {
+        byte[] file = CAFileFixture.encrypt(CAFileFixture.randomBytes(1000), keyPair.getPublic());
+        byte[] truncated = new byte[file.length - 5];
+        System.arraycopy(file, 0, truncated, 0, truncated.length);
+        CACryptoProvider provider = new CACryptoProvider(keyPair.getPrivate());
+
+        try {
+            provider.decryptStream(new ByteArrayInputStream(truncated), new ByteArrayOutputStream(), false);
+            fail("Truncated content must not be decrypted");
+        } catch (DGMCryptoFailureException e) {
+            assertEquals(FailureCause.CHECKSUM_CORRUPTED_FAILURE, e.cause());
+        }
+    }
+
+    @Test(expected = DGMCryptoFailureException.class)
+    public void wrongKeyFails() throws Exception {
+        byte[] file = CAFileFixture.encrypt(CAFileFixture.randomBytes(1000), keyPair.getPublic());
+        CACryptoProvider provider = new CACryptoProvider(CAFileFixture.generateKeyPair().getPrivate());
+
+        provider.decryptingStream(new ByteArrayInputStream(file), false);
+    }
+
+    @Test
+    public void backendsProduceIdenticalContent() throws Exception {
+        byte[] data = CAFileFixture.randomBytes(256 * 1024 + 3);
+        byte[] file = CAFileFixture.encrypt(data, keyPair.getPublic());
+        byte[] tampered = file.clone();
+        tampered[tampered.length - 1] ^= 0x01;
+
+        for (AESBackend backend : new AESBackend[]{AESBackend.SPONGY_CASTLE, AESBackend.PLATFORM}) {
+            CryptoUtils.setAESBackend(backend);
+            try {
+                CACryptoProvider provider = new CACryptoProvider(keyPair.getPrivate());
+                assertArrayEquals(data, ByteUtils.readBytesFromStream(provider.decryptingStream(new ByteArrayInputStream(file), false)));
+                try {
+                    provider.decryptStream(new ByteArrayInputStream(tampered), new ByteArrayOutputStream(), false);
+                    fail("Bad padding must not pass with " + backend);
+                } catch (DGMCryptoFailureException e) {
+                    assertEquals(FailureCause.DATA_CORRUPTED_FAILURE, e.cause());
+                }
+            } finally {
+                CryptoUtils.setAESBackend(AESBackend.AUTO);
+            }
+        }
+        assertNotEquals(AESBackend.AUTO, CryptoUtils.getAESBackend());
+    }
+}
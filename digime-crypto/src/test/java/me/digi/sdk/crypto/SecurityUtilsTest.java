@@ -4,26 +4,57 @@
 
 package me.digi.sdk.crypto;
 
+import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
+import org.spongycastle.crypto.BufferedBlockCipher;
+import org.spongycastle.crypto.engines.AESEngine;
+import org.spongycastle.crypto.modes.CBCBlockCipher;
+import org.spongycastle.crypto.paddings.PaddedBufferedBlockCipher;
+import org.spongycastle.crypto.params.KeyParameter;
+import org.spongycastle.crypto.params.ParametersWithIV;
 
+import java.nio.ByteBuffer;
 import java.security.Security;
 import java.util.LinkedHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import static me.digi.sdk.crypto.ByteUtils.bytesToString;
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
 
 public class SecurityUtilsTest {
     @SuppressWarnings("FieldCanBeLocal")
     private static final String benchmarkData = "Lorem ipsum dolor sit amet, consectetur adipiscing elit. Sed eu ex lobortis turpis cursus aliquam. Donec facilisis lorem vitae luctus scelerisque. Nam non laoreet ex, sed aliquet arcu. Mauris eu tristique erat, id ullamcorper purus. Nullam condimentum tortor augue, quis suscipit magna aliquam a. Nulla facilisi. In placerat, odio id interdum semper, lacus metus ultrices erat, nec pulvinar nisl massa ut erat.";
 
+    private ExecutorService executor;
+
     @Before
     public void setUp() throws Exception {
         Security.insertProviderAt(new org.spongycastle.jce.provider.BouncyCastleProvider(), 1);
+        executor = Executors.newFixedThreadPool(2);
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
     }
 
     @Test
     public void aesDecryptExternalTest() throws Exception {
+        for (AESBackend backend : new AESBackend[]{AESBackend.SPONGY_CASTLE, AESBackend.PLATFORM}) {
+            CryptoUtils.setAESBackend(backend);
+            try {
+                assertExternalAesData();
+            } finally {
+                CryptoUtils.setAESBackend(AESBackend.AUTO);
+            }
+        }
+    }
+
+    private void assertExternalAesData() throws Exception {
         LinkedHashMap<String, String> map = externalAesData();
 
         byte[] iv = new byte[16];
@@ -116,6 +147,57 @@ public class SecurityUtilsTest {
         return map;
     }
 
+    @Test
+    public void aesParallelDecryptMatchesSerialTest() throws Exception {
+        byte[] key = CAFileFixture.randomBytes(32);
+        byte[] iv = CAFileFixture.randomBytes(16);
+        for (AESBackend backend : new AESBackend[]{AESBackend.SPONGY_CASTLE, AESBackend.PLATFORM}) {
+            CryptoUtils.setAESBackend(backend);
+            try {
+                for (int size : new int[]{0, 15, 16, 17, 100, 4095, 4096, 1000003}) {
+                    byte[] plain = CAFileFixture.randomBytes(size);
+                    byte[] encrypted = encryptAES(plain, key, iv);
+                    byte[] serial = CryptoUtils.decryptAES(encrypted, key, iv, null, 1);
+                    assertArrayEquals(backend + " " + size, plain, serial);
+                    for (int segments : new int[]{2, 3, 7, 64, encrypted.length}) {
+                        assertArrayEquals(backend + " " + size + "/" + segments, serial,
+                                CryptoUtils.decryptAES(encrypted, key, iv, executor, segments));
+                    }
+                }
+            } finally {
+                CryptoUtils.setAESBackend(AESBackend.AUTO);
+            }
+        }
+    }
+
+    @Test
+    public void aesParallelDecryptFailsLikeSerialTest() throws Exception {
+        byte[] key = CAFileFixture.randomBytes(32);
+        byte[] iv = CAFileFixture.randomBytes(16);
+        // Encrypted without padding, so the last plaintext byte (0) is not valid PKCS7 padding
+        BufferedBlockCipher unpadded = new BufferedBlockCipher(new CBCBlockCipher(new AESEngine()));
+        unpadded.init(true, new ParametersWithIV(new KeyParameter(key), iv));
+        byte[] encrypted = new byte[4096];
+        unpadded.processBytes(new byte[encrypted.length], 0, encrypted.length, encrypted, 0);
+        for (int segments : new int[]{1, 4}) {
+            try {
+                CryptoUtils.decryptAES(encrypted, key, iv, executor, segments);
+                fail("Padding of " + segments + " segments should be rejected");
+            } catch (DGMCryptoFailureException e) {
+                assertEquals(FailureCause.AES_DECRYPTION_FAILURE, e.cause());
+            }
+        }
+    }
+
+    private static byte[] encryptAES(byte[] plain, byte[] key, byte[] iv) throws Exception {
+        PaddedBufferedBlockCipher aes = new PaddedBufferedBlockCipher(new CBCBlockCipher(new AESEngine()));
+        aes.init(true, new ParametersWithIV(new KeyParameter(key), iv));
+        byte[] encrypted = new byte[aes.getOutputSize(plain.length)];
+        int length = aes.processBytes(plain, 0, plain.length, encrypted, 0);
+        aes.doFinal(encrypted, length);
+        return encrypted;
+    }
+
     @Test
     public void sha512Test() {
         String expectedResult = "353c86a44ea160300e79a77504da8b46b01b10af5795318f22cb93b847fe7567889e56fcf0815dcc67fc1747a800b3a55778eeea99285ee61a2cefd155991e20";
@@ -123,4 +205,23 @@ public class SecurityUtilsTest {
 
         assertEquals(expectedResult, actualResult);
     }
+
+    @Test
+    public void sha512BulkOverloadsTest() throws Exception {
+        byte[] data = benchmarkData.getBytes("UTF-8");
+        byte[] expected = CryptoUtils.hashSha512(data);
+
+        byte[] padded = new byte[data.length + 10];
+        System.arraycopy(data, 0, padded, 5, data.length);
+        assertArrayEquals(expected, CryptoUtils.hashSha512(padded, 5, data.length));
+
+        ByteBuffer heap = ByteBuffer.wrap(padded, 5, data.length);
+        assertArrayEquals(expected, CryptoUtils.hashSha512(heap));
+        assertEquals(0, heap.remaining());
+
+        ByteBuffer direct = ByteBuffer.allocateDirect(data.length);
+        direct.put(data).flip();
+        assertArrayEquals(expected, CryptoUtils.hashSha512(direct));
+        assertEquals(0, direct.remaining());
+    }
 }